@@ -0,0 +1,152 @@
+package edu.mit.techscore.bench;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.tscore.RegattaGenerator;
+
+/**
+ * Measures hashed lookups of races, teams and finishes, by equal
+ * copies of them rather than by the instances stored, as when a race
+ * is named by its number and division: every race and team in hash
+ * maps, every finish in a hash set, and every finish through
+ * <code>Regatta.getFinish</code>.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HashLookupBenchmark {
+
+  @Param({"18", "50"})
+  public int teams;
+
+  @Param({"2", "4"})
+  public int divisions;
+
+  @Param({"18"})
+  public int races;
+
+  private Regatta regatta;
+  private Map<Race, Race> raceMap;
+  private Map<Team, Team> teamMap;
+  private Set<Finish> finishSet;
+
+  // Equal copies of the regatta's races, teams and finishes
+  private Race [] raceCopies;
+  private Team [] teamCopies;
+  private Finish [] finishCopies;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    this.regatta = new RegattaGenerator(teams, divisions, races).generate();
+    Race [] raceList = this.regatta.getRaces();
+    Team [] teamList = this.regatta.getTeams();
+
+    this.raceMap = new HashMap<Race, Race>();
+    this.raceCopies = new Race [raceList.length];
+    for (int r = 0; r < raceList.length; r++) {
+      this.raceMap.put(raceList[r], raceList[r]);
+      this.raceCopies[r] = new Race(raceList[r].getDivision(),
+				    raceList[r].getNumber());
+    }
+    this.teamMap = new HashMap<Team, Team>();
+    this.teamCopies = new Team [teamList.length];
+    for (int t = 0; t < teamList.length; t++) {
+      this.teamMap.put(teamList[t], teamList[t]);
+      this.teamCopies[t] = new Team(teamList[t].getLongname(),
+				    teamList[t].getShortname());
+    }
+
+    this.finishSet = new HashSet<Finish>();
+    this.finishCopies = new Finish [raceList.length * teamList.length];
+    for (int r = 0; r < raceList.length; r++) {
+      for (int t = 0; t < teamList.length; t++) {
+	Finish finish = this.regatta.getFinish(raceList[r], teamList[t]);
+	this.finishSet.add(finish);
+	this.finishCopies[r * teamList.length + t] =
+	  new Finish(this.raceCopies[r], this.teamCopies[t],
+		     finish.getTimestamp());
+      }
+    }
+  }
+
+  @Benchmark
+  public int raceMapGet() {
+    int found = 0;
+    for (Race race : this.raceCopies) {
+      if (this.raceMap.get(race) != null)
+	found++;
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int teamMapGet() {
+    int found = 0;
+    for (Team team : this.teamCopies) {
+      if (this.teamMap.get(team) != null)
+	found++;
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int finishSetContains() {
+    int found = 0;
+    for (Finish finish : this.finishCopies) {
+      if (this.finishSet.contains(finish))
+	found++;
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int getFinish() {
+    int found = 0;
+    for (Race race : this.raceCopies) {
+      for (Team team : this.teamCopies) {
+	if (this.regatta.getFinish(race, team) != null)
+	  found++;
+      }
+    }
+    return found;
+  }
+}
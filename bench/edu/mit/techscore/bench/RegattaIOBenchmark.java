@@ -0,0 +1,139 @@
+package edu.mit.techscore.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.tscore.ICSAScorer;
+import edu.mit.techscore.tscore.RegattaGenerator;
+import edu.mit.techscore.tscore.RegattaIO;
+
+/**
+ * Measures the three ways <code>RegattaIO</code> touches a regatta
+ * file: reading it, writing it from scratch, and rewriting it over
+ * an existing file; and reading and writing the same regatta in the
+ * binary format, plain and compressed, to compare load times.
+ *
+ * This file is part of TechScore.
+ * 
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RegattaIOBenchmark {
+
+  @Param({"18", "50"})
+  public int teams;
+
+  @Param({"2", "4"})
+  public int divisions;
+
+  @Param({"9", "18"})
+  public int races;
+
+  /**
+   * Percentage of finishes tied with the boat ahead
+   */
+  @Param({"0", "30"})
+  public int ties;
+
+  private Regatta regatta;
+  private File inFile, outFile, binFile, zipFile;
+  private RegattaIO io;
+
+  @Setup(Level.Trial)
+  public void generate() throws IOException {
+    RegattaGenerator gen = new RegattaGenerator(teams, divisions, races);
+    gen.setTieRate(ties);
+    gen.setSeed(1);
+    this.regatta = gen.generate();
+    new ICSAScorer().score(this.regatta);
+
+    this.inFile  = File.createTempFile("bench", ".tsr");
+    this.outFile = File.createTempFile("bench", ".tsr");
+    this.io = new RegattaIO();
+    if (!this.io.writeFile(this.regatta, this.inFile))
+      throw new IOException("Unable to write " + this.inFile);
+    this.io.readFile(this.inFile);
+
+    this.binFile = File.createTempFile("bench", ".tsb");
+    this.zipFile = File.createTempFile("bench", ".tsb");
+    if (!this.io.writeBinaryFile(this.regatta, this.binFile, false) ||
+	!this.io.writeBinaryFile(this.regatta, this.zipFile, true))
+      throw new IOException("Unable to write " + this.binFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void cleanup() {
+    this.inFile.delete();
+    this.outFile.delete();
+    this.binFile.delete();
+    this.zipFile.delete();
+  }
+
+  @Benchmark
+  public Regatta readFile() {
+    RegattaIO reader = new RegattaIO();
+    reader.readFile(this.inFile);
+    return reader.getRegatta();
+  }
+
+  @Benchmark
+  public Regatta readBinaryFile() {
+    RegattaIO reader = new RegattaIO();
+    reader.readFile(this.binFile);
+    return reader.getRegatta();
+  }
+
+  @Benchmark
+  public Regatta readCompressedFile() {
+    RegattaIO reader = new RegattaIO();
+    reader.readFile(this.zipFile);
+    return reader.getRegatta();
+  }
+
+  @Benchmark
+  public boolean writeFile() {
+    return this.io.writeFile(this.regatta, this.outFile);
+  }
+
+  @Benchmark
+  public boolean rewriteFile() {
+    return this.io.rewriteFile(this.regatta, this.inFile, this.outFile);
+  }
+
+  @Benchmark
+  public boolean writeBinaryFile() {
+    return this.io.writeBinaryFile(this.regatta, this.outFile, false);
+  }
+}
@@ -0,0 +1,132 @@
+package edu.mit.techscore.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Rotation;
+import edu.mit.techscore.regatta.Rotation.RotationStyle;
+import edu.mit.techscore.regatta.Rotation.RotationType;
+import edu.mit.techscore.regatta.Sail;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.tscore.ICSARotationBuilder;
+import edu.mit.techscore.tscore.RotationBuilderException;
+
+/**
+ * Measures <code>ICSARotationBuilder.fillRotation</code> into an
+ * empty rotation, for each rotation style, and the lookups made of
+ * the filled rotation: the team of every sail, as when entering
+ * finishes by sail, and <code>normalize</code>.
+ *
+ * This file is part of TechScore.
+ * 
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RotationBenchmark {
+
+  @Param({"18", "50"})
+  public int teams;
+
+  @Param({"2", "4"})
+  public int divisions;
+
+  @Param({"9", "18"})
+  public int races;
+
+  @Param({"NONE", "NAVY", "FRANNY"})
+  public RotationStyle style;
+
+  private Race [][] raceMap;
+  private Team [] teamList;
+  private Sail [] sails;
+  private ICSARotationBuilder builder;
+  private Rotation filled;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    Regatta reg = new Regatta("Rotation");
+    reg.createRaces(divisions, races);
+    for (int t = 0; t < teams; t++) {
+      reg.addTeam(new Team("Team " + (t + 1)));
+    }
+    Division [] divs = reg.getDivisions();
+    this.raceMap = new Race[divs.length][];
+    for (int d = 0; d < divs.length; d++) {
+      this.raceMap[d] = reg.getRaces(divs[d]);
+    }
+    this.teamList = reg.getTeams();
+    this.sails = new Sail[teams];
+    for (int i = 0; i < teams; i++) {
+      this.sails[i] = new Sail(String.valueOf(i + 1));
+    }
+    this.builder = new ICSARotationBuilder();
+    try {
+      this.filled = this.fillRotation();
+    } catch (RotationBuilderException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Benchmark
+  public Rotation fillRotation() throws RotationBuilderException {
+    Rotation rot = new Rotation();
+    this.builder.fillRotation(rot,
+			      RotationType.STANDARD,
+			      this.style,
+			      this.raceMap,
+			      this.teamList,
+			      this.sails,
+			      2);
+    return rot;
+  }
+
+  @Benchmark
+  public int getTeams() {
+    int found = 0;
+    for (Race [] divRaces : this.raceMap) {
+      for (Race race : divRaces) {
+	for (Sail sail : this.filled.getSails(race)) {
+	  if (this.filled.getTeam(race, sail) != null)
+	    found++;
+	}
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public Race [] normalize() {
+    return this.filled.normalize();
+  }
+}
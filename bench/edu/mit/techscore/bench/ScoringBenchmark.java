@@ -0,0 +1,146 @@
+package edu.mit.techscore.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.tscore.ICSAScorer;
+import edu.mit.techscore.tscore.RegattaGenerator;
+
+/**
+ * Measures <code>ICSAScorer</code>: a full rescore, the rescore that
+ * follows a change to the finishes of one race, and the ranking of
+ * the teams overall and in a single division. The full rescore is
+ * also measured with the races placed on the calling thread and on
+ * the fork/join pool, whatever their number, to compare the two on
+ * machines with many cores.
+ *
+ * This file is part of TechScore.
+ * 
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScoringBenchmark {
+
+  @Param({"18", "50"})
+  public int teams;
+
+  @Param({"2", "4", "8"})
+  public int divisions;
+
+  @Param({"9", "18"})
+  public int races;
+
+  /**
+   * Percentage of finishes tied with the boat ahead
+   */
+  @Param({"0", "30"})
+  public int ties;
+
+  private Regatta regatta;
+  private ICSAScorer scorer;
+  private ICSAScorer sortKeyScorer;
+  private Race [] raceList;
+  private int nextRace;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    RegattaGenerator gen = new RegattaGenerator(teams, divisions, races);
+    gen.setTieRate(ties);
+    gen.setSeed(1);
+    this.regatta = gen.generate();
+    this.raceList = this.regatta.getRaces();
+    this.scorer = new ICSAScorer();
+    this.scorer.score(this.regatta);
+    this.sortKeyScorer = new ICSAScorer();
+    this.sortKeyScorer.setSortKeyRanking(true);
+    this.nextRace = 0;
+  }
+
+  /**
+   * Marks the next race as changed, cycling through every race
+   */
+  @Setup(Level.Invocation)
+  public void touch() {
+    Race race = this.raceList[this.nextRace];
+    this.nextRace = (this.nextRace + 1) % this.raceList.length;
+    Team team = this.regatta.getTeams()[0];
+    Finish finish = this.regatta.getFinish(race, team);
+    this.regatta.setFinish(finish);
+  }
+
+  @Benchmark
+  public Regatta scoreFull() {
+    new ICSAScorer().score(this.regatta);
+    return this.regatta;
+  }
+
+  @Benchmark
+  public Regatta scoreFullSequential() {
+    ICSAScorer full = new ICSAScorer();
+    full.setParallelThreshold(Integer.MAX_VALUE);
+    full.score(this.regatta);
+    return this.regatta;
+  }
+
+  @Benchmark
+  public Regatta scoreFullParallel() {
+    ICSAScorer full = new ICSAScorer();
+    full.setParallelThreshold(0);
+    full.score(this.regatta);
+    return this.regatta;
+  }
+
+  @Benchmark
+  public Regatta scoreOneRace() {
+    this.scorer.score(this.regatta);
+    return this.regatta;
+  }
+
+  @Benchmark
+  public Team [] rank() {
+    return this.scorer.rank(this.regatta);
+  }
+
+  @Benchmark
+  public Team [] rankSortKey() {
+    return this.sortKeyScorer.rank(this.regatta);
+  }
+
+  @Benchmark
+  public Team [] rankDivision() {
+    return this.scorer.rank(this.regatta, Division.A);
+  }
+}
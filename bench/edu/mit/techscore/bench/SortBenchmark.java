@@ -0,0 +1,105 @@
+package edu.mit.techscore.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.techscore.tscore.Factory;
+
+/**
+ * Compares <code>Factory.multiSort</code> (merge sort of boxed,
+ * parallel lists) with <code>Factory.sortIndex</code> and
+ * <code>Factory.permute</code> (stable sort of an int permutation
+ * by a primitive key), for the lists the scorers sort: team totals
+ * and the teams themselves.
+ *
+ * This file is part of TechScore.
+ * 
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SortBenchmark {
+
+  /**
+   * Number of entries to sort
+   */
+  @Param({"18", "100", "1000"})
+  public int size;
+
+  /**
+   * Number of distinct keys, as a percentage of the size: the lower
+   * the number, the more ties.
+   */
+  @Param({"10", "100"})
+  public int distinct;
+
+  private int [] keys;
+  private String [] names;
+
+  private List<Integer> keyList;
+  private List<String> nameList;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    Random rand = new Random(size);
+    int range = Math.max(1, size * distinct / 100);
+    this.keys = new int [size];
+    this.names = new String [size];
+    for (int i = 0; i < size; i++) {
+      this.keys[i] = rand.nextInt(range);
+      this.names[i] = "Team " + i;
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void copy() {
+    this.keyList = new ArrayList<Integer>(size);
+    this.nameList = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      this.keyList.add(Integer.valueOf(this.keys[i]));
+      this.nameList.add(this.names[i]);
+    }
+  }
+
+  @Benchmark
+  public List<String> multiSort() {
+    Factory.multiSort(this.keyList, this.nameList);
+    return this.nameList;
+  }
+
+  @Benchmark
+  public List<String> sortIndex() {
+    Factory.permute(Factory.sortIndex(this.keys), this.nameList);
+    return this.nameList;
+  }
+}
@@ -0,0 +1,164 @@
+package edu.mit.techscore.tscore;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.RegattaScoring;
+import edu.mit.techscore.regatta.Team;
+
+/**
+ * Checks that races, teams and finishes are values in hashed
+ * collections: that equal copies of them, made anew, have the same
+ * hash code, and find the same entries in hash maps and sets, and in
+ * <code>Regatta.getFinish</code>, as the originals, for the regattas
+ * made by {@link RegattaGenerator}.<p>
+ *
+ * Run from the command line, the check prints every difference, and
+ * exits with a non-zero status if there are any:
+ *
+ * <pre>
+ * HashCheck [-t teams] [-d divisions] [-r races]
+ * </pre>
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 19:48:27 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class HashCheck {
+
+  private int differences;
+
+  /**
+   * Creates a new <code>HashCheck</code> instance.
+   *
+   */
+  public HashCheck() {
+    this.differences = 0;
+  }
+
+  /**
+   * Checks the races, teams and finishes of the given regatta.
+   *
+   * @param reg the regatta
+   * @return the number of differences found so far
+   */
+  public int check(Regatta reg) {
+    Race [] races = reg.getRaces();
+    Team [] teams = reg.getTeams();
+
+    Map<Race, Race> raceMap = new HashMap<Race, Race>();
+    for (Race race : races)
+      raceMap.put(race, race);
+    for (Race race : races) {
+      Race copy = new Race(race.getDivision(), race.getNumber());
+      this.expect(copy.equals(race) && race.equals(copy),
+		  "race " + race + " equals its copy");
+      this.expect(copy.hashCode() == race.hashCode(),
+		  "race " + race + " hashes as its copy");
+      this.expect(raceMap.get(copy) == race,
+		  "race " + race + " found by its copy");
+    }
+
+    Map<Team, Team> teamMap = new HashMap<Team, Team>();
+    for (Team team : teams)
+      teamMap.put(team, team);
+    for (Team team : teams) {
+      Team copy = new Team(team.getLongname(), team.getShortname());
+      this.expect(copy.equals(team) && team.equals(copy),
+		  "team " + team + " equals its copy");
+      this.expect(copy.hashCode() == team.hashCode(),
+		  "team " + team + " hashes as its copy");
+      this.expect(teamMap.get(copy) == team,
+		  "team " + team + " found by its copy");
+    }
+
+    Set<Finish> finishes = new HashSet<Finish>();
+    for (Race race : races) {
+      for (Team team : teams) {
+	Finish finish = reg.getFinish(race, team);
+	if (finish != null)
+	  finishes.add(finish);
+      }
+    }
+    for (Race race : races) {
+      Race raceCopy = new Race(race.getDivision(), race.getNumber());
+      for (Team team : teams) {
+	Finish finish = reg.getFinish(race, team);
+	if (finish == null)
+	  continue;
+	Team teamCopy = new Team(team.getLongname(), team.getShortname());
+	Finish copy = new Finish(raceCopy, teamCopy, finish.getTimestamp());
+	this.expect(copy.hashCode() == finish.hashCode(),
+		    "finish " + race + " " + team + " hashes as its copy");
+	this.expect(finishes.contains(copy),
+		    "finish " + race + " " + team + " found by its copy");
+	this.expect(reg.getFinish(raceCopy, teamCopy) == finish,
+		    "finish " + race + " " + team + " found in the regatta");
+      }
+    }
+    return this.differences;
+  }
+
+  private void expect(boolean condition, String message) {
+    if (!condition) {
+      System.err.println("Failed: " + message);
+      this.differences++;
+    }
+  }
+
+  /**
+   * Checks a generated regatta of the size given, with standard and
+   * combined scoring.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String [] args) {
+    String usage = "usage: HashCheck [-t teams] [-d divisions] [-r races]";
+    RegattaGenerator gen = new RegattaGenerator();
+    try {
+      for (int i = 0; i < args.length; i++) {
+	if (args[i].equals("-t"))
+	  gen.setNumTeams(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-d"))
+	  gen.setNumDivisions(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-r"))
+	  gen.setNumRaces(Integer.parseInt(args[++i]));
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    HashCheck check = new HashCheck();
+    check.check(gen.generate());
+    gen.setScoring(RegattaScoring.COMBINED);
+    int differences = check.check(gen.generate());
+    System.out.println(differences + " differences");
+    if (differences > 0)
+      System.exit(1);
+  }
+}
@@ -0,0 +1,327 @@
+package edu.mit.techscore.tscore;
+
+import java.util.Map;
+import java.util.Random;
+
+import edu.mit.techscore.regatta.Breakdown;
+import edu.mit.techscore.regatta.Breakdown.BreakdownType;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.Penalty;
+import edu.mit.techscore.regatta.Penalty.PenaltyType;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Regatta.RegattaScoring;
+import edu.mit.techscore.regatta.Team;
+
+/**
+ * Checks the scorer against itself on regattas made by
+ * {@link RegattaGenerator}: every regatta is scored once, then edited
+ * and scored again after each edit, which only places the races
+ * edited; the result must be the same as scoring every race of a
+ * fresh copy of the regatta after each of the same edits. (Average
+ * finishes count the previous scores of the team's other average
+ * finishes, and so depend on the scores before each edit, as they
+ * always have.) Each regatta is then
+ * ranked, as a whole and by division, both by settling each tie in
+ * turn and with a single sort on composite keys (see
+ * {@link ICSAScorer#setSortKeyRanking}), which must give the same
+ * order and explanations; and again with random scores, which tie
+ * far more often.<p>
+ *
+ * Run from the command line, the check prints every difference, and
+ * exits with a non-zero status if there are any:
+ *
+ * <pre>
+ * ScoringCheck [-n regattas] [-e edits] [-s seed]
+ * </pre>
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 19:05:12 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class ScoringCheck {
+
+  private int numRegattas;
+  private int numEdits;
+  private long seed;
+
+  /**
+   * Creates a new <code>ScoringCheck</code> of 3000 regattas, with
+   * three edits each.
+   *
+   */
+  public ScoringCheck() {
+    this.numRegattas = 3000;
+    this.numEdits = 3;
+    this.seed = 0;
+  }
+
+  /**
+   * Get the <code>NumRegattas</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumRegattas() {
+    return numRegattas;
+  }
+
+  /**
+   * Set the <code>NumRegattas</code> value.
+   *
+   * @param newNumRegattas The new NumRegattas value.
+   */
+  public final void setNumRegattas(final int newNumRegattas) {
+    this.numRegattas = newNumRegattas;
+  }
+
+  /**
+   * Get the <code>NumEdits</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumEdits() {
+    return numEdits;
+  }
+
+  /**
+   * Set the <code>NumEdits</code> value.
+   *
+   * @param newNumEdits The new NumEdits value.
+   */
+  public final void setNumEdits(final int newNumEdits) {
+    this.numEdits = newNumEdits;
+  }
+
+  /**
+   * Get the <code>Seed</code> value.
+   *
+   * @return a <code>long</code> value
+   */
+  public final long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Set the <code>Seed</code> value.
+   *
+   * @param newSeed The new Seed value.
+   */
+  public final void setSeed(final long newSeed) {
+    this.seed = newSeed;
+  }
+
+  /**
+   * Runs the check.
+   *
+   * @return the number of differences found
+   */
+  public int run() {
+    int differences = 0;
+    for (int c = 0; c < this.numRegattas; c++) {
+      Random rand = new Random(this.seed + c);
+      RegattaGenerator gen = createGenerator(rand);
+      int [][] edits = new int [this.numEdits][];
+      for (int e = 0; e < edits.length; e++) {
+	edits[e] = new int [] {rand.nextInt(gen.getNumRaces() *
+					    gen.getNumDivisions()),
+			       rand.nextInt(gen.getNumTeams()),
+			       rand.nextInt(5),
+			       rand.nextInt(gen.getNumTeams()) + 1};
+      }
+
+      // Score after every edit...
+      Regatta incremental = gen.generate();
+      ICSAScorer scorer = new ICSAScorer();
+      scorer.score(incremental);
+      for (int [] edit : edits) {
+	edit(incremental, edit);
+	scorer.score(incremental);
+      }
+
+      // ...placing every race each time
+      Regatta full = gen.generate();
+      new ICSAScorer().score(full);
+      for (int [] edit : edits) {
+	edit(full, edit);
+	new ICSAScorer().score(full);
+      }
+
+      differences += this.compareScores(c, incremental, full);
+
+      differences += this.compareRankings(c, full);
+      for (int i = 0; i < 2; i++) {
+	randomScores(full, rand);
+	differences += this.compareRankings(c, full);
+      }
+    }
+    return differences;
+  }
+
+  /**
+   * A small regatta, with many breakdowns, so that teams often have
+   * several average finishes in the same division
+   */
+  private static RegattaGenerator createGenerator(Random rand) {
+    RegattaGenerator gen = new RegattaGenerator(2 + rand.nextInt(11),
+						1 + rand.nextInt(4),
+						1 + rand.nextInt(12));
+    if (rand.nextInt(4) == 0)
+      gen.setScoring(RegattaScoring.COMBINED);
+    gen.setSeed(rand.nextLong());
+    gen.setBreakdownRate(5 + rand.nextInt(30));
+    gen.setTieRate(rand.nextInt(3) * 20);
+    return gen;
+  }
+
+  /**
+   * Changes the adjustment of one finish, or renames its team, which
+   * breaks ties between finishes: { race, team, kind, handicap }
+   */
+  private static void edit(Regatta reg, int [] edit) {
+    Race race = reg.getRaces()[edit[0]];
+    Team team = reg.getTeams()[edit[1]];
+    Finish finish = reg.getFinish(race, team);
+    switch (edit[2]) {
+    case 0:
+      finish.setBreakdown(new Breakdown(BreakdownType.BKD, "", -1));
+      break;
+    case 1:
+      finish.setBreakdown(new Breakdown(BreakdownType.RDG, "", edit[3]));
+      break;
+    case 2:
+      finish.setPenalty(new Penalty(PenaltyType.DSQ));
+      break;
+    case 3:
+      reg.setTeamName(team, "Z" + team.getLongname(), team.getShortname());
+      return;
+    default:
+      finish.setAdjustment(null);
+    }
+    reg.setFinish(finish);
+  }
+
+  private int compareScores(int c, Regatta incremental, Regatta full) {
+    int differences = 0;
+    Race [] races = incremental.getRaces();
+    Team [] teams = incremental.getTeams();
+    Race [] fullRaces = full.getRaces();
+    Team [] fullTeams = full.getTeams();
+    for (int r = 0; r < races.length; r++) {
+      for (int t = 0; t < teams.length; t++) {
+	Finish a = incremental.getFinish(races[r], teams[t]);
+	Finish b = full.getFinish(fullRaces[r], fullTeams[t]);
+	if (a.getScore() != b.getScore()) {
+	  System.err.println("case " + c + ", " + races[r] + " team " +
+			     teams[t].getShortname() + ": incremental " +
+			     a.getScore() + ", full " + b.getScore());
+	  differences++;
+	}
+      }
+    }
+    return differences;
+  }
+
+  /**
+   * Sets every finished score to a small random number, or to the
+   * penalty score, so that teams tie on total, head-to-head, and
+   * places alike
+   */
+  private static void randomScores(Regatta reg, Random rand) {
+    Team [] teams = reg.getTeams();
+    int max = 1 + rand.nextInt(teams.length);
+    for (Race race : reg.getFinishedRaces()) {
+      for (Team team : teams) {
+	Finish finish = reg.getFinish(race, team);
+	if (finish != null)
+	  finish.setScore((rand.nextInt(10) == 0) ?
+			  teams.length + 1 : 1 + rand.nextInt(max));
+      }
+    }
+  }
+
+  private int compareRankings(int c, Regatta reg) {
+    ICSAScorer recursive = new ICSAScorer();
+    ICSAScorer sortKey = new ICSAScorer();
+    sortKey.setSortKeyRanking(true);
+
+    int differences = 0;
+    Division [] divs = reg.getDivisions();
+    for (int d = -1; d < divs.length; d++) {
+      String a, b;
+      if (d < 0) {
+	a = describe(recursive, recursive.rank(reg));
+	b = describe(sortKey, sortKey.rank(reg));
+      }
+      else {
+	a = describe(recursive, recursive.rank(reg, divs[d]));
+	b = describe(sortKey, sortKey.rank(reg, divs[d]));
+      }
+      if (!a.equals(b)) {
+	System.err.println("case " + c + ", ranking " +
+			   ((d < 0) ? "all" : divs[d].toString()) +
+			   ":\n  recursive " + a + "\n  sort key  " + b);
+	differences++;
+      }
+    }
+    return differences;
+  }
+
+  private static String describe(ICSAScorer scorer, Team [] ranks) {
+    Map<Team, String> explanations = scorer.getRankExplanations();
+    StringBuilder sb = new StringBuilder();
+    for (Team team : ranks) {
+      sb.append(team.getShortname()).append(" (")
+	.append(explanations.get(team)).append(") ");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Runs the check, with the options given.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String [] args) {
+    String usage = "usage: ScoringCheck [-n regattas] [-e edits] [-s seed]";
+    ScoringCheck check = new ScoringCheck();
+    try {
+      for (int i = 0; i < args.length; i++) {
+	if (args[i].equals("-n"))
+	  check.setNumRegattas(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-e"))
+	  check.setNumEdits(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-s"))
+	  check.setSeed(Long.parseLong(args[++i]));
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    int differences = check.run();
+    System.out.println(check.getNumRegattas() + " regattas, " +
+		       differences + " differences");
+    if (differences > 0)
+      System.exit(1);
+  }
+}
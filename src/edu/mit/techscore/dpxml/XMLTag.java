@@ -1,5 +1,8 @@
 package edu.mit.techscore.dpxml;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.ArrayList;
 
@@ -87,33 +90,55 @@ public class XMLTag {
    * @return XML string, no indentation.
    */
   public String toXMLString() {
-    String rep = String.format("<%s", this.name);
+    StringWriter out = new StringWriter();
+    try {
+      this.write(out);
+    } catch (IOException e) {
+      // StringWriter does not throw
+    }
+    return out.toString();
+  }
+
+  /**
+   * Writes the same string as <code>toXMLString</code> to the given
+   * writer, without building it in memory first.
+   *
+   * @param out the writer
+   * @throws IOException if unable to write
+   */
+  public void write(Writer out) throws IOException {
+    out.write('<');
+    out.write(this.name);
 
     // Write attributes
-    String [] attrs = this.getAttrs();
-    for (int i = 0; i < attrs.length; i++) {
-      String [] values = this.getAttr(attrs[i]);
-      String attRep = values[0];
-      for (int j = 1; j < values.length; j++) {
-	attRep += (" " + values[j]);
+    for (String a : this.attr.keySet()) {
+      out.write(' ');
+      out.write(a);
+      out.write("=\"");
+      ArrayList<String> values = this.attr.get(a);
+      for (int j = 0; j < values.size(); j++) {
+	if (j > 0)
+	  out.write(' ');
+	out.write(String.valueOf(values.get(j)));
       }
-      rep += String.format(" %s=\"%s\"", attrs[i], attRep);
+      out.write('"');
     }
 
     // Any children?
     if (this.children.size() == 0) {
-      rep += "/>";
-      return rep;
+      out.write("/>");
+      return;
     }
-    rep += ">";
+    out.write('>');
 
     // Write children
     for (int i = 0; i < this.children.size(); i++) {
-      rep += this.children.get(i).toXMLString();
+      this.children.get(i).write(out);
     }
 
     // Close tag
-    rep += String.format("</%s>", this.name);
-    return rep;
+    out.write("</");
+    out.write(this.name);
+    out.write('>');
   }
 }
@@ -1,5 +1,8 @@
 package edu.mit.techscore.dpxml;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * For writing text values in XML file.
  *
@@ -29,4 +32,8 @@ public class XMLTextTag extends XMLTag {
   public String toXMLString() {
     return this.text;
   }
+
+  public void write(Writer out) throws IOException {
+    out.write(String.valueOf(this.text));
+  }
 }
@@ -0,0 +1,221 @@
+package edu.mit.techscore.dpxml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes XML straight to a <code>Writer</code>, one tag at a time,
+ * rather than building a tree of {@link XMLTag}s in memory first.
+ * Text and attribute values are escaped. Tags are closed in reverse
+ * order of opening, and a tag with no content is written as an
+ * empty element:
+ *
+ * <pre>
+ * XMLWriter out = new XMLWriter(writer);
+ * out.startTag("Team");
+ * out.addAttr("id", "t1");
+ * out.startTag("LongName");
+ * out.addText("MIT & Harvard");
+ * out.endTag();
+ * out.endTag();
+ * </pre>
+ *
+ * writes <code>&lt;Team id="t1"&gt;&lt;LongName&gt;MIT &amp;amp;
+ * Harvard&lt;/LongName&gt;&lt;/Team&gt;</code>.
+ *
+ * Created: Sun Oct 18 13:02:51 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class XMLWriter {
+  private Writer out;
+  private List<String> open;
+
+  // Whether the last start tag is missing its closing '>'
+  private boolean inStartTag;
+
+  /**
+   * Creates a new <code>XMLWriter</code> to the given writer.
+   *
+   * @param out the writer, which should be buffered
+   */
+  public XMLWriter(Writer out) {
+    this.out = out;
+    this.open = new ArrayList<String>();
+    this.inStartTag = false;
+  }
+
+  /**
+   * Creates a new <code>XMLWriter</code> which writes UTF-8 to the
+   * given stream.
+   *
+   * @param out the stream
+   */
+  public XMLWriter(OutputStream out) {
+    this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Writes the XML declaration, for UTF-8 encoding.
+   *
+   * @throws IOException if unable to write
+   */
+  public void writeDeclaration() throws IOException {
+    this.out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+  }
+
+  /**
+   * Opens a new tag, inside the currently open one.
+   *
+   * @param name the name of the tag
+   * @throws IOException if unable to write
+   */
+  public void startTag(String name) throws IOException {
+    this.closeStartTag();
+    this.out.write('<');
+    this.out.write(name);
+    this.open.add(name);
+    this.inStartTag = true;
+  }
+
+  /**
+   * Adds an attribute to the tag just opened.
+   *
+   * @param name the name of the attribute
+   * @param value its value, which will be escaped
+   * @throws IOException if unable to write
+   * @throws IllegalStateException if the tag already has content
+   */
+  public void addAttr(String name, String value) throws IOException {
+    if (!this.inStartTag)
+      throw new IllegalStateException("Attributes must precede content: " + name);
+    this.out.write(' ');
+    this.out.write(name);
+    this.out.write("=\"");
+    this.escape(value, true);
+    this.out.write('"');
+  }
+
+  /**
+   * Adds text to the currently open tag.
+   *
+   * @param text the text, which will be escaped
+   * @throws IOException if unable to write
+   */
+  public void addText(String text) throws IOException {
+    this.closeStartTag();
+    this.escape(text, false);
+  }
+
+  /**
+   * Convenience method: writes a tag with only text as content.
+   *
+   * @param name the name of the tag
+   * @param text the text
+   * @throws IOException if unable to write
+   */
+  public void addTextTag(String name, String text) throws IOException {
+    this.startTag(name);
+    this.addText(text);
+    this.endTag();
+  }
+
+  /**
+   * Closes the currently open tag.
+   *
+   * @throws IOException if unable to write
+   * @throws IllegalStateException if there is no open tag
+   */
+  public void endTag() throws IOException {
+    if (this.open.isEmpty())
+      throw new IllegalStateException("No open tag to end.");
+    String name = this.open.remove(this.open.size() - 1);
+    if (this.inStartTag) {
+      this.out.write("/>");
+      this.inStartTag = false;
+      return;
+    }
+    this.out.write("</");
+    this.out.write(name);
+    this.out.write('>');
+  }
+
+  /**
+   * Writes the given tree of tags inside the currently open
+   * one. Text tags are written as is, as with
+   * {@link XMLTag#toXMLString}.
+   *
+   * @param tag the root of the tree
+   * @throws IOException if unable to write
+   */
+  public void write(XMLTag tag) throws IOException {
+    this.closeStartTag();
+    tag.write(this.out);
+  }
+
+  /**
+   * Flushes the underlying writer.
+   *
+   * @throws IOException if unable to flush
+   */
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  /**
+   * Closes any tags still open, and the underlying writer.
+   *
+   * @throws IOException if unable to write
+   */
+  public void close() throws IOException {
+    while (!this.open.isEmpty())
+      this.endTag();
+    this.out.close();
+  }
+
+  private void closeStartTag() throws IOException {
+    if (this.inStartTag) {
+      this.out.write('>');
+      this.inStartTag = false;
+    }
+  }
+
+  /**
+   * Writes the string, escaping the characters which are special to
+   * XML. In attributes, also escape quotes and whitespace other than
+   * spaces, which parsers would otherwise normalize away.
+   */
+  private void escape(String s, boolean inAttr) throws IOException {
+    if (s == null)
+      return;
+    int len = s.length();
+    int from = 0;
+    for (int i = 0; i < len; i++) {
+      String rep;
+      char c = s.charAt(i);
+      switch (c) {
+      case '&': rep = "&amp;"; break;
+      case '<': rep = "&lt;";  break;
+      case '>': rep = "&gt;";  break;
+      case '"':  rep = inAttr ? "&quot;" : null; break;
+      case '\n': rep = inAttr ? "&#10;"  : null; break;
+      case '\r': rep = "&#13;"; break;
+      case '\t': rep = inAttr ? "&#9;"   : null; break;
+      default:   rep = null;
+      }
+      if (rep != null) {
+	this.out.write(s, from, i - from);
+	this.out.write(rep);
+	from = i + 1;
+      }
+    }
+    this.out.write(s, from, len - from);
+  }
+}
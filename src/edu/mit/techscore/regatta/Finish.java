@@ -175,6 +175,20 @@ public class Finish implements Comparable<Finish> {
     this.adjust = a;
   }
 
+  /**
+   * Returns a copy of this finish, with the same score and
+   * adjustment, for the given team, e.g. for a regatta snapshot.
+   *
+   * @param t the team of the copy
+   * @return a new <code>Finish</code>
+   */
+  Finish copy(Team t) {
+    Finish f = new Finish(this.race, t, this.timestamp);
+    f.score = this.score;
+    f.adjust = this.adjust;
+    return f;
+  }
+
   public String toString() {
     if (this.adjust != null) {
       return this.adjust.toString();
@@ -17,18 +17,12 @@
  */
 package edu.mit.techscore.regatta;
 
-import java.io.File;
-import java.util.Set;
-import java.util.TreeSet;
 import java.io.IOException;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.List;
-import java.util.Date;
-import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Tracks the membership of different sailors by using their
@@ -39,10 +33,8 @@ import java.util.Calendar;
  * database will not allow new entries, or provide for a drop-down
  * list of current entries prior to entering new informtation, etc.<p>
  *
- * The database is stored as files in a directory, which can be
- * specified with {@link setDatabaseDir}. The files are named after
- * their affiliation code, and are ordered according to the following
- * scheme:<p>
+ * Each affiliation, named by its code in upper case, holds its
+ * members by ID, with the following fields:<p>
  *
  * <table>
  * <tr>
@@ -62,9 +54,13 @@ import java.util.Calendar;
  * scratch. Note, however, that the default value for that field is
  * true.<p>
  *
- * Each record is stored in the file in one line. Each field is
- * tab-delimited, and each line is separated by the OS's native
- * newline delimiter.<p>
+ * The database is kept in memory only, for as long as its regatta
+ * is open, and is filled from the regatta file. The members added
+ * since the regatta was last saved survive a crash in the regatta's
+ * {@link edu.mit.techscore.tscore.RegattaJournal journal}.<p>
+ *
+ * The database may be read and changed from several threads, e.g.
+ * while a regatta is saved in the background.
  *
  * Created: Sun Jun 20 22:02:29 2010
  *
@@ -74,71 +70,26 @@ import java.util.Calendar;
  */
 public class MembershipDatabase {
 
-  /**
-   * Describe databaseDir here.
-   */
-  private File databaseDir;
-
   /**
    * Describe strict here.
    */
   private boolean strict;
 
-  // Determines whether the database can be used at all
-  private boolean isUsable;
+  /**
+   * Members of each affiliation, by ID, in the order in which they
+   * were last set
+   */
+  private Map<String, Map<String, Member>> members;
 
   /**
    * Creates a new <code>MembershipDatabase</code> instance.
    *
    */
   public MembershipDatabase() {
-    try {
-      File dir = File.createTempFile("tsr", "");
-      this.databaseDir = new File(dir.getPath());
-      dir.delete();
-      this.databaseDir.mkdir();
-      this.databaseDir.deleteOnExit();
-      System.out.println("Created directory " + this.databaseDir);
-      
-      this.isUsable = true;
-    } catch (IOException e) {
-      this.isUsable = false;
-    }
+    this.members = new TreeMap<String, Map<String, Member>>();
     this.strict = false;
   }
 
-  /**
-   * Get the <code>DatabaseDir</code> value.
-   *
-   * @return a <code>File</code> value
-   */
-  public final File getDatabaseDir() {
-    return databaseDir;
-  }
-
-  /**
-   * Set the <code>DatabaseDir</code> value.
-   *
-   * @param newDatabaseDir The new DatabaseDir value.
-   * @throws IllegalArgumentException if not a directory
-   */
-  public final void setDatabaseDir(final File newDatabaseDir)
-    throws IOException {
-
-    if (!newDatabaseDir.isDirectory())
-      throw new IllegalArgumentException(newDatabaseDir + " is not a directory.");
-
-    // Move all files to new directory
-    if (newDatabaseDir.canWrite()) {
-      for (File f : databaseDir.listFiles()) {
-	if (!f.renameTo(new File(newDatabaseDir, f.getName())))
-	  throw new IOException("Unable to move database file to new directory");
-      }
-    }
-
-    this.databaseDir = newDatabaseDir;
-  }
-
   /**
    * Get the <code>Strict</code> value.
    *
@@ -158,29 +109,20 @@ public class MembershipDatabase {
   }
   
   /**
-   * Gets the set of affiliations currently in use by all the teams in
-   * this regatta, plus the "_MISC" affiliation. Also, delete all
-   * affiliation files from database which are empty and not in use by
-   * any team (except, of course, for "_MISC")
+   * Gets the affiliations in the database, in alphabetical order.
    *
-   * @return a <code>String[]</code> value, or null if no such value
-   * exists
+   * @return a <code>String[]</code> value
    */
-  public String [] getAffiliations() {
-    return this.databaseDir.list();
+  public synchronized String [] getAffiliations() {
+    return this.members.keySet().toArray(new String[]{});
   }
 
   /**
-   * Releases all resources and removes the database from file.
+   * Releases all resources.
    *
    */
-  public void close() {
-    if (this.databaseDir == null)
-      return;
-
-    for (File f : this.databaseDir.listFiles()) {
-      f.delete();
-    }
+  public synchronized void close() {
+    this.members.clear();
   }
 
   /**
@@ -189,14 +131,11 @@ public class MembershipDatabase {
    * @param aff the affiliation to set
    * @return true if it worked, false otherwise
    */
-  public boolean addAffiliation(String aff) {
-    File affFile = new File(databaseDir, aff.toUpperCase());
-    try {
-      affFile.createNewFile();
-      return true;
-    } catch (IOException e) {
-      return false;
-    }
+  public synchronized boolean addAffiliation(String aff) {
+    aff = aff.toUpperCase();
+    if (!this.members.containsKey(aff))
+      this.members.put(aff, new LinkedHashMap<String, Member>());
+    return true;
   }
 
   /**
@@ -206,43 +145,23 @@ public class MembershipDatabase {
    * @param sailor the sailor to add
    * @param isNew whether this is a new sailor
    */
-  public boolean setMember(String aff, Membership sailor) {
-    File affFile = new File(databaseDir, aff.toUpperCase());
-    File temp;
-    try {
-      affFile.createNewFile();
-      temp = File.createTempFile("tsr" + aff, "");
+  public synchronized boolean setMember(String aff, Membership sailor) {
+    if (!this.addAffiliation(aff))
+      return false;
+    aff = aff.toUpperCase();
 
-      // Transfer memberships from one this file to a temp file
-      BufferedReader in  = new BufferedReader(new FileReader(affFile));
-      BufferedWriter out = new BufferedWriter(new FileWriter(temp));
-      String line, theID;
-      while ((line = in.readLine()) != null) {
-	String [] fields = line.split("\t");
-	theID = fields[0];
-	if (!sailor.getID().equals(theID)) {
-	  out.write(line);
-	  out.newLine();
-	}
-      }
-      in.close();
-      // Write this new membership
-      Calendar cal = Calendar.getInstance();
+    Calendar cal = Calendar.getInstance();
+    if (sailor.getYear() != null)
       cal.setTime(sailor.getYear());
-      int year = cal.get(Calendar.YEAR);
-      out.write(String.format("%s\t%s\t%s\t%s",
-			      sailor.getID(),
-			      sailor.getName(),
-			      year,
-			      sailor.isNew()));
-      out.close();
-
-      // Copy the temp file to the old file
-      affFile.delete();
-      temp.renameTo(affFile);
-    } catch (IOException e) {
-      return false;
-    }
+    Member member = new Member(sailor.getID(),
+			       sailor.getName().replaceAll("[\t\r\n]", " "),
+			       cal.get(Calendar.YEAR),
+			       sailor.isNew());
+
+    // Move to the end, as if removed and added again
+    Map<String, Member> map = this.members.get(aff);
+    map.remove(member.id);
+    map.put(member.id, member);
     return true;
   }
 
@@ -253,36 +172,11 @@ public class MembershipDatabase {
    * @param sailor the sailor to remove
    * @return true on success, false otherwise
    */
-  public boolean unsetMember(String aff, Sailor sailor) {
-    File affFile = new File(databaseDir, aff.toUpperCase());
-    if (!affFile.exists()) return false;
-    
-    File temp;
-    try {
-      affFile.createNewFile();
-      temp = File.createTempFile("tsr" + aff, "");
-
-      // Transfer memberships from one this file to a temp file
-      BufferedReader in  = new BufferedReader(new FileReader(affFile));
-      BufferedWriter out = new BufferedWriter(new FileWriter(temp));
-      String line, theID;
-      while ((line = in.readLine()) != null) {
-	String [] fields = line.split("\t");
-	theID = fields[0];
-	if (!sailor.getID().equals(theID)) {
-	  out.write(line);
-	  out.newLine();
-	}
-      }
-      in.close();
-      out.close();
-
-      // Copy the temp file to the old file
-      affFile.delete();
-      temp.renameTo(affFile);
-    } catch (IOException e) {
-      return false;
-    }
+  public synchronized boolean unsetMember(String aff, Sailor sailor) {
+    aff = aff.toUpperCase();
+    Map<String, Member> map = this.members.get(aff);
+    if (map == null) return false;
+    map.remove(sailor.getID());
     return true;
   }
 
@@ -290,39 +184,36 @@ public class MembershipDatabase {
    * Returns all the members for the given affiliation
    *
    * @param aff the affiliation code
-   * @return list of members, empty if no such affiliation exists or
-   * is unreadable
+   * @return list of members, empty if no such affiliation exists
    */
-  public Membership [] getMembers(String aff) {
+  public synchronized Membership [] getMembers(String aff) {
+    Map<String, Member> map = this.members.get(aff.toUpperCase());
+    if (map == null) return new Membership [] {};
+
     Calendar cal = Calendar.getInstance();
-    File affFile = new File(databaseDir, aff.toUpperCase());
-    if (!affFile.exists()) return new Membership [] {};
+    Membership [] list = new Membership[map.size()];
+    int i = 0;
+    for (Member member : map.values()) {
+      cal.set(Calendar.YEAR, member.year);
+      list[i++] = new Membership(member.id, member.name, cal.getTime(), member.isNew);
+    }
+    return list;
+  }
 
-    try {
-      // Transfer memberships from one this file to a temp file
-      List<Membership> members = new ArrayList<Membership>();
-      BufferedReader in  = new BufferedReader(new FileReader(affFile));
-      String line, theID;
-      while ((line = in.readLine()) != null) {
-	String [] fields = line.split("\t");
-	Date year;
-	try {
-	  cal.set(Calendar.YEAR, Integer.parseInt(fields[2]));
-	  year = cal.getTime();
-	} catch (Exception e) {
-	  year = new Date();
-	}
-	boolean isNew = true;
-	try {
-	  isNew = Boolean.parseBoolean(fields[3]);
-	} catch (Exception e) {}
+  /**
+   * A member as stored in the database: only the year of the date
+   * is kept.
+   */
+  private static class Member {
+    private String id, name;
+    private int year;
+    private boolean isNew;
 
-	members.add(new Membership(fields[0], fields[1], year, isNew));
-      }
-      in.close();
-      return members.toArray(new Membership[]{});
-    } catch (IOException e) {
-      return null;
+    private Member(String id, String name, int year, boolean isNew) {
+      this.id = id;
+      this.name = name;
+      this.year = year;
+      this.isNew = isNew;
     }
   }
 
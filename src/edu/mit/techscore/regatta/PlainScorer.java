@@ -92,23 +92,24 @@ public class PlainScorer implements Scorer {
    */
   public Team [] rank(Regatta reg) {
 
-    List<Team> teamList = Arrays.asList(reg.getTeams());
+    Team [] teams = reg.getTeams();
     Race [] races = reg.getFinishedRaces();
 
     // Total the score for each team
-    List<Integer> totalList = new ArrayList<Integer>(teamList.size());
-    for (int t = 0; t < teamList.size(); t++) {
+    int [] totals = new int [teams.length];
+    for (int t = 0; t < teams.length; t++) {
       int total = 0;
       for (int r = 0; r < races.length; r++) {
-	Finish f = reg.getFinish(races[r], teamList.get(t));
+	Finish f = reg.getFinish(races[r], teams[t]);
 	total += f.getScore();
       }
-      totalList.add(new Integer(total));
+      totals[t] = total;
     }
 
     // Order
-    Factory.multiSort(totalList, teamList);
-    return teamList.toArray(new Team[]{});
+    List<Team> teamList = Arrays.asList(teams);
+    Factory.permute(Factory.sortIndex(totals), teamList);
+    return teams;
   }
 
   public Team [] rank(Regatta reg, Regatta.Division d) {
@@ -59,6 +59,12 @@ public class RP {
    */
   private MembershipDatabase database;
 
+  /**
+   * Whether this is the RP of a regatta snapshot, which cannot be
+   * changed
+   */
+  private boolean frozen;
+
   /**
    * Creates a new <code>RP</code> instance.
    *
@@ -68,6 +74,47 @@ public class RP {
     this.database = new MembershipDatabase();
   }
 
+  /**
+   * Creates an immutable copy of the given RP, with the teams
+   * replaced by their copies in the given map, for a snapshot of the
+   * regatta. The database is shared.
+   *
+   * @param live the RP to copy
+   * @param copies the copy of each team, by identity
+   * @see Regatta#snapshot
+   */
+  private RP(RP live, Map<Team, Team> copies) {
+    this.partMap = new HashMap<Team, TreeMap<Race, Boat>>();
+    for (Map.Entry<Team, TreeMap<Race, Boat>> entry : live.partMap.entrySet()) {
+      TreeMap<Race, Boat> map = new TreeMap<Race, Boat>();
+      for (Map.Entry<Race, Boat> rb : entry.getValue().entrySet()) {
+	Boat boat = new Boat();
+	boat.setSkipper(rb.getValue().getSkipper());
+	boat.getCrews().addAll(rb.getValue().getCrews());
+	map.put(rb.getKey(), boat);
+      }
+      Team team = copies.get(entry.getKey());
+      this.partMap.put((team == null) ? entry.getKey() : team, map);
+    }
+    this.database = live.database;
+    this.frozen = true;
+  }
+
+  /**
+   * Returns an immutable copy of this RP for a regatta snapshot.
+   *
+   * @param copies the copy of each team, by identity
+   * @return the copy
+   */
+  RP snapshot(Map<Team, Team> copies) {
+    return new RP(this, copies);
+  }
+
+  private void checkMutable() {
+    if (this.frozen)
+      throw new UnsupportedOperationException("RP snapshots cannot be changed.");
+  }
+
   /**
    * Get the <code>Database</code> value.
    *
@@ -83,6 +130,7 @@ public class RP {
    * @param newDatabase The new Database value.
    */
   public final void setDatabase(final MembershipDatabase newDatabase) {
+    this.checkMutable();
     this.database = newDatabase;
   }
   
@@ -93,13 +141,24 @@ public class RP {
    * @param team a <code>Team</code> value
    */
   public void resetTeam(Team team) {
+    this.checkMutable();
     this.partMap.put(team, new TreeMap<Race, Boat>());
   }
 
+  /**
+   * Rebuilds the participation map after a team's name (and hence
+   * its hash code) has changed.
+   *
+   */
+  void rekeyTeams() {
+    this.partMap = new HashMap<Team, TreeMap<Race, Boat>>(this.partMap);
+  }
+
   public void removeSailor(Team team,
 			   Sailor sailor,
 			   List<Race> races,
 			   BoatRole role) {
+    this.checkMutable();
     Map<Race, Boat> map = this.partMap.get(team);
     if (map == null) {
       return;
@@ -133,6 +192,7 @@ public class RP {
 			     Sailor sailor,
 			     List<Race> races,
 			     BoatRole role) {
+    this.checkMutable();
     TreeMap<Race, Boat> map = this.partMap.get(team);
     if (map == null) {
       map = new TreeMap<Race, Boat>();
@@ -4,7 +4,10 @@ import edu.mit.techscore.regatta.Regatta.Division;
 
 
 /**
- * Implementation of a Regatta race.
+ * Implementation of a Regatta race. Races are immutable values: two
+ * races are equal (and hash alike) if they have the same division and
+ * number. Regattas hand out one canonical instance per race through
+ * <code>Regatta.getRace</code>.
  *
  *
  * Created: Fri Jun 12 11:42:46 2009
@@ -13,8 +16,8 @@ import edu.mit.techscore.regatta.Regatta.Division;
  * @version 1.0
  */
 public class Race implements Comparable<Race> {
-  private Division division;
-  private int number;
+  private final Division division;
+  private final int number;
 
   /**
    * Creates a new <code>Race</code> instance.
@@ -25,13 +28,7 @@ public class Race implements Comparable<Race> {
     this.number = num;
   }
 
-  public void setDivision(Division div) {
-    this.division = div;
-  }
   public Division getDivision() {return this.division;}
-  public void setNumber(int num) {
-    this.number = num;
-  }
   public int getNumber() {return this.number;}
 
   public int compareTo(Race other) {
@@ -45,6 +42,13 @@ public class Race implements Comparable<Race> {
     return 1;
   }
 
+  /**
+   * Races are equal to other races with the same division and
+   * number. For convenience, a race is also equal to its string
+   * representation (e.g. "3A"), though such comparisons cannot be used
+   * to look up races in hashed collections.
+   *
+   */
   public @Override boolean equals(Object r) {
     if (r instanceof String)
       return this.toString().equalsIgnoreCase((String)r);
@@ -55,6 +59,10 @@ public class Race implements Comparable<Race> {
     return false;
   }
 
+  public @Override int hashCode() {
+    return 31 * this.division.ordinal() + this.number;
+  }
+
   public String toString() {
     return "" + this.number + this.division;
   }
@@ -10,12 +10,14 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
 import edu.mit.techscore.regatta.Penalty.PenaltyType;
 import edu.mit.techscore.regatta.Penalty;
 import edu.mit.techscore.regatta.RP.BoatRole;
@@ -69,14 +71,29 @@ public class Regatta {
   private RegattaScoring scoring;
   private Date starttime;
   private int duration; // days
-  private ArrayList<RegattaListener> regattaListeners;
+  private RegattaEventBus events;
 
   private int numDivisions, numRaces;
   private ArrayList<Race> races;
   private TreeSet<Team> teams;
   private Map<Race, Set<Finish>> finishes;
+
+  // Dense index of the finishes: one row per race (division ordinal
+  // times number of races, plus race number) and one column per
+  // team. Teams are looked up by identity, since their names (and
+  // thus their order) may be edited in place.
+  private Finish [][] finishIndex;
+  private Map<Team, Integer> teamColumns;
   private Rotation rotation = null;
   private RP rp = null;
+
+  // Races whose finishes have changed since they were last scored
+  private Set<Race> dirtyRaces;
+  private boolean allRacesDirty;
+
+  // Sets into which changed races are also added, for other
+  // consumers than the scorer (see addChangedRaceSet)
+  private List<Set<Race>> changedRaceSets;
   
   private Map<Division, Map<Team, TeamPenalty>> teamPenaltyMap;
 
@@ -84,15 +101,23 @@ public class Regatta {
   private TreeMap<Date, String> blurbs;
   private Calendar myCal;
 
+  // Snapshots cannot be changed, but for the scores of their finishes
+  private boolean frozen;
+
   /**
    * Creates a new <code>Regatta</code> instance.
    *
    * @param name a <code>String</code> value
    */
   public Regatta(String name) {
-    this.regattaListeners = new ArrayList<RegattaListener>();
+    this.events = new RegattaEventBus();
     this.teams = new TreeSet<Team>();
     this.finishes = new TreeMap<Race, Set<Finish>>();
+    this.finishIndex = new Finish [0][0];
+    this.teamColumns = new IdentityHashMap<Team, Integer>();
+    this.dirtyRaces = new TreeSet<Race>();
+    this.allRacesDirty = true;
+    this.changedRaceSets = new ArrayList<Set<Race>>();
     this.setName(name);
     this.setDuration(1);
     this.setStartTime(getNextWeekend());
@@ -109,6 +134,115 @@ public class Regatta {
     myCal = Calendar.getInstance();
   }
 
+  /**
+   * Creates a snapshot of the given regatta. See {@link #snapshot}.
+   *
+   * @param live the regatta to copy
+   */
+  private Regatta(Regatta live) {
+    this.events = new RegattaEventBus();
+    this.name = live.name;
+    this.boat = live.boat;
+    this.blurb = live.blurb;
+    this.type = live.type;
+    this.scoring = live.scoring;
+    this.starttime = live.starttime;
+    this.duration = live.duration;
+    this.numDivisions = live.numDivisions;
+    this.numRaces = live.numRaces;
+    if (live.races != null)
+      this.races = new ArrayList<Race>(live.races);
+
+    // Teams (and everything that refers to them) are copied, as they
+    // are renamed in place
+    Map<Team, Team> copies = new IdentityHashMap<Team, Team>();
+    this.teams = new TreeSet<Team>();
+    for (Team team : live.teams) {
+      Team copy = new Team(team.getLongname(), team.getShortname());
+      copy.setAffiliation(team.getAffiliation());
+      copies.put(team, copy);
+      this.teams.add(copy);
+    }
+
+    this.finishes = new TreeMap<Race, Set<Finish>>();
+    for (Map.Entry<Race, Set<Finish>> entry : live.finishes.entrySet()) {
+      Set<Finish> set = new HashSet<Finish>(entry.getValue().size() * 2);
+      for (Finish f : entry.getValue()) {
+	Team team = copies.get(f.getTeam());
+	set.add(f.copy((team == null) ? f.getTeam() : team));
+      }
+      this.finishes.put(entry.getKey(), set);
+    }
+    this.finishIndex = new Finish [0][0];
+    this.teamColumns = new IdentityHashMap<Team, Integer>();
+    this.rebuildFinishIndex();
+    this.dirtyRaces = new TreeSet<Race>(live.dirtyRaces);
+    this.allRacesDirty = live.allRacesDirty;
+    this.changedRaceSets = new ArrayList<Set<Race>>();
+
+    this.teamPenaltyMap = new TreeMap<Division, Map<Team, TeamPenalty>>();
+    for (TeamPenalty pen : live.getTeamPenalties()) {
+      Team team = copies.get(pen.getTeam());
+      this.setTeamPenalty(new TeamPenalty(pen.getDivision(),
+					  (team == null) ? pen.getTeam() : team,
+					  pen.getType(),
+					  pen.getComments()));
+    }
+    if (live.rotation != null)
+      this.rotation = live.rotation.snapshot(copies);
+    if (live.rp != null)
+      this.rp = live.rp.snapshot(copies);
+
+    this.blurbs = new TreeMap<Date, String>(live.blurbs);
+    this.myCal = Calendar.getInstance();
+    this.frozen = true;
+  }
+
+  /**
+   * Returns an immutable copy of this regatta, as it is now, which
+   * may be read, scored and written to file on another thread while
+   * this one keeps changing. The races, dates, penalties and sailors
+   * are shared, as they never change; the teams, finishes, rotation,
+   * RP and team penalties are copied.
+   *
+   * Every method which would change the snapshot throws an
+   * <code>UnsupportedOperationException</code>, except that a
+   * <code>Scorer</code> may set the scores of its finishes. A
+   * snapshot should therefore be scored by one thread at a time. The
+   * snapshot of a snapshot is the snapshot itself. It shares the RP
+   * database of this regatta, and has no listeners.
+   *
+   * This method must be called on the thread which changes this
+   * regatta, e.g. from a <code>RegattaListener</code>.
+   *
+   * @return the snapshot
+   */
+  public Regatta snapshot() {
+    if (this.frozen)
+      return this;
+    return new Regatta(this);
+  }
+
+  /**
+   * Whether this regatta is a snapshot, which cannot be changed.
+   *
+   * @return <code>true</code> if this is a snapshot
+   * @see #snapshot
+   */
+  public boolean isSnapshot() {
+    return this.frozen;
+  }
+
+  /**
+   * Guards the methods which change the regatta.
+   *
+   * @throws UnsupportedOperationException if this is a snapshot
+   */
+  private void checkMutable() {
+    if (this.frozen)
+      throw new UnsupportedOperationException("Regatta snapshots cannot be changed.");
+  }
+
   // Regatta fields
   
   /**
@@ -116,6 +250,7 @@ public class Regatta {
    * @param d a <code>Date</code> value
    */
   public void setStartTime(Date d) {
+    this.checkMutable();
     this.starttime = d;
     this.fireRegattaChange(RegattaEventType.DETAILS);
   }
@@ -133,6 +268,7 @@ public class Regatta {
    * @exception IllegalArgumentException if invalid regatta type
    */
   public void setType(RegattaType t) {
+    this.checkMutable();
     this.type = t;
     this.fireRegattaChange(RegattaEventType.DETAILS);
   }
@@ -149,7 +285,9 @@ public class Regatta {
    * @param t the scoring rules to use
    */
   public void setScoring (RegattaScoring t) {
+    this.checkMutable();
     this.scoring = t;
+    this.allRacesDirty = true;
     this.fireRegattaChange(RegattaEventType.SCORING);
   }
   /**
@@ -165,6 +303,7 @@ public class Regatta {
    * @param n a <code>String</code> value
    */
   public void setName(String n) {
+    this.checkMutable();
     this.name = n;
     this.fireRegattaChange(RegattaEventType.NAME);
   }
@@ -181,6 +320,7 @@ public class Regatta {
    * @param n an <code>int</code> value
    */
   public void setDuration(int n) {
+    this.checkMutable();
     if (n < 1) {
       throw new IllegalArgumentException("Duration must be at least 1.");
     }
@@ -228,6 +368,7 @@ public class Regatta {
    * @throws IllegalArgumentException if invalid date
    */
   public void setBlurb(Date d, String s) {
+    this.checkMutable();
     myCal.setTime(d);
     myCal.set(Calendar.HOUR, 0);
     myCal.set(Calendar.MINUTE, 0);
@@ -244,12 +385,14 @@ public class Regatta {
    * @return the summary (blurb)
    */
   public String getBlurb(Date d) {
+    // Not myCal, so that snapshots may be read on any thread
+    Calendar cal = Calendar.getInstance();
     Calendar otCal = Calendar.getInstance();
     otCal.setTime(d);
     for (Date e : this.blurbs.keySet()) {
-      myCal.setTime(e);
-      if (myCal.get(Calendar.DAY_OF_YEAR) == otCal.get(Calendar.DAY_OF_YEAR) &&
-	  myCal.get(Calendar.YEAR)        == otCal.get(Calendar.YEAR))
+      cal.setTime(e);
+      if (cal.get(Calendar.DAY_OF_YEAR) == otCal.get(Calendar.DAY_OF_YEAR) &&
+	  cal.get(Calendar.YEAR)        == otCal.get(Calendar.YEAR))
 	return this.blurbs.get(e);
     }
     return "";
@@ -273,6 +416,7 @@ public class Regatta {
    */
   public void updateDivisions(int divCount)
     throws IllegalArgumentException, NullPointerException {
+    this.checkMutable();
     Division [] posDivs = Division.values();
     if (divCount > posDivs.length || divCount <= 0) {
       throw new IllegalArgumentException("Regatta must have 1-" +
@@ -298,6 +442,8 @@ public class Regatta {
       this.races.remove(newSize);
     }
     this.numDivisions = divCount;
+    this.allRacesDirty = true;
+    this.rebuildFinishIndex();
 
     this.fireRegattaChange(RegattaEventType.RACE);
   }
@@ -316,6 +462,7 @@ public class Regatta {
    */
   public void updateRaces(int raceCount)
     throws IllegalArgumentException, NullPointerException {
+    this.checkMutable();
     if (raceCount <= 0) {
       throw new IllegalArgumentException("There must be at least once race " +
 					 "in each division.");
@@ -341,6 +488,8 @@ public class Regatta {
       }
     }
     this.numRaces = raceCount;
+    this.allRacesDirty = true;
+    this.rebuildFinishIndex();
     this.fireRegattaChange(RegattaEventType.RACE);
   }
   
@@ -352,6 +501,7 @@ public class Regatta {
    * @param raceCount the number of races to add in each division
    */
   public void createRaces(int divCount, int raceCount) {
+    this.checkMutable();
     Regatta.Division [] posDivs = Regatta.Division.values();
     if (divCount > posDivs.length || divCount <= 0) {
       throw new IllegalArgumentException("Regatta must have 1-" +
@@ -366,6 +516,8 @@ public class Regatta {
 	this.races.add(new Race(posDivs[d], (r+1)));
       }
     }
+    this.allRacesDirty = true;
+    this.rebuildFinishIndex();
   }
 
   /**
@@ -464,9 +616,13 @@ public class Regatta {
    * @return a <code>boolean</code> value
    */
   public boolean addTeam(Team team) {
+    this.checkMutable();
     boolean t = this.teams.add(team);
-    if (t)
+    if (t) {
+      this.allRacesDirty = true;
+      this.rebuildFinishIndex();
       this.fireRegattaChange(RegattaEventType.TEAM);
+    }
     return t;
   }
   /**
@@ -476,16 +632,67 @@ public class Regatta {
    * @return a <code>boolean</code> value
    */
   public boolean removeTeam(Team team) {
+    this.checkMutable();
     boolean t = this.teams.remove(team);
     if (t) {
+      this.allRacesDirty = true;
+      this.rebuildFinishIndex();
+      this.beginBatch();
       this.fireRegattaChange(RegattaEventType.TEAM);
       if (this.rotation != null) {
 	this.rotation.removeTeam(team);
 	this.fireRegattaChange(RegattaEventType.ROTATION);
       }
+      this.endBatch();
     }
     return t;
   }
+  /**
+   * Renames the given team, keeping the regatta's sorted and hashed
+   * collections (finishes, rotation, RP and team penalties) in
+   * order. The name must not conflict with another team's.
+   *
+   * @param team the team to rename
+   * @param longname the new long name
+   * @param shortname the new short name
+   * @return <code>true</code> if the team was renamed
+   */
+  public boolean setTeamName(Team team, String longname, String shortname) {
+    this.checkMutable();
+    if (!this.teams.remove(team)) {
+      return false;
+    }
+    Team test = new Team(longname, shortname);
+    if (this.teams.contains(test)) {
+      this.teams.add(team);
+      return false;
+    }
+    team.setLongname(test.getLongname());
+    team.setShortname(test.getShortname());
+    this.teams.add(team);
+
+    for (Race race : this.finishes.keySet()) {
+      this.finishes.put(race, new HashSet<Finish>(this.finishes.get(race)));
+    }
+    for (Division div : this.teamPenaltyMap.keySet()) {
+      Map<Team, TeamPenalty> map = new TreeMap<Team, TeamPenalty>();
+      for (TeamPenalty pen : this.teamPenaltyMap.get(div).values()) {
+	map.put(pen.getTeam(), pen);
+      }
+      this.teamPenaltyMap.put(div, map);
+    }
+    if (this.rotation != null) {
+      this.rotation.rekeyTeams();
+    }
+    if (this.rp != null) {
+      this.rp.rekeyTeams();
+    }
+    // The name breaks ties between finishes, and so may change places
+    this.allRacesDirty = true;
+    this.rebuildFinishIndex();
+    return true;
+  }
+
   /**
    * Returns array of teams in order.
    *
@@ -504,6 +711,7 @@ public class Regatta {
    * @param rot a <code>Rotation</code> value
    */
   public void setRotation(Rotation rot) {
+    this.checkMutable();
     this.rotation = rot;
     this.fireRegattaChange(RegattaEventType.ROTATION);
   }
@@ -524,6 +732,7 @@ public class Regatta {
    * @param rp a <code>RP</code> value
    */
   public void setRP(RP rp) {
+    this.checkMutable();
     this.rp = rp;
   }
 
@@ -544,6 +753,7 @@ public class Regatta {
    * @param f a <code>Finish</code> value
    */
   public void setFinish(Finish f) {
+    this.checkMutable();
     Race race = f.getRace();
     Set<Finish> set = this.finishes.get(race);
     if (set == null) {
@@ -552,6 +762,8 @@ public class Regatta {
     }
     set.remove(f);
     set.add(f);
+    this.indexFinish(race, f.getTeam(), f);
+    this.raceChanged(race);
   }
 
   public void dumpFinishes() {
@@ -576,6 +788,7 @@ public class Regatta {
    * @param p a <code>TeamPenalty</code> value
    */
   public void setTeamPenalty(TeamPenalty p) {
+    this.checkMutable();
     Division theDiv = p.getDivision();
     Map<Team, TeamPenalty> map = this.teamPenaltyMap.get(theDiv);
     if (map == null) {
@@ -623,6 +836,7 @@ public class Regatta {
    * @param pen a <code>TeamPenalty</code> value
    */
   public void removeTeamPenalty(Division div, Team team) {
+    this.checkMutable();
     Map<Team, TeamPenalty> map = this.teamPenaltyMap.get(div);
     if (map != null) {
       map.remove(team);
@@ -700,7 +914,10 @@ public class Regatta {
    * @param f a <code>Finish</code> value
    */
   public void removeFinish(Finish f) {
+    this.checkMutable();
     this.finishes.get(f.getRace()).remove(f);
+    this.indexFinish(f.getRace(), f.getTeam(), null);
+    this.raceChanged(f.getRace());
   }
 
   /**
@@ -709,7 +926,13 @@ public class Regatta {
    * @param race a <code>Race</code> value
    */
   public void removeFinishes(Race race) {
+    this.checkMutable();
     this.finishes.remove(race);
+    int row = this.getRaceRow(race);
+    if (row >= 0) {
+      Arrays.fill(this.finishIndex[row], null);
+    }
+    this.raceChanged(race);
   }
 
   /**
@@ -721,6 +944,13 @@ public class Regatta {
    * @return null if no such finish exists
    */
   public Finish getFinish(Race race, Team team) {
+    int row = this.getRaceRow(race);
+    int col = this.getTeamColumn(team);
+    if (row >= 0 && col >= 0) {
+      return this.finishIndex[row][col];
+    }
+
+    // Race or team not part of this regatta: look through the set
     Set<Finish> set = this.finishes.get(race);
     if (set == null) {
       return null;
@@ -735,6 +965,80 @@ public class Regatta {
     return null;
   }
 
+  /**
+   * Returns the row in the finish index for the given race, or -1 if
+   * the race is not one of the regatta's current races.
+   *
+   * @param race a <code>Race</code> value
+   * @return an <code>int</code> value
+   */
+  private int getRaceRow(Race race) {
+    int num = race.getNumber();
+    int div = race.getDivision().ordinal();
+    if (num <= 0 || num > this.numRaces || div >= this.numDivisions) {
+      return -1;
+    }
+    return div * this.numRaces + num - 1;
+  }
+
+  /**
+   * Returns the column in the finish index for the given team, or -1
+   * if the team is not part of this regatta.
+   *
+   * @param team a <code>Team</code> value
+   * @return an <code>int</code> value
+   */
+  private int getTeamColumn(Team team) {
+    Integer col = this.teamColumns.get(team);
+    if (col == null) {
+      // Perhaps an equal, but not identical, team
+      if (!this.teams.contains(team)) {
+	return -1;
+      }
+      col = this.teamColumns.get(this.teams.ceiling(team));
+      if (col == null) {
+	return -1;
+      }
+    }
+    return col.intValue();
+  }
+
+  /**
+   * Places the finish (or <code>null</code>) in the index slot for
+   * the given race and team, if the regatta has such a slot.
+   *
+   * @param race a <code>Race</code> value
+   * @param team a <code>Team</code> value
+   * @param f the <code>Finish</code>, or <code>null</code> to clear
+   */
+  private void indexFinish(Race race, Team team, Finish f) {
+    int row = this.getRaceRow(race);
+    int col = this.getTeamColumn(team);
+    if (row >= 0 && col >= 0) {
+      this.finishIndex[row][col] = f;
+    }
+  }
+
+  /**
+   * Recreates the finish index after the teams or races of the
+   * regatta have changed.
+   *
+   */
+  private void rebuildFinishIndex() {
+    this.teamColumns.clear();
+    int col = 0;
+    for (Team team : this.teams) {
+      this.teamColumns.put(team, new Integer(col++));
+    }
+    this.finishIndex =
+      new Finish [this.numDivisions * this.numRaces][this.teams.size()];
+    for (Set<Finish> set : this.finishes.values()) {
+      for (Finish f : set) {
+	this.indexFinish(f.getRace(), f.getTeam(), f);
+      }
+    }
+  }
+
   /**
    * Fetch the finishes for the given race. If the scoring mode is
    * "combined", this list will contain the finishes across all
@@ -757,10 +1061,10 @@ public class Regatta {
       // Get the race for each division
       Set<Finish> set = new HashSet<Finish>();
       for (Division d : this.getDivisions()) {
-	Race r = this.getRace(d, race.getNumber());
-	set.addAll(this.finishes.get(r));
+	Set<Finish> div = this.finishes.get(this.getRace(d, race.getNumber()));
+	if (div != null)
+	  set.addAll(div);
       }
-      if (set == null) return new Finish [] {};
       return set.toArray(new Finish [] {});
     }
   }
@@ -794,6 +1098,71 @@ public class Regatta {
     return races.toArray(new Race[] {});
   }
 
+  /**
+   * Returns the races whose finishes have been set or removed since
+   * the last call to <code>clearDirtyRaces</code>. If the teams,
+   * races or scoring of the regatta have changed in the meantime,
+   * then every race is returned, as all of them need rescoring.
+   *
+   * @return a <code>Race[]</code> value, possibly empty
+   */
+  public Race [] getDirtyRaces() {
+    if (this.allRacesDirty) {
+      if (this.races == null) {
+	return new Race [] {};
+      }
+      return this.getRaces();
+    }
+    return this.dirtyRaces.toArray(new Race [] {});
+  }
+
+  /**
+   * Marks every race as scored. To be called by a
+   * <code>Scorer</code> once it has consumed the dirty races.
+   *
+   */
+  public void clearDirtyRaces() {
+    this.dirtyRaces.clear();
+    this.allRacesDirty = false;
+  }
+
+  /**
+   * Adds a set into which every race whose finishes are set or
+   * removed is added from now on, as it is to the dirty races, for
+   * consumers other than the scorer, which clear the set themselves.
+   * Changes to the teams, races or scoring are not recorded in it.
+   *
+   * @param races the set, changed on the thread which changes the
+   * regatta
+   */
+  public void addChangedRaceSet(Set<Race> races) {
+    this.changedRaceSets.add(races);
+  }
+
+  /**
+   * Removes a set added with <code>addChangedRaceSet</code>.
+   *
+   * @param races the set
+   */
+  public void removeChangedRaceSet(Set<Race> races) {
+    // By identity, as sets with the same races are equal
+    for (Iterator<Set<Race>> it = this.changedRaceSets.iterator(); it.hasNext(); ) {
+      if (it.next() == races) {
+	it.remove();
+      }
+    }
+  }
+
+  /**
+   * Marks the given race as dirty, and as changed in every set added
+   */
+  private void raceChanged(Race race) {
+    this.dirtyRaces.add(race);
+    for (Set<Race> races : this.changedRaceSets) {
+      races.add(race);
+    }
+  }
+
   /*
    * Regatta listeners: inform whatever class is so interested that
    * something about the regatta has changed.
@@ -804,7 +1173,7 @@ public class Regatta {
    * @param l a <code>RegattaListener</code> value
    */
   public void addRegattaListener(RegattaListener l) {
-    this.regattaListeners.add(l);
+    this.events.addListener(l);
   }
   
   /**
@@ -812,7 +1181,7 @@ public class Regatta {
    * @param l a <code>RegattaListener</code> value
    */
   public void removeRegattaListener(RegattaListener l) {
-    this.regattaListeners.remove(l);
+    this.events.removeListener(l);
   }
 
   /**
@@ -824,10 +1193,98 @@ public class Regatta {
     this.fireRegattaChange(evt);
   }
 
+  /**
+   * Fires the given event to the listeners, now or, if in a batch or
+   * window of events, later. See {@link #beginBatch}.
+   *
+   * @param evt a <code>RegattaEvent</code> value
+   */
   public void fireRegattaChange(RegattaEvent evt) {
-    for (RegattaListener l: this.regattaListeners) {
-      l.regattaChange(evt);
-    }
+    this.events.post(evt);
+  }
+
+  /**
+   * Begins a batch of changes: until the matching call to
+   * {@link #endBatch}, events are held back, and only the last event
+   * of each type is then delivered. Batches may be nested.
+   *
+   */
+  public void beginBatch() {
+    this.events.beginBatch();
+  }
+
+  /**
+   * Ends a batch of changes, delivering its events if it is the
+   * outermost batch.
+   *
+   * @throws IllegalStateException if no batch was begun
+   */
+  public void endBatch() {
+    this.events.endBatch();
+  }
+
+  /**
+   * Returns the types of the events fired since they were last
+   * cleared, delivered or not, e.g. to know which parts of a regatta
+   * file to write when it is saved.
+   *
+   * @return a copy of the types of change
+   */
+  public Set<RegattaEventType> getChanges() {
+    return this.events.getChanges();
+  }
+
+  /**
+   * Forgets the given types of change, e.g. once they are saved.
+   *
+   * @param types the types to clear
+   */
+  public void clearChanges(Set<RegattaEventType> types) {
+    this.events.clearChanges(types);
+  }
+
+  /**
+   * Get the <code>EventWindow</code> value.
+   *
+   * @return the window, in milliseconds
+   */
+  public long getEventWindow() {
+    return this.events.getWindow();
+  }
+
+  /**
+   * Set the <code>EventWindow</code> value: each event is held for
+   * this long, and delivered with any other posted meanwhile, keeping
+   * only the last event of each type. If zero, the default, events
+   * are delivered as soon as they are fired (outside of a batch).
+   *
+   * @param millis the window, in milliseconds
+   * @throws IllegalArgumentException if negative
+   */
+  public void setEventWindow(long millis) {
+    this.events.setWindow(millis);
+  }
+
+  /**
+   * Get the <code>EventExecutor</code> value.
+   *
+   * @return the executor used to deliver events
+   */
+  public Executor getEventExecutor() {
+    return this.events.getExecutor();
+  }
+
+  /**
+   * Set the <code>EventExecutor</code> value: the executor through
+   * which events are delivered to the listeners, such as one which
+   * runs them on the event dispatch thread. By default, or if
+   * <code>null</code>, events are delivered on the thread which
+   * fires them or, at the end of a window, on a timer thread.
+   *
+   * @param exec the executor
+   */
+  public void setEventExecutor(Executor exec) {
+    this.events.setExecutor(exec);
   }
 
   /**
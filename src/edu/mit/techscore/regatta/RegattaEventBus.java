@@ -0,0 +1,239 @@
+package edu.mit.techscore.regatta;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import edu.mit.techscore.regatta.RegattaEvent.RegattaEventType;
+
+/**
+ * Delivers the events of one regatta to its listeners. Events can be
+ * merged before delivery: only the last event of each type is
+ * delivered, in the order in which the types first occurred. This
+ * happens in two cases:
+ *
+ * <ul>
+ * <li>between calls to {@link #beginBatch} and {@link #endBatch},
+ * which may be nested: the events are delivered when the outermost
+ * batch ends, and</li>
+ * <li>within the window, if one is set: an event is held for that
+ * long, and delivered together with all of the events posted in the
+ * meantime.</li>
+ * </ul>
+ *
+ * Events are handed to listeners through an <code>Executor</code>,
+ * e.g. one which runs them on the event dispatch thread. By default,
+ * and with no window, events are delivered immediately on the thread
+ * which posts them, as they always were.<p>
+ *
+ * The bus also remembers the types of the events posted, delivered
+ * or not, until they are cleared.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 16:47:30 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+class RegattaEventBus {
+
+  /**
+   * Runs each task immediately, on the calling thread
+   */
+  static final Executor DIRECT = new Executor() {
+      public void execute(Runnable r) {
+	r.run();
+      }
+    };
+
+  /**
+   * The single thread which ends the windows of every bus
+   */
+  private static ScheduledExecutorService timer;
+
+  private static synchronized ScheduledExecutorService getTimer() {
+    if (timer == null) {
+      timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+	  public Thread newThread(Runnable r) {
+	    Thread t = new Thread(r, "Regatta events");
+	    t.setDaemon(true);
+	    return t;
+	  }
+	});
+    }
+    return timer;
+  }
+
+  private List<RegattaListener> listeners;
+  private Executor executor;
+  private long window;
+
+  // Events waiting to be delivered, the state of the batch and
+  // window, and the types posted since last cleared, guarded by this
+  private Map<RegattaEventType, RegattaEvent> pending;
+  private int batchDepth;
+  private boolean scheduled;
+  private Set<RegattaEventType> changes;
+
+  /**
+   * Creates a new <code>RegattaEventBus</code> which delivers events
+   * immediately.
+   *
+   */
+  RegattaEventBus() {
+    this.listeners = new CopyOnWriteArrayList<RegattaListener>();
+    this.executor = DIRECT;
+    this.window = 0;
+    this.pending = new LinkedHashMap<RegattaEventType, RegattaEvent>();
+    this.batchDepth = 0;
+    this.scheduled = false;
+    this.changes = EnumSet.noneOf(RegattaEventType.class);
+  }
+
+  void addListener(RegattaListener l) {
+    this.listeners.add(l);
+  }
+
+  void removeListener(RegattaListener l) {
+    this.listeners.remove(l);
+  }
+
+  synchronized Executor getExecutor() {
+    return this.executor;
+  }
+
+  synchronized void setExecutor(Executor executor) {
+    this.executor = (executor == null) ? DIRECT : executor;
+  }
+
+  synchronized Set<RegattaEventType> getChanges() {
+    return EnumSet.copyOf(this.changes);
+  }
+
+  synchronized void clearChanges(Set<RegattaEventType> types) {
+    this.changes.removeAll(types);
+  }
+
+  synchronized long getWindow() {
+    return this.window;
+  }
+
+  synchronized void setWindow(long millis) {
+    if (millis < 0)
+      throw new IllegalArgumentException("Window must not be negative.");
+    this.window = millis;
+  }
+
+  /**
+   * Posts the given event, to be delivered now or later.
+   *
+   * @param evt the event
+   */
+  void post(RegattaEvent evt) {
+    Executor exec;
+    synchronized (this) {
+      this.changes.add(evt.getChangeType());
+      if (this.batchDepth > 0 || this.window > 0 || !this.pending.isEmpty()) {
+	// Keep the first position of the type, but the last event
+	this.pending.put(evt.getChangeType(), evt);
+	if (this.batchDepth == 0 && !this.scheduled)
+	  this.schedule();
+	return;
+      }
+      exec = this.executor;
+    }
+    final RegattaEvent single = evt;
+    exec.execute(new Runnable() {
+	public void run() {
+	  deliver(single);
+	}
+      });
+  }
+
+  synchronized void beginBatch() {
+    this.batchDepth++;
+  }
+
+  /**
+   * Ends a batch, delivering its events if it is the outermost one.
+   *
+   * @throws IllegalStateException if no batch was begun
+   */
+  void endBatch() {
+    synchronized (this) {
+      if (this.batchDepth == 0)
+	throw new IllegalStateException("No batch to end.");
+      if (--this.batchDepth > 0)
+	return;
+    }
+    this.flush();
+  }
+
+  /**
+   * Ends the window in the given time, unless a batch has begun by
+   * then, in which case the batch will deliver the events.
+   */
+  private void schedule() {
+    this.scheduled = true;
+    getTimer().schedule(new Runnable() {
+	public void run() {
+	  synchronized (RegattaEventBus.this) {
+	    scheduled = false;
+	    if (batchDepth > 0)
+	      return;
+	  }
+	  flush();
+	}
+      }, this.window, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Delivers all of the pending events
+   */
+  private void flush() {
+    final List<RegattaEvent> events;
+    Executor exec;
+    synchronized (this) {
+      if (this.pending.isEmpty())
+	return;
+      events = new ArrayList<RegattaEvent>(this.pending.values());
+      this.pending.clear();
+      exec = this.executor;
+    }
+    exec.execute(new Runnable() {
+	public void run() {
+	  for (RegattaEvent evt : events)
+	    deliver(evt);
+	}
+      });
+  }
+
+  private void deliver(RegattaEvent evt) {
+    for (RegattaListener l : this.listeners) {
+      l.regattaChange(evt);
+    }
+  }
+}
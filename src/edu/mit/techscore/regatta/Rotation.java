@@ -1,9 +1,9 @@
 package edu.mit.techscore.regatta;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -19,6 +19,11 @@ import edu.mit.techscore.regatta.Rotation.RotationType;
  * there is no need for sails to be integers.
  * <p>
  *
+ * Each race has a row holding the sail of every team, by the order
+ * in which the teams were added, and an index from sail to team, so
+ * that both lookups take constant time.
+ * <p>
+ *
  * Created: Tue Jun 16 10:05:27 2009
  *
  * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
@@ -53,16 +58,73 @@ public class Rotation {
   }
 
   // Private variables
-  private Map<Race, Map<Team, Sail>> rot;
-  private Set<Team> teamSet;
+  private TreeMap<Race, Row> rot;
+
+  // The teams, in the order in which they were added, and the column
+  // of each in the rows. Rebuilt when a team is renamed.
+  private List<Team> teams;
+  private Map<Team, Integer> teamColumns;
+
+  // Rotations of regatta snapshots cannot be changed
+  private boolean frozen;
 
   /**
    * Creates a new <code>Rotation</code> instance.
    *
    */
   public Rotation() {
-    this.rot = new TreeMap<Race, Map<Team, Sail>>();
-    teamSet = new TreeSet<Team>();
+    this.rot = new TreeMap<Race, Row>();
+    this.teams = new ArrayList<Team>();
+    this.teamColumns = new HashMap<Team, Integer>();
+  }
+
+  /**
+   * Returns an immutable copy of this rotation, with the teams
+   * replaced by their copies in the given map, for a snapshot of the
+   * regatta. The sails are copied, as they may be changed in place.
+   *
+   * @param copies the copy of each team, by identity
+   * @return the copy
+   * @see Regatta#snapshot
+   */
+  Rotation snapshot(Map<Team, Team> copies) {
+    Rotation copy = new Rotation();
+    for (Team team : this.teams) {
+      Team t = copies.get(team);
+      copy.addTeam((t == null) ? team : t);
+    }
+    for (Map.Entry<Race, Row> entry : this.rot.entrySet()) {
+      Row row = entry.getValue();
+      Row newRow = copy.new Row(row.sails.length);
+      for (int col = 0; col < row.sails.length; col++) {
+	if (row.sails[col] != null)
+	  newRow.set(col, new Sail(row.sails[col]));
+      }
+      copy.rot.put(entry.getKey(), newRow);
+    }
+    copy.frozen = true;
+    return copy;
+  }
+
+  private void checkMutable() {
+    if (this.frozen)
+      throw new UnsupportedOperationException("Rotation snapshots cannot be changed.");
+  }
+
+  /**
+   * Returns the column of the given team, adding it if need be.
+   *
+   * @param team a <code>Team</code> value
+   * @return the column
+   */
+  private int addTeam(Team team) {
+    Integer col = this.teamColumns.get(team);
+    if (col == null) {
+      col = new Integer(this.teams.size());
+      this.teams.add(team);
+      this.teamColumns.put(team, col);
+    }
+    return col.intValue();
   }
 
   /**
@@ -72,28 +134,15 @@ public class Rotation {
    * @param sail the sail number for the team in this race
    */
   public void setSail(Race race, Team team, Sail sail) {
-    // Create a new map for that race, if needed
-    Map<Team, Sail> tsMap = this.rot.get(race);
-    if (tsMap == null) {
-      // New race
-      tsMap = new TreeMap<Team, Sail>();
-      this.rot.put(race, tsMap);
-      // Populate tsMap with all the known teams
-      for (Team t : teamSet) {
-	tsMap.put(t, null);
-      }
+    this.checkMutable();
+    int col = this.addTeam(team);
+    // Create a new row for that race, if needed
+    Row row = this.rot.get(race);
+    if (row == null) {
+      row = new Row(this.teams.size());
+      this.rot.put(race, row);
     }
-    if (teamSet.add(team)) {
-      // New team
-      // Add the team to all other race maps
-      Map<Team, Sail> m;
-      for (Race r : this.rot.keySet()) {
-	m = this.rot.get(r);
-	m.put(team, null);
-      }
-    }
-    // Update the current team
-    tsMap.put(team, sail);
+    row.set(col, sail);
   }
 
   /**
@@ -103,11 +152,12 @@ public class Rotation {
    * @return the sail number for the given race and team
    */
   public Sail getSail(Race race, Team team) {
-    Map<Team, Sail> map = this.rot.get(race);
-    if (map == null) {
+    Row row = this.rot.get(race);
+    Integer col = this.teamColumns.get(team);
+    if (row == null || col == null) {
       return null;
     }
-    return map.get(team);
+    return row.get(col.intValue());
   }
 
   /**
@@ -119,13 +169,11 @@ public class Rotation {
    * @return <code>null</code> if no such team
    */
   public Team getTeam(Race race, Sail sail) {
-    Map<Team, Sail> tsMap = this.rot.get(race);
-    for (Team team : tsMap.keySet()) {
-      if (tsMap.get(team).equals(sail)) {
-	return team;
-      }
+    Row row = this.rot.get(race);
+    if (row == null) {
+      return null;
     }
-    return null;
+    return row.index.get(sail);
   }
 
   /**
@@ -137,11 +185,13 @@ public class Rotation {
    */
   public Sail [] getSails(Race race) {
     // If no sails for the rotation, return empty list
-    if (!this.rot.containsKey(race)) {
+    Row row = this.rot.get(race);
+    if (row == null) {
       return new Sail[]{};
     }
-    Set<Sail> sails = new TreeSet<Sail>(this.rot.get(race).values());
-    return sails.toArray(new Sail [] {});
+    Sail [] sails = row.index.keySet().toArray(new Sail[]{});
+    Arrays.sort(sails);
+    return sails;
   }
 
   /**
@@ -154,7 +204,9 @@ public class Rotation {
   public Sail [] getSails(Race [] races) {
     Set<Sail> sails = new TreeSet<Sail>();
     for (Race race : races) {
-      sails.addAll(this.rot.get(race).values());
+      Row row = this.rot.get(race);
+      if (row != null)
+	sails.addAll(row.index.keySet());
     }
     return sails.toArray(new Sail[] {});
   }
@@ -165,10 +217,28 @@ public class Rotation {
    * @param t a <code>Team</code> value
    */
   public void removeTeam(Team t) {
-    for (Race race : this.rot.keySet()) {
-      this.rot.get(race).remove(t);
+    this.checkMutable();
+    Integer col = this.teamColumns.get(t);
+    if (col == null) {
+      return;
+    }
+    for (Row row : this.rot.values()) {
+      row.removeColumn(col.intValue());
+    }
+    this.teams.remove(col.intValue());
+    this.rekeyTeams();
+  }
+
+  /**
+   * Rebuilds the column of each team after a team's name (and hence
+   * its hash code) has changed.
+   *
+   */
+  void rekeyTeams() {
+    this.teamColumns = new HashMap<Team, Integer>();
+    for (int col = 0; col < this.teams.size(); col++) {
+      this.teamColumns.put(this.teams.get(col), new Integer(col));
     }
-    this.teamSet.remove(t);
   }
 
   // Races
@@ -182,6 +252,7 @@ public class Rotation {
   }
 
   public void removeRace(Race race) {
+    this.checkMutable();
     this.rot.remove(race);
   }
 
@@ -194,19 +265,12 @@ public class Rotation {
    */
   public Race [] normalize() {
     List<Race> badRaces = new ArrayList<Race>();
-    Map<Team, Sail> teamMap;
-    Set<Sail> uniqueSails;
-    for (Race race : this.rot.keySet()) {
-      teamMap = this.rot.get(race);
-      // Check for missing sails
-      if (teamMap.containsValue(null)) {
-	badRaces.add(race);
-      }
-      // Check for repeats
-      else {
-	uniqueSails = new HashSet<Sail>(teamMap.values());
-	if (uniqueSails.size() < teamMap.size())
-	  badRaces.add(race);
+    int numTeams = this.teams.size();
+    for (Map.Entry<Race, Row> entry : this.rot.entrySet()) {
+      Row row = entry.getValue();
+      // Missing sails, or repeats
+      if (row.count < numTeams || row.index.size() < row.count) {
+	badRaces.add(entry.getKey());
       }
     }
     return badRaces.toArray(new Race[]{});
@@ -225,8 +289,8 @@ public class Rotation {
    */
   public Race [] normalize(Division [] divisions) {
     Set<Race> badRaces = new TreeSet<Race>();
-    Map<Team, Sail> teamMap;
     Set<Race> raceSet = this.rot.keySet();
+    int numTeams = this.teams.size();
     // 1. Check that every division has all the races by creating a
     // set of unique race numbers
     Set<Integer> raceNums = new HashSet<Integer>();
@@ -248,24 +312,25 @@ public class Rotation {
     // At this point, goodNums contains the race numbers for which
     // there is a rotation set across all the divisions. Next, check
     // that no race contains a null sail (unset)
-    for (Race race : raceSet) {
-      teamMap = this.rot.get(race);
-      // Check for missing sails
-      if (teamMap.containsValue(null)) {
-	badRaces.add(race);
+    for (Map.Entry<Race, Row> entry : this.rot.entrySet()) {
+      if (entry.getValue().count < numTeams) {
+	badRaces.add(entry.getKey());
       }
     }
 
-    // Next, check that the sails are unique across all divisions
+    // Next, check that the sails are unique across all divisions. A
+    // missing sail counts once, as null.
     Set<Sail> uniqueSails;
     for (int num : goodNums) {
       uniqueSails = new HashSet<Sail>();
       for (Division d : divisions) {
 	int numUnique = uniqueSails.size();
-	Collection<Sail> sails = this.rot.get(new Race(d, num)).values();
-	uniqueSails.addAll(sails);
+	Row row = this.rot.get(new Race(d, num));
+	uniqueSails.addAll(row.index.keySet());
+	if (row.count < numTeams)
+	  uniqueSails.add(null);
 
-	if (uniqueSails.size() < numUnique + sails.size()) {
+	if (uniqueSails.size() < numUnique + numTeams) {
 	  for (Division d2 : divisions)
 	    badRaces.add(new Race(d2, num));
 	  break;
@@ -291,16 +356,87 @@ public class Rotation {
     System.out.println();
 
     // Rows
-    for (Team team : teamSet) {
+    for (Team team : new TreeSet<Team>(this.teams)) {
       System.out.print(String.format(tForm, team));
       for (Race race : races) {
-	Sail sail = this.rot.get(race).get(team);
+	Sail sail = this.getSail(race, team);
 	System.out.print(String.format(rForm, sail));
       }
       System.out.println();
     }
   }
 
+  /**
+   * The sails of one race: the sail of each team by column, and the
+   * team of each sail.
+   *
+   */
+  private class Row {
+    private Sail [] sails;
+    private Map<Sail, Team> index;
+
+    // The number of teams with a sail
+    private int count;
+
+    private Row(int numTeams) {
+      this.sails = new Sail [numTeams];
+      this.index = new HashMap<Sail, Team>(numTeams * 2);
+      this.count = 0;
+    }
+
+    private Sail get(int col) {
+      return (col < this.sails.length) ? this.sails[col] : null;
+    }
+
+    /**
+     * Sets the sail of the team in the given column
+     */
+    private void set(int col, Sail sail) {
+      if (col >= this.sails.length)
+	this.sails = Arrays.copyOf(this.sails, Math.max(col + 1, 2 * this.sails.length));
+      this.unindex(col);
+      this.sails[col] = sail;
+      if (sail != null) {
+	this.count++;
+	// Of repeated sails, the first one set is found
+	if (!this.index.containsKey(sail))
+	  this.index.put(sail, teams.get(col));
+      }
+    }
+
+    /**
+     * Removes the sail in the given column from the index. If another
+     * team has the same sail, it takes its place.
+     */
+    private void unindex(int col) {
+      Sail old = this.get(col);
+      if (old == null)
+	return;
+      this.count--;
+      if (this.index.get(old) != teams.get(col))
+	return;
+      this.index.remove(old);
+      for (int i = 0; i < this.sails.length; i++) {
+	if (i != col && old.equals(this.sails[i])) {
+	  this.index.put(old, teams.get(i));
+	  return;
+	}
+      }
+    }
+
+    /**
+     * Removes the given column, shifting the ones after it
+     */
+    private void removeColumn(int col) {
+      this.unindex(col);
+      if (col < this.sails.length) {
+	System.arraycopy(this.sails, col + 1, this.sails, col,
+			 this.sails.length - col - 1);
+	this.sails[this.sails.length - 1] = null;
+      }
+    }
+  }
+
   public static void main (String [] args) {
     Rotation rot = new Rotation ();
     Team t1 = new Team ("MIT");
@@ -19,6 +19,7 @@ public class Sail implements Comparable<Sail> {
   private int numLength;   // the length to format the integer part
   private String preSail;  // the prefix
   private String postSail; // the suffix for the sail
+  private int hash;        // cached hash code, 0 if not yet known
 
   /**
    * Creates a new <code>Sail</code> instance with the given value.
@@ -29,6 +30,19 @@ public class Sail implements Comparable<Sail> {
     this.setSail(n);
   }
 
+  /**
+   * Creates a copy of the given sail, without parsing it again.
+   *
+   * @param other the sail to copy
+   */
+  Sail(Sail other) {
+    this.number = other.number;
+    this.numLength = other.numLength;
+    this.preSail = other.preSail;
+    this.postSail = other.postSail;
+    this.hash = other.hash;
+  }
+
   /**
    * Get the <code>Sail</code> value.
    *
@@ -101,6 +115,7 @@ public class Sail implements Comparable<Sail> {
     else
       this.number = null;
     this.postSail = postSail.toString ();	
+    this.hash = 0;
   }
 
   public String toString() {
@@ -149,7 +164,11 @@ public class Sail implements Comparable<Sail> {
   }
 
   public int hashCode () {
-    return "Sail".hashCode () + this.toString ().hashCode ();
+    // Sails are looked up by hash (see Rotation), and formatting
+    // them is slow
+    if (this.hash == 0)
+      this.hash = "Sail".hashCode () + this.toString ().hashCode ();
+    return this.hash;
   }
 
   /**
@@ -202,6 +221,7 @@ public class Sail implements Comparable<Sail> {
       throw new IllegalArgumentException ("Sail has no numerical value");
 
     this.number += n;
+    this.hash = 0;
   }
 
   public static void main (String [] args) {
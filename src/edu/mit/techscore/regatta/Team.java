@@ -8,7 +8,11 @@ package edu.mit.techscore.regatta;
  * name for the name of a team.
  *
  * Teams that have the same long and short name are considered
- * "equal". Teams are sorted by long names first, then short names.
+ * "equal", and hash alike. Teams are sorted by long names first, then
+ * short names. Since the names (and thus the hash code) of a team can
+ * change, teams in a regatta should be renamed through
+ * <code>Regatta.setTeamName</code>, which keeps its collections in
+ * order.
  *
  * Teams have an affiliation for the purposes of RP's.
  *
@@ -117,8 +121,15 @@ public class Team implements Comparable<Team> {
     if (other instanceof String) {
       return this.toString().equalsIgnoreCase((String)other);
     }
+    if (other instanceof Team) {
+      return this.compareTo((Team)other) == 0;
+    }
+    return false;
+  }
 
-    return this.compareTo((Team)other) == 0;
+  @Override
+  public int hashCode() {
+    return 31 * this.getLongname().hashCode() + this.getShortname().hashCode();
   }
 
   public int compareTo(Team o) {
@@ -0,0 +1,482 @@
+package edu.mit.techscore.tscore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.mit.techscore.dpxml.XMLWriter;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Team;
+
+/**
+ * Scores every regatta file in a directory without a display, in
+ * XML (.tsr) or in the binary format of {@link RegattaCodec}
+ * (.tsb). The files are read with {@link RegattaIO} and scored with
+ * {@link ICSAScorer} on a fixed pool of worker threads, and the
+ * ranked teams of each regatta are written to a file of the same
+ * name in the output directory, as CSV, JSON or HTML. No Swing class
+ * is used, so this runs on a headless server:
+ *
+ * <pre>
+ * BatchScorer [-j threads] [-f csv|json|html] [-o outdir] dir
+ * </pre>
+ *
+ * For every file, the time taken to read and to score it is printed,
+ * followed by the totals for the whole directory. Files which cannot
+ * be read are reported and skipped.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 14:40:18 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class BatchScorer {
+
+  /**
+   * The formats in which results can be written
+   */
+  public static enum OutputFormat {
+    CSV("csv"), JSON("json"), HTML("html");
+    private String extension;
+    OutputFormat(String ext) {
+      this.extension = ext;
+    }
+    public String getExtension() {
+      return this.extension;
+    }
+  }
+
+  private int numThreads;
+  private OutputFormat format;
+  private File outputDir;
+
+  /**
+   * Creates a new <code>BatchScorer</code> which writes CSV files
+   * next to the regatta files, using one thread per processor.
+   *
+   */
+  public BatchScorer() {
+    this.numThreads = Runtime.getRuntime().availableProcessors();
+    this.format = OutputFormat.CSV;
+    this.outputDir = null;
+  }
+
+  /**
+   * Get the <code>NumThreads</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * Set the <code>NumThreads</code> value.
+   *
+   * @param newNumThreads The new NumThreads value.
+   * @throws IllegalArgumentException if less than one
+   */
+  public final void setNumThreads(final int newNumThreads) {
+    if (newNumThreads < 1)
+      throw new IllegalArgumentException("Number of threads must be positive.");
+    this.numThreads = newNumThreads;
+  }
+
+  /**
+   * Get the <code>Format</code> value.
+   *
+   * @return an <code>OutputFormat</code> value
+   */
+  public final OutputFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * Set the <code>Format</code> value.
+   *
+   * @param newFormat The new Format value.
+   */
+  public final void setFormat(final OutputFormat newFormat) {
+    this.format = newFormat;
+  }
+
+  /**
+   * Get the <code>OutputDir</code> value.
+   *
+   * @return a <code>File</code> value, or <code>null</code> to write
+   * next to each regatta file
+   */
+  public final File getOutputDir() {
+    return outputDir;
+  }
+
+  /**
+   * Set the <code>OutputDir</code> value.
+   *
+   * @param newOutputDir The new OutputDir value, or
+   * <code>null</code> to write next to each regatta file
+   */
+  public final void setOutputDir(final File newOutputDir) {
+    this.outputDir = newOutputDir;
+  }
+
+  /**
+   * Scores every regatta file in the given directory, and writes the
+   * results. The files are processed in parallel, but the results
+   * are returned in alphabetical order of the files.
+   *
+   * @param dir the directory with the regatta files
+   * @return the result for each file
+   * @throws IllegalArgumentException if not a directory
+   */
+  public List<Result> scoreDirectory(File dir) {
+    if (!dir.isDirectory())
+      throw new IllegalArgumentException(dir + " is not a directory.");
+    File [] files = dir.listFiles();
+    Arrays.sort(files);
+
+    ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+    List<Future<Result>> futures = new ArrayList<Future<Result>>();
+    try {
+      for (final File f : files) {
+	String ext = Factory.getExtension(f);
+	if (!f.isFile() ||
+	    !("tsr".equals(ext) || RegattaCodec.FILE_EXTENSION.equals(ext)))
+	  continue;
+	futures.add(pool.submit(new Callable<Result>() {
+	    public Result call() {
+	      return scoreFile(f);
+	    }
+	  }));
+      }
+
+      List<Result> results = new ArrayList<Result>(futures.size());
+      for (Future<Result> future : futures) {
+	try {
+	  results.add(future.get());
+	} catch (ExecutionException e) {
+	  throw new RuntimeException(e.getCause());
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  break;
+	}
+      }
+      return results;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Reads, scores and writes the results of the given file.
+   *
+   * @param f the regatta file
+   * @return the result, with an error if the file could not be read
+   * or the results written
+   */
+  public Result scoreFile(File f) {
+    Result res = new Result(f);
+    long start = System.nanoTime();
+    RegattaIO io = new RegattaIO();
+    boolean read;
+    try {
+      read = io.readFile(f);
+    } catch (RuntimeException e) {
+      res.error = "Unable to read file: " + e;
+      return res;
+    }
+    if (!read) {
+      res.error = Factory.implode(io.getErrors(), "; ");
+      return res;
+    }
+    Regatta reg = io.getRegatta();
+    res.readTime = System.nanoTime() - start;
+
+    try {
+      start = System.nanoTime();
+      ICSAScorer scorer = new ICSAScorer();
+      // The files already keep the threads busy
+      if (this.numThreads > 1)
+	scorer.setParallelThreshold(Integer.MAX_VALUE);
+      scorer.score(reg);
+      Team [] teams = scorer.rank(reg);
+      res.scoreTime = System.nanoTime() - start;
+
+      File dir = (this.outputDir == null) ? f.getParentFile() : this.outputDir;
+      String name = f.getName();
+      name = name.substring(0, name.lastIndexOf('.') + 1) + this.format.getExtension();
+      this.write(new File(dir, name), reg, teams, scorer.getRankExplanations());
+    } catch (IOException e) {
+      res.error = "Unable to write results: " + e.getMessage();
+    } finally {
+      reg.getRP().getDatabase().close();
+    }
+    return res;
+  }
+
+  /**
+   * Writes the ranked teams of the regatta to the given file
+   */
+  private void write(File file, Regatta reg, Team [] teams,
+		     Map<Team, String> explanations)
+    throws IOException {
+
+    // Total score of each team, as shown in the scores dialog
+    Division [] divs = reg.getDivisions();
+    int [][] totals = new int[teams.length][divs.length + 1];
+    for (int t = 0; t < teams.length; t++) {
+      for (int d = 0; d < divs.length; d++) {
+	for (Race race : reg.getFinishedRaces(divs[d])) {
+	  Finish finish = reg.getFinish(race, teams[t]);
+	  if (finish != null)
+	    totals[t][d] += finish.getScore();
+	}
+	if (reg.getTeamPenalty(divs[d], teams[t]) != null)
+	  totals[t][d] += 20;
+	totals[t][divs.length] += totals[t][d];
+      }
+    }
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+							   StandardCharsets.UTF_8));
+    try {
+      switch (this.format) {
+      case CSV:
+	writeCSV(out, divs, teams, totals, explanations);
+	break;
+      case JSON:
+	writeJSON(out, reg, divs, teams, totals, explanations);
+	break;
+      default:
+	writeHTML(out, reg, divs, teams, totals, explanations);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeCSV(Writer out, Division [] divs, Team [] teams,
+			       int [][] totals, Map<Team, String> explanations)
+    throws IOException {
+    out.write("Rank,School,Team");
+    for (Division div : divs)
+      out.write("," + div);
+    out.write(",Total,Explanation\n");
+    for (int t = 0; t < teams.length; t++) {
+      out.write(String.valueOf(t + 1));
+      out.write("," + csv(teams[t].getLongname()));
+      out.write("," + csv(teams[t].getShortname()));
+      for (int d = 0; d <= divs.length; d++)
+	out.write("," + totals[t][d]);
+      out.write("," + csv(explanations.get(teams[t])) + "\n");
+    }
+  }
+
+  private static void writeJSON(Writer out, Regatta reg, Division [] divs, Team [] teams,
+				int [][] totals, Map<Team, String> explanations)
+    throws IOException {
+    out.write("{\"name\":" + Factory.quoteJSON(reg.getName()) + ",\"teams\":[");
+    for (int t = 0; t < teams.length; t++) {
+      if (t > 0)
+	out.write(',');
+      out.write("\n{\"rank\":" + (t + 1));
+      out.write(",\"school\":" + Factory.quoteJSON(teams[t].getLongname()));
+      out.write(",\"team\":" + Factory.quoteJSON(teams[t].getShortname()));
+      out.write(",\"divisions\":{");
+      for (int d = 0; d < divs.length; d++) {
+	if (d > 0)
+	  out.write(',');
+	out.write(Factory.quoteJSON(divs[d].toString()) + ":" + totals[t][d]);
+      }
+      out.write("},\"total\":" + totals[t][divs.length]);
+      out.write(",\"explanation\":" + Factory.quoteJSON(explanations.get(teams[t])) + "}");
+    }
+    out.write("]}\n");
+  }
+
+  private static void writeHTML(Writer writer, Regatta reg, Division [] divs, Team [] teams,
+				int [][] totals, Map<Team, String> explanations)
+    throws IOException {
+    XMLWriter out = new XMLWriter(writer);
+    out.startTag("html");
+    out.startTag("head");
+    out.addTextTag("title", reg.getName());
+    out.endTag();
+    out.startTag("body");
+    out.addTextTag("h2", reg.getName());
+    out.startTag("table");
+    out.startTag("tr");
+    out.addTextTag("th", "");
+    out.addTextTag("th", "School");
+    out.addTextTag("th", "Team");
+    for (Division div : divs)
+      out.addTextTag("th", div.toString());
+    out.addTextTag("th", "TOT");
+    out.endTag();
+    for (int t = 0; t < teams.length; t++) {
+      out.startTag("tr");
+      out.startTag("td");
+      out.addAttr("title", explanations.get(teams[t]));
+      out.addText(String.valueOf(t + 1));
+      out.endTag();
+      out.addTextTag("td", teams[t].getLongname());
+      out.addTextTag("td", teams[t].getShortname());
+      for (int d = 0; d <= divs.length; d++)
+	out.addTextTag("td", String.valueOf(totals[t][d]));
+      out.endTag();
+    }
+    out.close();
+  }
+
+  private static String csv(String s) {
+    if (s == null)
+      return "";
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+      return s;
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * The outcome of scoring one file
+   */
+  public static class Result {
+    private File file;
+    private String error;
+    private long readTime, scoreTime;
+
+    private Result(File file) {
+      this.file = file;
+      this.error = null;
+    }
+
+    /**
+     * Get the <code>File</code> value.
+     *
+     * @return a <code>File</code> value
+     */
+    public final File getFile() {
+      return file;
+    }
+
+    /**
+     * Get the <code>Error</code> value.
+     *
+     * @return the reason the file was not scored, or
+     * <code>null</code> on success
+     */
+    public final String getError() {
+      return error;
+    }
+
+    /**
+     * Get the <code>ReadTime</code> value.
+     *
+     * @return the time to read the file, in nanoseconds
+     */
+    public final long getReadTime() {
+      return readTime;
+    }
+
+    /**
+     * Get the <code>ScoreTime</code> value.
+     *
+     * @return the time to score and rank the regatta, in nanoseconds
+     */
+    public final long getScoreTime() {
+      return scoreTime;
+    }
+  }
+
+  public static void main(String [] args) {
+    String usage =
+      "usage: BatchScorer [-j threads] [-f csv|json|html] [-o outdir] dir";
+    if (args.length == 0) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    BatchScorer batch = new BatchScorer();
+    File dir = null;
+    try {
+      int i;
+      for (i = 0; i < args.length - 1; i++) {
+	if (args[i].equals("-j"))
+	  batch.setNumThreads(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-f"))
+	  batch.setFormat(OutputFormat.valueOf(args[++i].toUpperCase()));
+	else if (args[i].equals("-o"))
+	  batch.setOutputDir(new File(args[++i]));
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+      if (i != args.length - 1)
+	throw new IllegalArgumentException("Missing directory");
+      dir = new File(args[i]);
+      if (batch.getOutputDir() != null && !batch.getOutputDir().isDirectory())
+	throw new IllegalArgumentException(batch.getOutputDir() + " is not a directory.");
+
+      long start = System.nanoTime();
+      List<Result> results = batch.scoreDirectory(dir);
+      long wall = System.nanoTime() - start;
+
+      int failed = 0;
+      long read = 0, score = 0;
+      for (Result res : results) {
+	if (res.getError() != null) {
+	  failed++;
+	  System.err.println(res.getFile().getName() + ": " + res.getError());
+	  continue;
+	}
+	read  += res.getReadTime();
+	score += res.getScoreTime();
+	System.out.format("%s\tread %.1f ms\tscore %.1f ms%n",
+			  res.getFile().getName(),
+			  res.getReadTime() / 1e6,
+			  res.getScoreTime() / 1e6);
+      }
+      int scored = results.size() - failed;
+      System.out.format("%d scored, %d failed, %d threads, %.1f ms total%n",
+			scored, failed, batch.getNumThreads(), wall / 1e6);
+      if (scored > 0)
+	System.out.format("mean read %.1f ms, mean score %.1f ms%n",
+			  read / 1e6 / scored, score / 1e6 / scored);
+      if (failed > 0)
+	System.exit(2);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+    }
+  }
+}
@@ -465,6 +465,7 @@ public class BreakdownsPane
 
       Finish f = regatta.getFinish(race, team);
       f.setBreakdown(brk);
+      regatta.setFinish(f);
       BreakdownsPane.this.breakdownList.add(f);
 
       // Reset team/comments
@@ -498,6 +499,7 @@ public class BreakdownsPane
       Finish f = regatta.getFinish(this.breakdown.getRace(),
 				   this.breakdown.getTeam());
       f.setBreakdown(null);
+      regatta.setFinish(f);
       BreakdownsPane.this.updateBreakdownList();
       BreakdownsPane.this.updateTeamList();
       regatta.fireRegattaChange(new RegattaEvent(regatta,
@@ -302,6 +302,114 @@ public class Factory {
     }
   }
 
+  /**
+   * Returns the permutation of indices which sorts the given keys in
+   * ascending order. The sort is stable: indices with equal keys keep
+   * their relative order. Apply the result to any number of parallel
+   * lists with <code>permute</code>.
+   *
+   * @param keys the primitive sort keys
+   * @return the sorted indices into <code>keys</code>
+   */
+  public static int [] sortIndex(int [] keys) {
+    int [] order = new int [keys.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Factory.sortIndex(order, 0, order.length, keys);
+    return order;
+  }
+
+  /**
+   * Stable sort of the range <code>order[from..to)</code> of a
+   * permutation, in place, using <code>keys[order[i]]</code> as the
+   * key of each entry. Small ranges are insertion sorted without any
+   * allocation; larger ones are merge sorted using one scratch array.
+   *
+   * @param order the permutation to sort
+   * @param from the first index to sort, inclusive
+   * @param to the last index to sort, exclusive
+   * @param keys the keys, indexed by the values in <code>order</code>
+   */
+  public static void sortIndex(int [] order, int from, int to, int [] keys) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(order, from, to, keys);
+      return;
+    }
+    int [] scratch = new int [to - from];
+    mergeSort(order, from, to, keys, scratch);
+  }
+
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+
+  private static void insertionSort(int [] order, int from, int to,
+				    int [] keys) {
+    for (int i = from + 1; i < to; i++) {
+      int e = order[i];
+      int k = keys[e];
+      int j = i - 1;
+      while (j >= from && keys[order[j]] > k) {
+	order[j + 1] = order[j];
+	j--;
+      }
+      order[j + 1] = e;
+    }
+  }
+
+  private static void mergeSort(int [] order, int from, int to,
+				int [] keys, int [] scratch) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(order, from, to, keys);
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(order, from, mid, keys, scratch);
+    mergeSort(order, mid, to, keys, scratch);
+    if (keys[order[mid - 1]] <= keys[order[mid]]) {
+      return; // already in order
+    }
+
+    // Merge back together, through the scratch space
+    int n = mid - from;
+    System.arraycopy(order, from, scratch, 0, n);
+    int i = 0;
+    int j = mid;
+    int k = from;
+    while (i < n && j < to) {
+      if (keys[scratch[i]] <= keys[order[j]]) {
+	order[k++] = scratch[i++];
+      }
+      else {
+	order[k++] = order[j++];
+      }
+    }
+    while (i < n) {
+      order[k++] = scratch[i++];
+    }
+  }
+
+  /**
+   * Rearranges each of the lists so that its i-th element becomes
+   * the one previously at <code>order[i]</code>, as returned by
+   * <code>sortIndex</code>.
+   *
+   * @param order the permutation
+   * @param lists the lists to rearrange, each as long as
+   * <code>order</code>
+   */
+  public static void permute(int [] order, List<?> ... lists) {
+    for (List<?> list : lists) {
+      permuteList(order, list);
+    }
+  }
+
+  private static <T> void permuteList(int [] order, List<T> list) {
+    List<T> copy = new ArrayList<T>(list);
+    for (int i = 0; i < order.length; i++) {
+      list.set(i, copy.get(order[i]));
+    }
+  }
+
   public static Integer [] raceToInteger(Race [] races) {
     Integer [] nums = new Integer[races.length];
     for (int i = 0; i < races.length; i++) {
@@ -412,6 +520,34 @@ public class Factory {
     return sb.toString();
   }
 
+  /**
+   * Quotes the given string as a JSON string literal
+   *
+   * @param s the string to quote
+   * @return the literal, or the JSON <code>null</code> for a null string
+   */
+  public static String quoteJSON(String s) {
+    if (s == null)
+      return "null";
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':  sb.append("\\\""); break;
+      case '\\': sb.append("\\\\"); break;
+      case '\n': sb.append("\\n");  break;
+      case '\r': sb.append("\\r");  break;
+      case '\t': sb.append("\\t");  break;
+      default:
+	if (c < 0x20)
+	  sb.append(String.format("\\u%04x", (int) c));
+	else
+	  sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
   // Database info
   
   private static int rpID = 0;
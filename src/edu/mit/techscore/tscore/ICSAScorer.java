@@ -10,10 +10,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import edu.mit.techscore.regatta.Breakdown.BreakdownType;
 import edu.mit.techscore.regatta.Finish.PlaceComparator;
@@ -66,8 +73,28 @@ import edu.mit.techscore.regatta.Regatta.RegattaScoring;
  */
 public class ICSAScorer implements Scorer {
 
+  /**
+   * The default number of finishes to place, at or above which the
+   * races are placed in parallel
+   */
+  public static final int PARALLEL_THRESHOLD = 2000;
+
+  /**
+   * The number of finishes each parallel task places, at most, unless
+   * a race has more
+   */
+  private static final int TASK_FINISHES = 250;
+
   private Regatta regatta;  
   private Map<Team, String> rankExplanations;
+  private int parallelThreshold;
+  private boolean sortKeyRanking;
+
+  /**
+   * Average-finish breakdowns from the last scoring, with their
+   * actual place finish, indexed by the race in which they were placed
+   */
+  private Map<Race, Map<Finish, Integer>> averageFinishes;
   
   /**
    * Creates a new <code>ICSAScorer</code> instance.
@@ -75,119 +102,331 @@ public class ICSAScorer implements Scorer {
    */
   public ICSAScorer() {
     this.regatta = null;
+    this.averageFinishes = new TreeMap<Race, Map<Finish, Integer>>();
+    this.parallelThreshold = PARALLEL_THRESHOLD;
+    this.sortKeyRanking = false;
+  }
+
+  /**
+   * Get the <code>ParallelThreshold</code> value.
+   *
+   * @return the number of finishes to place, at or above which the
+   * races are placed in parallel
+   */
+  public final int getParallelThreshold() {
+    return this.parallelThreshold;
+  }
+
+  /**
+   * Set the <code>ParallelThreshold</code> value: 0 to always place
+   * races in parallel, and <code>Integer.MAX_VALUE</code> never to.
+   *
+   * @param newThreshold The new ParallelThreshold value.
+   */
+  public final void setParallelThreshold(final int newThreshold) {
+    this.parallelThreshold = newThreshold;
+  }
+
+  /**
+   * Get the <code>SortKeyRanking</code> value.
+   *
+   * @return true if teams are ranked with a single sort on composite
+   * keys, rather than by settling each tie in turn
+   */
+  public final boolean isSortKeyRanking() {
+    return this.sortKeyRanking;
+  }
+
+  /**
+   * Set the <code>SortKeyRanking</code> value. Either way, the teams
+   * are ranked in the same order and with the same explanations.
+   *
+   * @param newSortKeyRanking The new SortKeyRanking value.
+   */
+  public final void setSortKeyRanking(final boolean newSortKeyRanking) {
+    this.sortKeyRanking = newSortKeyRanking;
   }
 
   // Implementation of regatta.Scorer
 
   /**
-   * Describe <code>score</code> method here.
+   * Scores the regatta. Only the races whose finishes have changed
+   * since the last call (see <code>Regatta.getDirtyRaces</code>) are
+   * placed again. The first call for a given regatta scores every
+   * race.
+   * <p>
+   * Average-finish breakdowns are then recomputed in every division
+   * which has any, in order of race and place, as if every race had
+   * been placed again. Each average counts the team's current scores
+   * in the other races of its division, including the breakdowns
+   * already averaged in this call, so that scoring only the races
+   * which changed gives the same result as scoring them all.
+   * <p>
+   * Races are placed independently of one another, on the common
+   * fork/join pool if there are at least as many finishes to place as
+   * the parallel threshold, and on the calling thread otherwise. The
+   * average finishes are then computed on the calling thread.
    *
    * @param regatta a <code>Regatta</code> value
    */
   public final void score(final Regatta regatta) {
+    boolean fullScore = (regatta != this.regatta);
     this.regatta = regatta;
 
     // Parameters
     Team [] teams = regatta.getTeams();
     Division [] divisions = regatta.getDivisions();
     final int FLEET;
-    if (regatta.getScoring() == RegattaScoring.COMBINED)
+    final boolean COMBINED =
+      (regatta.getScoring() == RegattaScoring.COMBINED);
+    if (COMBINED)
       FLEET = teams.length * divisions.length;
     else
       FLEET = teams.length;
 
-    // Finishes whose score needs to be averaged (and their actual
-    // place finish)
-    ArrayList<Finish> averageFinishes = new ArrayList<Finish>();
-    ArrayList<Integer> averagePlaces  = new ArrayList<Integer>();
-	
-    ArrayList<Finish> places;
+    // Determine which races to place. In combined scoring, the race
+    // placed is the one in the first division, which spans them all.
+    Set<Race> dirtyRaces = new TreeSet<Race>();
+    if (fullScore) {
+      this.averageFinishes.clear();
+    }
+    for (Race race : regatta.getDirtyRaces()) {
+      if (COMBINED) {
+	dirtyRaces.add(regatta.getRace(Division.A, race.getNumber()));
+      }
+      else {
+	dirtyRaces.add(race);
+      }
+    }
+    regatta.clearDirtyRaces();
+
     Race [] races = regatta.getFinishedRaces();
-    // For each race
+    // Forget the average finishes of the races to be placed again
+    for (Race race : dirtyRaces) {
+      this.averageFinishes.remove(race);
+    }
+    List<Race> toPlace = new ArrayList<Race>();
     for (Race race : races) {
-      places =
-	new ArrayList<Finish>(Arrays.asList(regatta.getFinishes(race)));
-      Collections.sort(places, new CleanPlaceComparator());
-
-      // Go through the finishes in "places", and place the assigned
-      // breakdowns where they belong, according to PR-20(c)(ii)
-      for (int i = 0; i < places.size(); i++) {
-	Finish f = places.get(i);
-	FinishAdjustment adjustment = f.getAdjustment();
-	if (adjustment != null &&
-	    adjustment instanceof Breakdown) {
-	  Breakdown bd = (Breakdown)adjustment;
-	  // If the handicap is better than the deserved finish...
-	  int hc = bd.getHandicap();
-	  if (hc > 0 && hc <= i) {
-	    places.remove(f);
-	    places.add(hc - 1, f);
+      if (fullScore || dirtyRaces.contains(race)) {
+	toPlace.add(race);
+      }
+    }
+
+    // Place each race. The races are independent of one another, so
+    // with enough finishes, they are placed on the fork/join pool
+    List<Map<Finish, Integer>> averages = new ArrayList<Map<Finish, Integer>>(
+      Collections.nCopies(toPlace.size(), (Map<Finish, Integer>)null));
+    if (toPlace.size() > 1 &&
+	toPlace.size() * FLEET >= this.parallelThreshold) {
+      ForkJoinPool.commonPool().invoke(new PlaceTask(regatta, toPlace, FLEET,
+						     averages, 0, toPlace.size()));
+    }
+    else {
+      for (int i = 0; i < toPlace.size(); i++) {
+	averages.set(i, place(regatta, toPlace.get(i), FLEET));
+      }
+    }
+    for (int i = 0; i < toPlace.size(); i++) {
+      if (averages.get(i) != null) {
+	this.averageFinishes.put(toPlace.get(i), averages.get(i));
+      }
+    }
+
+    // The divisions with average finishes, all of which are
+    // recomputed: an average counts the team's other average finishes
+    // too, so it may change even if its own division did not
+    Set<Division> avgDivisions = EnumSet.noneOf(Division.class);
+    for (Map<Finish, Integer> averagePlaces : this.averageFinishes.values()) {
+      for (Finish finish : averagePlaces.keySet()) {
+	avgDivisions.add(finish.getRace().getDivision());
+      }
+    }
+
+    // Running totals and counts of the valid (positive) scores of
+    // each team in each of those divisions, kept up to date as the
+    // average finishes are scored, so that averaging a finish does
+    // not go through every other race again
+    Map<Division, Map<Team, int []>> sums =
+      new EnumMap<Division, Map<Team, int []>>(Division.class);
+    for (Division div : avgDivisions) {
+      Map<Team, int []> divSums = new HashMap<Team, int []>();
+      for (Team team : teams) {
+	divSums.put(team, new int [2]);
+      }
+      for (Race race : regatta.getRaces(div)) {
+	for (Team team : teams) {
+	  Finish finish = regatta.getFinish(race, team);
+	  if (finish != null) {
+	    addScore(divSums.get(team), finish.getScore(), 1);
 	  }
 	}
       }
+      sums.put(div, divSums);
+    }
 
-      int place = 1;
-      for (Finish f: places) {
-	FinishAdjustment adjustment = f.getAdjustment();
-	// Regular finish
-	if (adjustment == null) {
-	  f.setScore(place++);
+    // Deal with average finishes, in order of race and place
+    for (Map<Finish, Integer> averagePlaces : this.averageFinishes.values()) {
+      for (Finish finish : averagePlaces.keySet()) {
+	Race race = finish.getRace();
+	Integer place = averagePlaces.get(finish);
+	Team team = finish.getTeam();
+
+	// The scores in the other races of the division
+	Map<Team, int []> divSums = sums.get(race.getDivision());
+	int [] sum = divSums.get(team);
+	if (sum == null) {
+	  // No longer in the regatta, and so with no other scores
+	  sum = new int [2];
+	  divSums.put(team, sum);
 	}
-	// Breakdown
-	else if (adjustment instanceof Breakdown) {
-	  Breakdown bd = (Breakdown)adjustment;
-	  if (bd.getHandicap() > 0) {
-	    f.setScore(place++);
+	Finish own = regatta.getFinish(race, team);
+	int [] other = {sum[0], sum[1]};
+	if (own != null) {
+	  addScore(other, own.getScore(), -1);
+	}
+	int total = other[0];
+	int num = other[1];
+
+	// Update score
+	int oldScore = finish.getScore();
+	if (num == 0) {
+	  if (place == null) {
+	    finish.setScore(FLEET);
 	  }
 	  else {
-	    averageFinishes.add(f);
-	    averagePlaces.add(new Integer(place++));
+	    finish.setScore(place.intValue());
 	  }
 	}
-	// Penalty
 	else {
-	  f.setScore(FLEET + 1);
+	  // Use the average, if its not better than actual
+	  int avg = Math.round((float)total / (float)num);
+	  finish.setScore(Math.min(place, avg));
+	}
+	if (finish == own) {
+	  addScore(sum, oldScore, -1);
+	  addScore(sum, finish.getScore(), 1);
 	}
       }
     }
+  }
 
+  /**
+   * Adds the given score to, or removes it from, the running total
+   * and count of valid scores, if it is valid (positive)
+   *
+   * @param sum the total and count
+   * @param score the score
+   * @param sign 1 to add, -1 to remove
+   */
+  private static void addScore(int [] sum, int score, int sign) {
+    if (score > 0) {
+      sum[0] += sign * score;
+      sum[1] += sign;
+    }
+  }
 
-    // Deal with average finishes
-    for (int i = 0; i < averageFinishes.size(); i++) {
-      Finish finish = averageFinishes.get(i);
-      Integer place = averagePlaces.get(i);
-      Race race = finish.getRace();
-      Team team = finish.getTeam();
+  /**
+   * Places the finishes of the given race: sorts them, moves the
+   * assigned breakdowns where they belong, according to PR-20(c)(ii),
+   * and scores them, but for average-finish breakdowns. Only the
+   * given race's finishes are changed, so races may be placed
+   * concurrently.
+   *
+   * @param regatta the regatta
+   * @param race the race to place
+   * @param fleet the number of boats in the race
+   * @return the finishes whose score needs to be averaged, with their
+   * actual place finish, or <code>null</code> if none
+   */
+  private static Map<Finish, Integer> place(Regatta regatta, Race race, int fleet) {
+    ArrayList<Finish> places =
+      new ArrayList<Finish>(Arrays.asList(regatta.getFinishes(race)));
+    Collections.sort(places, new CleanPlaceComparator());
 
-      int total = 0;
-      int num = 0;
-      Race [] otherRaces = regatta.getRaces(race.getDivision());
-      for (Race otherRace: otherRaces) {
-	Finish otherFinish = regatta.getFinish(otherRace, team);
-	if (!race.equals(otherRace) && otherFinish != null) {
-	  // Get other score
-	  int score = regatta.getFinish(otherRace, team).getScore();
-	  if (score > 0) {
-	    total += score;
-	    num++;
-	  }
+    // Go through the finishes in "places", and place the assigned
+    // breakdowns where they belong, according to PR-20(c)(ii)
+    for (int i = 0; i < places.size(); i++) {
+      Finish f = places.get(i);
+      FinishAdjustment adjustment = f.getAdjustment();
+      if (adjustment != null &&
+	  adjustment instanceof Breakdown) {
+	Breakdown bd = (Breakdown)adjustment;
+	// If the handicap is better than the deserved finish...
+	int hc = bd.getHandicap();
+	if (hc > 0 && hc <= i) {
+	  places.remove(f);
+	  places.add(hc - 1, f);
 	}
       }
-      // Update score
-      if (num == 0) {
-	if (place == null) {
-	  finish.setScore(FLEET);
+    }
+
+    // Finishes whose score needs to be averaged (and their actual
+    // place finish)
+    Map<Finish, Integer> averagePlaces =
+      new LinkedHashMap<Finish, Integer>();
+    int place = 1;
+    for (Finish f: places) {
+      FinishAdjustment adjustment = f.getAdjustment();
+      // Regular finish
+      if (adjustment == null) {
+	f.setScore(place++);
+      }
+      // Breakdown
+      else if (adjustment instanceof Breakdown) {
+	Breakdown bd = (Breakdown)adjustment;
+	if (bd.getHandicap() > 0) {
+	  f.setScore(place++);
 	}
 	else {
-	  finish.setScore(place.intValue());
+	  averagePlaces.put(f, new Integer(place++));
 	}
       }
+      // Penalty
       else {
-	// Use the average, if its not better than actual
-	int avg = Math.round((float)total / (float)num);
-	finish.setScore(Math.min(place, avg));
+	f.setScore(fleet + 1);
       }
     }
+    return (averagePlaces.size() > 0) ? averagePlaces : null;
+  }
+
+  /**
+   * Places a range of races, splitting it in two until there are few
+   * enough finishes to place on one thread
+   */
+  private static class PlaceTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Regatta regatta;
+    private final List<Race> races;
+    private final int fleet;
+    // Each task only sets its own entries, which are already there
+    private final List<Map<Finish, Integer>> averages;
+    private final int from, to;
+
+    PlaceTask(Regatta regatta, List<Race> races, int fleet,
+	      List<Map<Finish, Integer>> averages, int from, int to) {
+      this.regatta = regatta;
+      this.races = races;
+      this.fleet = fleet;
+      this.averages = averages;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (this.to - this.from == 1 ||
+	  (this.to - this.from) * this.fleet <= TASK_FINISHES) {
+	for (int i = this.from; i < this.to; i++) {
+	  this.averages.set(i, place(this.regatta, this.races.get(i), this.fleet));
+	}
+	return;
+      }
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new PlaceTask(this.regatta, this.races, this.fleet,
+			      this.averages, this.from, mid),
+		new PlaceTask(this.regatta, this.races, this.fleet,
+			      this.averages, mid, this.to));
+    }
   }
 
   /**
@@ -227,272 +466,526 @@ public class ICSAScorer implements Scorer {
   }
 
   private Team [] rank(Regatta reg, Division [] divs) {
+    Ranking ranking = new Ranking(reg, divs);
+    if (this.sortKeyRanking) {
+      ranking.rankBySortKey();
+    }
+    else {
+      ranking.rank();
+    }
 
-    List<Team> teamList = Arrays.asList(reg.getTeams());
-    List<Race> allRaces = new ArrayList<Race>();
-    
-    // Total the score for each team
-    List<Integer> totalList = new ArrayList<Integer>(teamList.size());
-    for (int t = 0; t < teamList.size(); t++) {
-      int total = 0;
-      Team team = teamList.get(t);
-      for (Division div: divs) {
-	Race [] divRaces = reg.getFinishedRaces(div);
-	allRaces.addAll(Arrays.asList(divRaces));
-	for (Race race : divRaces) {
-	  Finish f = reg.getFinish(race, team);
-	  total += f.getScore();
+    Team [] teams = ranking.teams;
+    Team [] newOrder = new Team [teams.length];
+    this.rankExplanations = new HashMap<Team, String>(teams.length);
+    for (int i = 0; i < teams.length; i++) {
+      int t = ranking.order[i];
+      newOrder[i] = teams[t];
+      this.rankExplanations.put(teams[t], ranking.getExplanation(t));
+    }
+    return newOrder;
+  }
+
+  /**
+   * A single ranking pass. The scores of every team are copied once
+   * into primitive arrays, and the tiebreakers then work on an index
+   * permutation of the teams (<code>order</code>), settling each tied
+   * range of it in place:
+   *
+   * <ol>
+   * <li>total score, including team penalties</li>
+   * <li>head-to-head: the number of times each tied team scored worse
+   * than the others, across the finished races</li>
+   * <li>most high-place finishes, from first place to the size of the
+   * fleet</li>
+   * <li>the last race, then the one before it, and so on</li>
+   * <li>alphabetical order</li>
+   * </ol>
+   *
+   * Teams are indexed in their natural order, as given by
+   * <code>Regatta.getTeams</code>.
+   */
+  private static class Ranking {
+
+    // Explanation types
+    private static final int NATURAL = 0;
+    private static final int HEAD_TO_HEAD = 1;
+    private static final int HIGH_FINISHES = 2;
+    private static final int LAST_RACE = 3;
+    private static final int ALPHABETICAL = 4;
+
+    final Team [] teams;
+    final int [] order;
+
+    /**
+     * Scores in the races being ranked, by team and race
+     */
+    private final int [][] scores;
+
+    /**
+     * Scores in all the finished races, by team and race, which are
+     * used by the head-to-head and last race tiebreakers
+     */
+    private final int [][] tieScores;
+    private final Race [] tieRaces;
+
+    private final int [] totals;
+    private final int fleetSize;
+
+    /**
+     * Finishes in each place, by team, for the teams which have
+     * reached the high-place finishes tiebreaker
+     */
+    private final int [][] places;
+
+    // Scratch sort key, and the tiebreaker which last ranked each team
+    private final int [] key;
+    private final int [] explainType;
+    private final int [] explainArg;
+
+    /**
+     * Copies the scores of the regatta for the given divisions.
+     *
+     * @param reg the regatta
+     * @param divs the divisions to rank
+     */
+    Ranking(Regatta reg, Division [] divs) {
+      this.teams = reg.getTeams();
+      int numTeams = this.teams.length;
+      this.fleetSize = numTeams;
+
+      List<Race> rankRaces = new ArrayList<Race>();
+      for (Division div : divs) {
+	rankRaces.addAll(Arrays.asList(reg.getFinishedRaces(div)));
+      }
+      this.tieRaces = reg.getFinishedRaces();
+      this.scores = getScores(reg, rankRaces.toArray(new Race [] {}));
+      this.tieScores = getScores(reg, this.tieRaces);
+
+      // Total the score for each team
+      this.totals = new int [numTeams];
+      for (int t = 0; t < numTeams; t++) {
+	int total = 0;
+	for (int score : this.scores[t]) {
+	  total += score;
 	}
 	// Add team penalties, if needed
-	TeamPenalty pen = reg.getTeamPenalty(div, team);
-	if (pen != null) {
-	  total += 20;
+	for (Division div : divs) {
+	  TeamPenalty pen = reg.getTeamPenalty(div, this.teams[t]);
+	  if (pen != null) {
+	    total += 20;
+	  }
 	}
+	this.totals[t] = total;
+      }
+
+      this.order = new int [numTeams];
+      this.key = new int [numTeams];
+      this.explainType = new int [numTeams];
+      this.explainArg = new int [numTeams];
+      this.places = new int [numTeams][];
+      for (int t = 0; t < numTeams; t++) {
+	this.order[t] = t;
       }
-      totalList.add(new Integer(total));
     }
 
-    // Order
-    Factory.multiSort(totalList, teamList);
-    // Fill explanations with default
-    this.rankExplanations = new HashMap<Team, String>(teamList.size());
-    for (Team team : teamList) {
-      this.rankExplanations.put(team, "Natural order");
+    private int [][] getScores(Regatta reg, Race [] races) {
+      int [][] s = new int [this.teams.length][races.length];
+      for (int t = 0; t < this.teams.length; t++) {
+	for (int r = 0; r < races.length; r++) {
+	  s[t][r] = reg.getFinish(races[r], this.teams[t]).getScore();
+	}
+      }
+      return s;
     }
 
-    // Settle ties
-    ArrayList<Team> newOrder = new ArrayList<Team>();
-    int numTeams = teamList.size();
-    int i = 0;
-    while (i < numTeams) {
-      ArrayList<Team> tiedTeams = new ArrayList<Team>();
-      tiedTeams.add(teamList.get(i));
-      Integer aScore = totalList.get(i);
-      i++;
+    /**
+     * Orders the teams by total score and settles the ties.
+     *
+     */
+    void rank() {
+      int numTeams = this.order.length;
+      for (int t = 0; t < numTeams; t++) {
+	this.key[t] = this.totals[t];
+	this.explainType[t] = NATURAL;
+      }
+      sort(0, numTeams);
+
+      // Number the ties, and count the head-to-head record of every
+      // tied team at once
+      List<int []> ties = new ArrayList<int []>();
+      int [] tie = new int [numTeams];
+      int [] tied = new int [numTeams];
+      int numTied = 0;
+      int i = 0;
       while (i < numTeams) {
-	Integer nextScore = totalList.get(i);
-	if (!nextScore.equals(aScore)) {
-	  break;
+	int j = nextTie(i, numTeams);
+	if (j - i > 1) {
+	  for (int k = i; k < j; k++) {
+	    int t = this.order[k];
+	    tie[t] = ties.size();
+	    tied[numTied++] = t;
+	    this.key[t] = 0;
+	    this.explainType[t] = HEAD_TO_HEAD;
+	  }
+	  ties.add(new int [] {i, j});
 	}
-	tiedTeams.add(teamList.get(i));
-	aScore = nextScore;
-	i++;
+	i = j;
       }
+      if (ties.isEmpty()) {
+	return;
+      }
+      countHeadToHead(tie, ties.size(), Arrays.copyOf(tied, numTied));
 
-      // Head to head ties
-      settleHeadToHead(tiedTeams, reg, allRaces.toArray(new Race[]{}));
-      newOrder.addAll(tiedTeams);
-    }
-    // Add the last team, if necessary
-    if (newOrder.size() < numTeams) {
-      newOrder.add(teamList.get(numTeams - 1));
+      for (int [] range : ties) {
+	settleHeadToHead(range[0], range[1]);
+      }
     }
 
-    return newOrder.toArray(new Team[]{});
-  }
+    /**
+     * Orders the teams with a single sort, by one composite key for
+     * each team: its total score, its head-to-head record among the
+     * teams with the same total, its finishes in each place, its
+     * scores in the finished races from the last one back, and the
+     * team itself. This gives the same order as <code>rank</code>, and
+     * each team is explained by the first part of the key which sets
+     * it apart from both its neighbours.
+     *
+     */
+    void rankBySortKey() {
+      int numTeams = this.order.length;
+      int numRaces = this.tieRaces.length;
 
-  /**
-   * Reshuffle the list of teams so that they are ranked in order of
-   * the number of times one of the teams scored better than another
-   * of the teams in the list.
-   *
-   * @param reg a <code>Regatta</code> value
-   */
-  private void settleHeadToHead(ArrayList<Team> teams,
-				Regatta reg, Race [] races) {
-    int numTeams = teams.size();
-    if (numTeams < 2) {
-      return;
-    }
-
-    // Go through each race, and score just the tied teams
-    HashMap<Team, Integer> headWins = new HashMap<Team, Integer>(numTeams);
-    for (Team team : teams) {
-      headWins.put(team, new Integer(0));
-      this.rankExplanations.put(team, "Head-to-head tiebreaker");
-    }
-    for (Race race : reg.getFinishedRaces()) {
-      ArrayList<Integer> scoreList = new ArrayList<Integer>(numTeams);
-      ArrayList<Team> teamList = new ArrayList<Team>(teams);
-      for (Team team : teams) {
-	scoreList.add(new Integer(reg.getFinish(race, team).getScore()));
-      }
-      Factory.multiSort(scoreList, teamList);
-      // Update headWins
-      Integer thisScore = scoreList.get(0);
-      int priorPlace = 0;
-      Team key = teamList.get(0);
-      headWins.put(key, new Integer(headWins.get(key).intValue() + priorPlace));
-      for (int i = 1; i < numTeams; i++) {
-	Integer nextScore = scoreList.get(i);
-	key = teamList.get(i);
-	int place = i;
-	if (nextScore.equals(thisScore)) {
-	  place = priorPlace;
+      // Number the totals shared by more than one team
+      Map<Integer, Integer> ties = new HashMap<Integer, Integer>();
+      for (int total : this.totals) {
+	Integer count = ties.get(total);
+	ties.put(total, (count == null) ? new Integer(1) : new Integer(count + 1));
+      }
+      int [] tie = new int [numTeams];
+      int [] tied = new int [numTeams];
+      int numTied = 0;
+      int numTies = 0;
+      for (Integer total : ties.keySet()) {
+	ties.put(total, (ties.get(total) > 1) ? new Integer(numTies++) : null);
+      }
+      for (int t = 0; t < numTeams; t++) {
+	this.key[t] = 0;
+	Integer id = ties.get(this.totals[t]);
+	if (id != null) {
+	  tie[t] = id;
+	  tied[numTied++] = t;
 	}
-	headWins.put(key, new Integer(headWins.get(key).intValue() + place));
-	
-	// Reset variables
-	priorPlace = place;
-	thisScore = nextScore;
-      }
-    }
-
-    // Rank the teams again
-    ArrayList<Integer> scoreList = new ArrayList<Integer>(numTeams);
-    int i = 0;
-    for (Team team : headWins.keySet()) {
-      teams.set(i++, team);
-      scoreList.add(headWins.get(team));
-    }
-    Factory.multiSort(scoreList, teams);
-
-    // Determine if there are more ties
-    i = 0;
-    int originalSpot = 0;
-    while (i < numTeams) {
-      ArrayList<Team> tiedTeams = new ArrayList<Team>();
-      tiedTeams.add(teams.get(i));
-      Integer aScore = scoreList.get(i);
-      i++;
-      while (i < numTeams) {
-	Integer nextScore = scoreList.get(i);
-	if (!nextScore.equals(aScore)) {
-	  break;
+      }
+      if (numTied > 0) {
+	countHeadToHead(tie, numTies, Arrays.copyOf(tied, numTied));
+      }
+
+      // Total, head-to-head, places 1..fleetSize, last race first, team
+      final int [][] sortKeys = new int [numTeams][];
+      Integer [] ranked = new Integer [numTeams];
+      for (int t = 0; t < numTeams; t++) {
+	int [] k = new int [this.fleetSize + numRaces + 3];
+	k[0] = this.totals[t];
+	k[1] = this.key[t];
+	int [] h = getPlaces(t);
+	for (int p = 1; p <= this.fleetSize; p++) {
+	  k[p + 1] = -h[p];
 	}
-	// Update variables
-	tiedTeams.add(teams.get(i));
-	aScore = nextScore;
-	i++;
+	for (int r = 0; r < numRaces; r++) {
+	  k[this.fleetSize + 2 + r] = this.tieScores[t][numRaces - 1 - r];
+	}
+	k[k.length - 1] = t;
+	sortKeys[t] = k;
+	ranked[t] = t;
       }
+      Arrays.sort(ranked, new Comparator<Integer>() {
+	  public int compare(Integer t1, Integer t2) {
+	    int [] k1 = sortKeys[t1];
+	    int [] k2 = sortKeys[t2];
+	    int i = firstDifference(k1, k2);
+	    return (i == k1.length) ? 0 : (k1[i] < k2[i]) ? -1 : 1;
+	  }
+	});
 
-      rankMostHighFinishes(tiedTeams, reg, races, 1);
+      int [] diff = new int [numTeams + 1];
+      for (int i = 1; i < numTeams; i++) {
+	diff[i] = firstDifference(sortKeys[ranked[i - 1]], sortKeys[ranked[i]]);
+      }
+      for (int i = 0; i < numTeams; i++) {
+	int t = ranked[i];
+	this.order[i] = t;
+	explain(t, Math.max(diff[i], diff[i + 1]), numRaces);
+      }
+    }
 
-      // Update original list with these findings
-      for (Team team : tiedTeams) {
-	teams.set(originalSpot++, team);
+    /**
+     * Returns the first index at which the two keys differ, or their
+     * length if they are equal.
+     *
+     */
+    private static int firstDifference(int [] k1, int [] k2) {
+      int i = 0;
+      while (i < k1.length && k1[i] == k2[i]) {
+	i++;
       }
+      return i;
     }
-  }
 
-  /**
-   * Recursive method for tiebreaking: rank the teams in order of
-   * highest place finishes.
-   *
-   * @param reg a <code>Regatta</code> value
-   * @param placeFinish an <code>int</code> value
-   */
-  private void rankMostHighFinishes(ArrayList<Team> teams,
-				    Regatta reg,
-				    Race [] races,
-				    int placeFinish) {
-    // Base cases
-    if (teams.size() < 2) {
-      return;
-    }
-    int fleetSize = reg.getTeams().length;
-    if (placeFinish > fleetSize) {
-      // There are still ties, go to the third tiebreaker
-      rankByLastRace(teams, reg, races, reg.getFinishedRaces().length - 1);
-      return;
+    /**
+     * Explains the given team by the part of the composite sort key
+     * at the given index.
+     *
+     */
+    private void explain(int t, int i, int numRaces) {
+      if (i == 0) {
+	this.explainType[t] = NATURAL;
+      }
+      else if (i == 1) {
+	this.explainType[t] = HEAD_TO_HEAD;
+      }
+      else if (i <= this.fleetSize + 1) {
+	this.explainType[t] = HIGH_FINISHES;
+	this.explainArg[t] = i - 1;
+      }
+      else if (i <= this.fleetSize + 1 + numRaces) {
+	this.explainType[t] = LAST_RACE;
+	this.explainArg[t] = numRaces - 1 - (i - this.fleetSize - 2);
+      }
+      else {
+	this.explainType[t] = ALPHABETICAL;
+      }
     }
 
-    // Work with copy of teams
-    ArrayList<Team> teamList = new ArrayList<Team>(teams);
+    /**
+     * Adds to the key of each tied team the number of times it scored
+     * worse than another team of the same tie, in a single pass over
+     * the finished races: in each race, the tied teams are sorted by
+     * score once, and each team counts the teams of its tie which
+     * came before it with a lower score. This takes time in the order
+     * of races &times; n log n, for n tied teams, however they are
+     * grouped, rather than races &times; n<sup>2</sup> for comparing
+     * every pair of teams in the larger ties.
+     *
+     * @param tie the index of the tie of each tied team
+     * @param numTies the number of ties
+     * @param tied the tied teams
+     */
+    private void countHeadToHead(int [] tie, int numTies, int [] tied) {
+      int n = tied.length;
+      int [] byScore = new int [n];
+      int [] raceScores = new int [this.teams.length];
+      // The number of teams of each tie seen with a lower score
+      int [] below = new int [numTies];
+      for (int r = 0; r < this.tieRaces.length; r++) {
+	for (int t : tied) {
+	  raceScores[t] = this.tieScores[t][r];
+	}
+	System.arraycopy(tied, 0, byScore, 0, n);
+	Factory.sortIndex(byScore, 0, n, raceScores);
+	Arrays.fill(below, 0);
 
-    int numTeams = teamList.size();
-    int [] numHighFinishes = new int [numTeams];
-    for (int t = 0; t < teamList.size(); t++) {
-      Team team = teamList.get(t);
-      this.rankExplanations.put(team, "More high-place finishes (" + placeFinish + ")");
-      for (Race race : races) {
-	if (reg.getFinish(race, team).getScore() == placeFinish) {
-	  numHighFinishes[t]++;
+	int i = 0;
+	while (i < n) {
+	  // Teams with the same score do not count each other
+	  int score = raceScores[byScore[i]];
+	  int j = i;
+	  while (j < n && raceScores[byScore[j]] == score) {
+	    int t = byScore[j++];
+	    this.key[t] += below[tie[t]];
+	  }
+	  for (int k = i; k < j; k++) {
+	    below[tie[byScore[k]]]++;
+	  }
+	  i = j;
 	}
       }
     }
 
-    // Rank according to most wins
-    ArrayList<Integer> numWins = new ArrayList<Integer>(numTeams);
-    for (int n : numHighFinishes) {
-      numWins.add(new Integer(races.length - n));
+    /**
+     * Reorders the tied teams in <code>order[from..to)</code> by the
+     * number of times each of them scored worse than another of them,
+     * as counted by <code>countHeadToHead</code>.
+     *
+     */
+    private void settleHeadToHead(int from, int to) {
+      sort(from, to);
+
+      int i = from;
+      while (i < to) {
+	int j = nextTie(i, to);
+	rankMostHighFinishes(i, j);
+	i = j;
+      }
     }
-    Factory.multiSort(numWins, teamList);
 
-    // Go through ranked list and remove those no longer in a tie
-    int originalSpot = 0;
-    int i = 0;
-    while (i < numTeams) {
-      Integer thisScore = numWins.get(i);
-      ArrayList<Team> tiedTeams = new ArrayList<Team>(1);
-      tiedTeams.add(teamList.get(i));
-      i++;
-      while (i < numTeams) {
-	Integer nextScore = numWins.get(i);
-	if (!thisScore.equals(nextScore))
-	  break;
-	tiedTeams.add(teamList.get(i));
-	thisScore = nextScore;
-	i++;
+    /**
+     * Reorders the tied teams in <code>order[from..to)</code> by the
+     * number of finishes in first place, then in second place, and so
+     * on, by comparing their place histograms. Each team is explained
+     * by the first place which sets it apart from the rest of the
+     * tie; teams with the same histogram go on to the last race.
+     *
+     */
+    private void rankMostHighFinishes(int from, int to) {
+      if (to - from < 2) {
+	return;
+      }
+      Integer [] tied = new Integer [to - from];
+      for (int i = from; i < to; i++) {
+	tied[i - from] = this.order[i];
       }
+      // Stable, like the other tiebreakers
+      Arrays.sort(tied, new Comparator<Integer>() {
+	  public int compare(Integer t1, Integer t2) {
+	    int p = firstDifference(t1, t2);
+	    if (p > fleetSize) {
+	      return 0;
+	    }
+	    return getPlaces(t2)[p] - getPlaces(t1)[p];
+	  }
+	});
 
-      rankMostHighFinishes(tiedTeams, reg, races, placeFinish + 1);
-      for (Team team : tiedTeams) {
-	teams.set(originalSpot++, team);
+      // The place which sets each team apart from both its neighbours
+      int n = tied.length;
+      int [] diff = new int [n + 1];
+      diff[0] = 1;
+      diff[n] = 1;
+      for (int i = 1; i < n; i++) {
+	diff[i] = firstDifference(tied[i - 1], tied[i]);
+      }
+      for (int i = 0; i < n; i++) {
+	int t = tied[i];
+	this.order[from + i] = t;
+	this.explainType[t] = HIGH_FINISHES;
+	this.explainArg[t] = Math.min(Math.max(diff[i], diff[i + 1]),
+				      this.fleetSize);
+      }
+
+      // There are still ties, go to the third tiebreaker
+      int i = 0;
+      while (i < n) {
+	int j = i + 1;
+	while (j < n && diff[j] > this.fleetSize) {
+	  j++;
+	}
+	rankByLastRace(from + i, from + j, this.tieRaces.length - 1);
+	i = j;
       }
     }
-  }
 
-  private void rankByLastRace(ArrayList<Team> teams,
-			      Regatta reg,
-			      Race [] races,
-			      int raceIndex) {
-    int numTeams = teams.size();
-    if (numTeams < 2) {
-      return;
-    }
-    if (raceIndex < 0) {
-      // Let's go alphabetical
-      Collections.sort(teams);
-      for (Team team : teams) {
-	this.rankExplanations.put(team, "Alphabetical");
+    /**
+     * Returns the number of finishes of the given team in each place,
+     * from 1 to the size of the fleet, counting them on first use.
+     *
+     * @param t the team index
+     * @return the histogram, indexed by place
+     */
+    private int [] getPlaces(int t) {
+      if (this.places[t] == null) {
+	int [] h = new int [this.fleetSize + 1];
+	for (int score : this.scores[t]) {
+	  if (score >= 1 && score <= this.fleetSize) {
+	    h[score]++;
+	  }
+	}
+	this.places[t] = h;
       }
-      return;
+      return this.places[t];
     }
 
-    // Get the last race
-    Race lastRace = reg.getFinishedRaces()[raceIndex];
-    ArrayList<Integer> scoreList = new ArrayList<Integer>(numTeams);
-    for (Team team : teams) {
-      scoreList.add(new Integer(reg.getFinish(lastRace, team).getScore()));
-      this.rankExplanations.put(team, "According to last race (" + lastRace + ")");
+    /**
+     * Returns the first place in which the two teams have a different
+     * number of finishes, or one more than the size of the fleet if
+     * there is none.
+     *
+     */
+    private int firstDifference(int t1, int t2) {
+      int [] h1 = getPlaces(t1);
+      int [] h2 = getPlaces(t2);
+      int p = 1;
+      while (p <= this.fleetSize && h1[p] == h2[p]) {
+	p++;
+      }
+      return p;
     }
-    Factory.multiSort(scoreList, teams);
 
-    // Check for more ties
-    ArrayList<Team> teamList = new ArrayList<Team>(teams);
-    int i = 0;
-    int originalSpot = 0;
-    while (i < numTeams) {
-      Integer thisScore = scoreList.get(i);
-      ArrayList<Team> tiedTeams = new ArrayList<Team>(1);
-      tiedTeams.add(teamList.get(i));
-      i++;
-      while (i < numTeams) {
-	Integer nextScore = scoreList.get(i);
-	if (!nextScore.equals(thisScore)) {
-	  break;
+    /**
+     * Reorders the tied teams in <code>order[from..to)</code> by their
+     * score in the given finished race, moving on to the previous race
+     * for the teams still tied, and ending in alphabetical order.
+     *
+     */
+    private void rankByLastRace(int from, int to, int raceIndex) {
+      if (to - from < 2) {
+	return;
+      }
+      if (raceIndex < 0) {
+	// Let's go alphabetical
+	for (int i = from; i < to; i++) {
+	  int t = this.order[i];
+	  this.key[t] = t;
+	  this.explainType[t] = ALPHABETICAL;
 	}
-	tiedTeams.add(teamList.get(i));
-	// Update variables
-	thisScore = nextScore;
-	i++;
+	sort(from, to);
+	return;
+      }
+
+      for (int i = from; i < to; i++) {
+	int t = this.order[i];
+	this.key[t] = this.tieScores[t][raceIndex];
+	this.explainType[t] = LAST_RACE;
+	this.explainArg[t] = raceIndex;
       }
+      sort(from, to);
+
+      int i = from;
+      while (i < to) {
+	int j = nextTie(i, to);
+	rankByLastRace(i, j, raceIndex - 1);
+	i = j;
+      }
+    }
+
+    /**
+     * Returns the end of the range of teams, starting at
+     * <code>from</code>, which share the same sort key.
+     *
+     */
+    private int nextTie(int from, int to) {
+      int k = this.key[this.order[from]];
+      int j = from + 1;
+      while (j < to && this.key[this.order[j]] == k) {
+	j++;
+      }
+      return j;
+    }
+
+    /**
+     * Stable sort of <code>order[from..to)</code> by key.
+     *
+     */
+    private void sort(int from, int to) {
+      Factory.sortIndex(this.order, from, to, this.key);
+    }
 
-      // Resolve ties
-      rankByLastRace(tiedTeams, reg, races, raceIndex - 1);
-      for (Team team : tiedTeams) {
-	teams.set(originalSpot++, team);
+    /**
+     * Describes the tiebreaker which last ranked the given team.
+     *
+     * @param t the team index
+     * @return the explanation
+     */
+    String getExplanation(int t) {
+      switch (this.explainType[t]) {
+      case HEAD_TO_HEAD:
+	return "Head-to-head tiebreaker";
+      case HIGH_FINISHES:
+	return "More high-place finishes (" + this.explainArg[t] + ")";
+      case LAST_RACE:
+	return "According to last race (" + this.tieRaces[this.explainArg[t]] + ")";
+      case ALPHABETICAL:
+	return "Alphabetical";
+      default:
+	return "Natural order";
       }
     }
   }
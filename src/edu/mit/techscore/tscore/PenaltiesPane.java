@@ -338,6 +338,7 @@ public class PenaltiesPane
 
       Finish f = regatta.getFinish(race, team);
       f.setPenalty(new Penalty(type, comm));
+      regatta.setFinish(f);
       PenaltiesPane.this.penaltyList.add(f);
 
       // Reset team/comments
@@ -368,6 +369,7 @@ public class PenaltiesPane
       Finish f = regatta.getFinish(this.penalty.getRace(),
 				   this.penalty.getTeam());
       f.setPenalty(null);
+      regatta.setFinish(f);
       regatta.fireRegattaChange(new RegattaEvent(regatta,
 						 RegattaEventType.FINISH,
 						 PenaltiesPane.this));
@@ -383,6 +383,9 @@ public class RPDatabasePane
 						 name,
 						 cal.getTime(),
 						 true));
+	regatta.fireRegattaChange(new RegattaEvent(regatta,
+						   RegattaEventType.RP_DATA,
+						   this));
 	// Redraw membership list
 	updateList(affiliation);
 	// Scroll to bottom
@@ -403,6 +406,9 @@ public class RPDatabasePane
 	cal.setTime((Date)yearSpinner.getValue());
 	MembershipDatabase db = regatta.getRP().getDatabase();
 	db.unsetMember(affiliation, DatabaseRow.this.sailor);
+	regatta.fireRegattaChange(new RegattaEvent(regatta,
+						   RegattaEventType.RP_DATA,
+						   this));
 
 	// Redraw the entire list (why?)
 	updateList(affiliation);
@@ -425,6 +431,9 @@ public class RPDatabasePane
 	
 	  MembershipDatabase db = RPDatabasePane.this.regatta.getRP().getDatabase();
 	  db.setMember(affiliation, member);
+	  regatta.fireRegattaChange(new RegattaEvent(regatta,
+						     RegattaEventType.RP_DATA,
+						     this));
 	} catch (ParseException e) {}
 
 	// Redraw the entire list (why?)
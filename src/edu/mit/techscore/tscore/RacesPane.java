@@ -28,9 +28,6 @@ import edu.mit.techscore.regatta.Team;
 import edu.mit.techscore.regatta.RegattaEvent;
 import edu.mit.techscore.regatta.RegattaEvent.RegattaEventType;
 import javax.swing.ImageIcon;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Arrays;
 import javax.swing.JScrollBar;
 import javax.swing.ScrollPaneConstants;
 
@@ -439,15 +436,8 @@ public class RacesPane extends AbstractPane
 	RacesPane.this.updateTeamPanel();
 	return;
       }
-      Team t = new Team(l, s);
-      Set<Team> teamSet =
-	new HashSet<Team>(Arrays.asList(RacesPane.this.regatta.getTeams()));
-
-      // If regatta allows the new team to be added
-      // then edit the team's details
-      if (teamSet.add(t)) {
-	this.team.setLongname(l);
-	this.team.setShortname(s);
+      // If regatta allows the new name, then edit the team's details
+      if (RacesPane.this.regatta.setTeamName(this.team, l, s)) {
 	RegattaEvent evt = new RegattaEvent(regatta,
 					    RegattaEventType.TEAM,
 					    this);
@@ -0,0 +1,871 @@
+package edu.mit.techscore.tscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import edu.mit.techscore.regatta.Breakdown;
+import edu.mit.techscore.regatta.Breakdown.BreakdownType;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.FinishAdjustment;
+import edu.mit.techscore.regatta.MembershipDatabase;
+import edu.mit.techscore.regatta.MembershipDatabase.Membership;
+import edu.mit.techscore.regatta.Penalty;
+import edu.mit.techscore.regatta.Penalty.PenaltyType;
+import edu.mit.techscore.regatta.RP;
+import edu.mit.techscore.regatta.RP.BoatRole;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Regatta.RegattaScoring;
+import edu.mit.techscore.regatta.Regatta.RegattaType;
+import edu.mit.techscore.regatta.Rotation;
+import edu.mit.techscore.regatta.Sail;
+import edu.mit.techscore.regatta.Sailor;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.regatta.TeamPenalty;
+import edu.mit.techscore.regatta.TeamPenalty.TeamPenaltyType;
+
+/**
+ * Reads and writes a whole regatta in a compact binary format, which
+ * loads much faster than the XML of a regatta file. A binary file
+ * starts with the bytes <code>TSRB</code>, the version of the format
+ * and a byte of flags, and is optionally compressed after that.
+ * The rest holds:
+ *
+ * <ul>
+ * <li>a table of every string in the file, to which the rest refer
+ * by index, so that names, sails and ids are stored once;</li>
+ * <li>the names of the constants of each enumerated type, to which
+ * penalties, breakdowns, roles and the like refer by index, so that
+ * reordering the constants does not change the meaning of a
+ * file;</li>
+ * <li>the details, teams, rotation, finishes, team penalties,
+ * membership and RP of the regatta, in that order.</li>
+ * </ul>
+ *
+ * Numbers are written as variable length integers, seven bits to
+ * the byte; races as a single such number, and teams as their index
+ * in {@link Regatta#getTeams}. Unlike the XML format, which keeps
+ * only the time of day of each finish, the format keeps everything
+ * in the model, so that a regatta read from XML and written here
+ * writes the same XML again.<p>
+ *
+ * {@link RegattaIO#readFile} recognizes either format. Files are
+ * converted from the command line with:
+ *
+ * <pre>
+ * RegattaCodec [-z] [-n runs] in out
+ * </pre>
+ *
+ * where an output file ending in .tsb is written in this format, and
+ * compressed if <code>-z</code> is given, and any other in XML. The
+ * time to load the input in either format is reported for the given
+ * number of runs.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 21:05:12 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class RegattaCodec {
+
+  /**
+   * The extension of binary regatta files
+   */
+  public static final String FILE_EXTENSION = "tsb";
+
+  /**
+   * The version of the format written
+   */
+  public static final int VERSION = 1;
+
+  private static final byte [] MAGIC = {'T', 'S', 'R', 'B'};
+  private static final int HEADER_LENGTH = MAGIC.length + 2;
+
+  // Flags
+  private static final int COMPRESSED = 1;
+
+  // Kinds of finish adjustment, and whether there is a timestamp
+  private static final int NO_ADJUSTMENT = 0;
+  private static final int PENALTY = 1;
+  private static final int BREAKDOWN = 2;
+  private static final int TIMESTAMP = 4;
+
+  // The enumerated types, in the order of their dictionaries
+  private static final Class<?> [] DICTIONARIES = {RegattaType.class,
+						   RegattaScoring.class,
+						   PenaltyType.class,
+						   BreakdownType.class,
+						   TeamPenaltyType.class,
+						   BoatRole.class};
+
+  private RegattaCodec() {}
+
+  /**
+   * Returns whether the given file is in the binary format.
+   *
+   * @param f the file
+   * @return <code>true</code> if it starts with the binary header
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isBinary(File f) throws IOException {
+    return readHeader(f) != null;
+  }
+
+  /**
+   * Returns whether the given file is in the binary format, and
+   * compressed.
+   *
+   * @param f the file
+   * @return <code>true</code> if compressed
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isCompressed(File f) throws IOException {
+    byte [] header = readHeader(f);
+    return (header != null && (header[MAGIC.length + 1] & COMPRESSED) != 0);
+  }
+
+  /**
+   * Returns the header of the given file, or <code>null</code> if it
+   * is too short, or does not start with the magic bytes
+   */
+  private static byte [] readHeader(File f) throws IOException {
+    byte [] header = new byte[HEADER_LENGTH];
+    InputStream in = new FileInputStream(f);
+    try {
+      int len = 0, n;
+      while (len < header.length &&
+	     (n = in.read(header, len, header.length - len)) > 0)
+	len += n;
+      if (len < header.length)
+	return null;
+    } finally {
+      in.close();
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i])
+	return null;
+    }
+    return header;
+  }
+
+  /**
+   * Writes the given regatta to the given stream. The stream is
+   * finished, but not closed.
+   *
+   * @param reg the regatta
+   * @param out the stream
+   * @param compress whether to compress what follows the header
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(Regatta reg, OutputStream out, boolean compress)
+    throws IOException {
+    Encoder body = new Encoder();
+    body.writeRegatta(reg);
+
+    out.write(MAGIC);
+    out.write(VERSION);
+    out.write(compress ? COMPRESSED : 0);
+    OutputStream rest = out;
+    DeflaterOutputStream deflater = null;
+    if (compress)
+      rest = deflater = new DeflaterOutputStream(out);
+    body.writeTo(rest);
+    if (deflater != null)
+      deflater.finish();
+    out.flush();
+  }
+
+  /**
+   * Writes the given regatta to the given file.
+   *
+   * @param reg the regatta
+   * @param file the file
+   * @param compress whether to compress the file
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Regatta reg, File file, boolean compress)
+    throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      write(reg, out, compress);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a regatta from the given stream, to its end.
+   *
+   * @param in the stream
+   * @return the regatta
+   * @throws IOException if the stream cannot be read, or does not
+   * hold a regatta in a known version of the format
+   */
+  public static Regatta read(InputStream in) throws IOException {
+    byte [] header = new byte[HEADER_LENGTH];
+    int len = 0, n;
+    while (len < header.length &&
+	   (n = in.read(header, len, header.length - len)) > 0)
+      len += n;
+    if (len < header.length ||
+	!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC))
+      throw new IOException("Not a binary regatta file.");
+    int version = header[MAGIC.length];
+    if (version < 1 || version > VERSION)
+      throw new IOException("Unknown version of binary regatta file: " + version);
+    if ((header[MAGIC.length + 1] & COMPRESSED) != 0)
+      in = new InflaterInputStream(in);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte [] buf = new byte[8192];
+    while ((n = in.read(buf)) > 0)
+      bytes.write(buf, 0, n);
+    try {
+      return new Decoder(bytes.toByteArray()).readRegatta();
+    } catch (RuntimeException e) {
+      // Out of range indices, missing bytes and the like
+      throw new IOException("Corrupt binary regatta file: " + e, e);
+    }
+  }
+
+  /**
+   * Reads a regatta from the given file.
+   *
+   * @param file the file
+   * @return the regatta
+   * @throws IOException if the file cannot be read
+   * @see #read(InputStream)
+   */
+  public static Regatta read(File file) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      return read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * The races which one sailor sailed for a team, in one division and
+   * role
+   */
+  private static class RPEntry {
+    final Team team;
+    final Division div;
+    final BoatRole role;
+    final Sailor sailor;
+    final List<Race> races;
+
+    RPEntry(Team team, Division div, BoatRole role, Sailor sailor,
+	    List<Race> races) {
+      this.team = team;
+      this.div = div;
+      this.role = role;
+      this.sailor = sailor;
+      this.races = races;
+    }
+  }
+
+  /**
+   * Builds the body of a file: the string table and dictionaries are
+   * only known once the regatta is encoded, so the regatta is encoded
+   * first, and written after them.
+   */
+  private static class Encoder {
+    private final Map<String, Integer> strings;
+    private final ByteArrayOutputStream out;
+    private Team [] teams;
+    private int numDivs;
+    private long lastTime;
+
+    Encoder() {
+      this.strings = new LinkedHashMap<String, Integer>();
+      this.out = new ByteArrayOutputStream();
+    }
+
+    void writeTo(OutputStream dest) throws IOException {
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      writeVarint(head, this.strings.size());
+      for (String s : this.strings.keySet()) {
+	byte [] b = s.getBytes(StandardCharsets.UTF_8);
+	writeVarint(head, b.length);
+	head.write(b, 0, b.length);
+      }
+      for (Class<?> type : DICTIONARIES) {
+	Object [] values = type.getEnumConstants();
+	writeVarint(head, values.length);
+	for (Object value : values) {
+	  byte [] b = ((Enum<?>)value).name().getBytes(StandardCharsets.UTF_8);
+	  writeVarint(head, b.length);
+	  head.write(b, 0, b.length);
+	}
+      }
+      head.writeTo(dest);
+      this.out.writeTo(dest);
+    }
+
+    private void writeInt(long n) {
+      writeVarint(this.out, n);
+    }
+
+    // Zigzag, so that small negative numbers stay small
+    private void writeSigned(long n) {
+      writeVarint(this.out, (n << 1) ^ (n >> 63));
+    }
+
+    private void writeBoolean(boolean b) {
+      this.out.write(b ? 1 : 0);
+    }
+
+    // Index in the string table, plus one; zero for null
+    private void writeString(String s) {
+      if (s == null) {
+	this.writeInt(0);
+	return;
+      }
+      Integer index = this.strings.get(s);
+      if (index == null) {
+	index = new Integer(this.strings.size());
+	this.strings.put(s, index);
+      }
+      this.writeInt(index.intValue() + 1);
+    }
+
+    private void writeEnum(Enum<?> e) {
+      this.writeInt(e.ordinal());
+    }
+
+    private void writeRace(Race race) {
+      this.writeInt((race.getNumber() - 1) * this.numDivs + race.getDivision().ordinal());
+    }
+
+    private void writeTeam(Team team) {
+      for (int t = 0; t < this.teams.length; t++) {
+	if (this.teams[t] == team) {
+	  this.writeInt(t);
+	  return;
+	}
+      }
+      throw new IllegalArgumentException("Team not in regatta: " + team);
+    }
+
+    // The year of a sailor; zero for none
+    private void writeYear(Date year) {
+      if (year == null) {
+	this.writeInt(0);
+	return;
+      }
+      Calendar cal = Calendar.getInstance();
+      cal.setTime(year);
+      this.writeInt(cal.get(Calendar.YEAR));
+    }
+
+    void writeRegatta(Regatta reg) {
+      // Details
+      this.writeString(reg.getName());
+      this.writeSigned(reg.getStartTime().getTime());
+      this.writeInt(reg.getDuration());
+      this.writeEnum(reg.getType());
+      this.writeEnum(reg.getScoring());
+      Map<Date, String> blurbs = reg.getBlurbs();
+      this.writeInt(blurbs.size());
+      for (Map.Entry<Date, String> entry : blurbs.entrySet()) {
+	this.writeSigned(entry.getKey().getTime());
+	this.writeString(entry.getValue());
+      }
+
+      // Races and teams
+      Division [] divs = reg.getDivisions();
+      this.numDivs = divs.length;
+      this.writeInt(this.numDivs);
+      this.writeInt(reg.getNumRaces());
+      this.teams = reg.getTeams();
+      this.writeInt(this.teams.length);
+      for (Team team : this.teams) {
+	this.writeString(team.getLongname());
+	this.writeString(team.getShortname());
+	this.writeString(team.getAffiliation());
+      }
+
+      // Rotation: the sails of each race
+      Rotation rot = reg.getRotation();
+      this.writeBoolean(rot != null);
+      if (rot != null) {
+	Race [] races = rot.getRaces();
+	this.writeInt(races.length);
+	for (Race race : races) {
+	  this.writeRace(race);
+	  List<Integer> teams = new ArrayList<Integer>();
+	  List<Sail> sails = new ArrayList<Sail>();
+	  for (int t = 0; t < this.teams.length; t++) {
+	    Sail sail = rot.getSail(race, this.teams[t]);
+	    if (sail != null) {
+	      teams.add(new Integer(t));
+	      sails.add(sail);
+	    }
+	  }
+	  this.writeInt(teams.size());
+	  for (int i = 0; i < teams.size(); i++) {
+	    this.writeInt(teams.get(i).intValue());
+	    this.writeString(sails.get(i).toString());
+	  }
+	}
+      }
+
+      // Finishes, by race; in combined scoring, getFinishedRaces()
+      // lists only division A
+      List<Race> finished = new ArrayList<Race>();
+      for (Division div : divs)
+	finished.addAll(Arrays.asList(reg.getFinishedRaces(div)));
+      this.writeInt(finished.size());
+      for (Race race : finished) {
+	this.writeRace(race);
+	List<Finish> list = new ArrayList<Finish>();
+	for (Team team : this.teams) {
+	  Finish finish = reg.getFinish(race, team);
+	  if (finish != null)
+	    list.add(finish);
+	}
+	this.writeInt(list.size());
+	for (Finish finish : list)
+	  this.writeFinish(finish);
+      }
+
+      // Team penalties
+      TeamPenalty [] penalties = reg.getTeamPenalties();
+      this.writeInt(penalties.length);
+      for (TeamPenalty pen : penalties) {
+	this.writeEnum(pen.getDivision());
+	this.writeTeam(pen.getTeam());
+	this.writeEnum(pen.getType());
+	this.writeString(pen.getComments());
+      }
+
+      // Membership, every member and not only the new ones
+      RP rp = reg.getRP();
+      MembershipDatabase db = (rp == null) ? null : rp.getDatabase();
+      String [] affs = (db == null) ? new String [0] : db.getAffiliations();
+      this.writeInt(affs.length);
+      for (String aff : affs) {
+	Membership [] members = db.getMembers(aff);
+	this.writeString(aff);
+	this.writeInt(members.length);
+	for (Membership member : members) {
+	  this.writeString(member.getID());
+	  this.writeString(member.getName());
+	  this.writeYear(member.getYear());
+	  this.writeBoolean(member.isNew());
+	}
+      }
+
+      // RP: each sailor of each team, division and role, with the
+      // numbers of the races in that division
+      List<RPEntry> entries = new ArrayList<RPEntry>();
+      if (rp != null) {
+	for (Team team : this.teams) {
+	  for (Division div : divs) {
+	    for (BoatRole role : BoatRole.values()) {
+	      for (Sailor sailor : rp.getSailors(team, div, role)) {
+		List<Race> races = new ArrayList<Race>();
+		for (Race race : rp.getRaces(team, sailor, role)) {
+		  if (race.getDivision() == div)
+		    races.add(race);
+		}
+		entries.add(new RPEntry(team, div, role, sailor, races));
+	      }
+	    }
+	  }
+	}
+      }
+      this.writeInt(entries.size());
+      for (RPEntry entry : entries) {
+	Sailor sailor = entry.sailor;
+	List<Race> races = entry.races;
+	this.writeTeam(entry.team);
+	this.writeEnum(entry.div);
+	this.writeEnum(entry.role);
+	this.writeString(sailor.getID());
+	this.writeString(sailor.getName());
+	this.writeYear(sailor.getYear());
+	this.writeInt(races.size());
+	int last = 0;
+	for (Race race : races) {
+	  this.writeInt(race.getNumber() - last);
+	  last = race.getNumber();
+	}
+      }
+    }
+
+    private void writeFinish(Finish finish) {
+      FinishAdjustment adjust = finish.getAdjustment();
+      int kind = NO_ADJUSTMENT;
+      if (adjust instanceof Penalty)
+	kind = PENALTY;
+      else if (adjust instanceof Breakdown)
+	kind = BREAKDOWN;
+      Date time = finish.getTimestamp();
+      if (time != null)
+	kind |= TIMESTAMP;
+
+      this.writeTeam(finish.getTeam());
+      this.writeInt(kind);
+      if (time != null) {
+	// Finishes are close together: the difference is small
+	this.writeSigned(time.getTime() - this.lastTime);
+	this.lastTime = time.getTime();
+      }
+      if ((kind & PENALTY) != 0) {
+	this.writeEnum(adjust.getType());
+	this.writeString(adjust.getComments());
+      }
+      else if ((kind & BREAKDOWN) != 0) {
+	this.writeEnum(adjust.getType());
+	this.writeString(adjust.getComments());
+	this.writeSigned(((Breakdown)adjust).getHandicap());
+      }
+    }
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, long n) {
+    while ((n & ~0x7FL) != 0) {
+      out.write((int)((n & 0x7F) | 0x80));
+      n >>>= 7;
+    }
+    out.write((int)n);
+  }
+
+  /**
+   * Reads the body of a file, in the order in which the encoder
+   * writes it
+   */
+  private static class Decoder {
+    private final byte [] buf;
+    private int pos;
+    private String [] strings;
+    private Enum<?> [][] dictionaries;
+    private Regatta regatta;
+    private Team [] teams;
+    private int numDivs;
+    private long lastTime;
+
+    Decoder(byte [] buf) {
+      this.buf = buf;
+      this.pos = 0;
+    }
+
+    private long readLong() {
+      long n = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+	byte b = this.buf[this.pos++];
+	n |= (long)(b & 0x7F) << shift;
+	if (b >= 0)
+	  return n;
+      }
+      throw new IllegalArgumentException("Malformed number.");
+    }
+
+    private int readInt() {
+      long n = this.readLong();
+      if (n < 0 || n > Integer.MAX_VALUE)
+	throw new IllegalArgumentException("Number out of range: " + n);
+      return (int)n;
+    }
+
+    private long readSigned() {
+      long n = this.readLong();
+      return (n >>> 1) ^ -(n & 1);
+    }
+
+    private boolean readBoolean() {
+      return this.buf[this.pos++] != 0;
+    }
+
+    private String readBytes() {
+      int len = this.readInt();
+      String s = new String(this.buf, this.pos, len, StandardCharsets.UTF_8);
+      this.pos += len;
+      return s;
+    }
+
+    private String readString() {
+      int index = this.readInt();
+      return (index == 0) ? null : this.strings[index - 1];
+    }
+
+    private <E extends Enum<E>> E readEnum(Class<E> type) {
+      int d = Arrays.asList(DICTIONARIES).indexOf(type);
+      return type.cast(this.dictionaries[d][this.readInt()]);
+    }
+
+    private Race readRace() {
+      int key = this.readInt();
+      Race race = this.regatta.getRace(Division.values()[key % this.numDivs],
+				       key / this.numDivs + 1);
+      if (race == null)
+	throw new IllegalArgumentException("No such race: " + key);
+      return race;
+    }
+
+    private Team readTeam() {
+      return this.teams[this.readInt()];
+    }
+
+    private Date readYear() {
+      int year = this.readInt();
+      if (year == 0)
+	return null;
+      Calendar cal = Calendar.getInstance();
+      cal.set(Calendar.YEAR, year);
+      return cal.getTime();
+    }
+
+    Regatta readRegatta() throws IOException {
+      // String table and dictionaries
+      this.strings = new String[this.readInt()];
+      for (int i = 0; i < this.strings.length; i++)
+	this.strings[i] = this.readBytes();
+      this.dictionaries = new Enum<?>[DICTIONARIES.length][];
+      for (int d = 0; d < DICTIONARIES.length; d++) {
+	Enum<?> [] dict = new Enum<?>[this.readInt()];
+	for (int i = 0; i < dict.length; i++) {
+	  String name = this.readBytes();
+	  for (Object value : DICTIONARIES[d].getEnumConstants()) {
+	    if (((Enum<?>)value).name().equals(name))
+	      dict[i] = (Enum<?>)value;
+	  }
+	  if (dict[i] == null)
+	    throw new IOException("Unknown " + DICTIONARIES[d].getSimpleName() +
+				  ": " + name);
+	}
+	this.dictionaries[d] = dict;
+      }
+
+      // Details
+      Regatta reg = new Regatta(this.readString());
+      this.regatta = reg;
+      reg.setStartTime(new Date(this.readSigned()));
+      reg.setDuration(this.readInt());
+      reg.setType(this.readEnum(RegattaType.class));
+      reg.setScoring(this.readEnum(RegattaScoring.class));
+      int count = this.readInt();
+      for (int i = 0; i < count; i++) {
+	Date day = new Date(this.readSigned());
+	reg.setBlurb(day, this.readString());
+      }
+
+      // Races and teams
+      this.numDivs = this.readInt();
+      int numRaces = this.readInt();
+      if (this.numDivs > 0 && numRaces > 0)
+	reg.createRaces(this.numDivs, numRaces);
+      this.teams = new Team[this.readInt()];
+      for (int t = 0; t < this.teams.length; t++) {
+	Team team = new Team(this.readString(), this.readString());
+	team.setAffiliation(this.readString());
+	if (!reg.addTeam(team))
+	  throw new IllegalArgumentException("Duplicate team: " + team);
+	this.teams[t] = team;
+      }
+
+      // Rotation
+      if (this.readBoolean()) {
+	Rotation rot = new Rotation();
+	count = this.readInt();
+	for (int i = 0; i < count; i++) {
+	  Race race = this.readRace();
+	  int sails = this.readInt();
+	  for (int s = 0; s < sails; s++) {
+	    Team team = this.readTeam();
+	    rot.setSail(race, team, new Sail(this.readString()));
+	  }
+	}
+	reg.setRotation(rot);
+      }
+
+      // Finishes
+      count = this.readInt();
+      for (int i = 0; i < count; i++) {
+	Race race = this.readRace();
+	int finishes = this.readInt();
+	for (int f = 0; f < finishes; f++)
+	  reg.setFinish(this.readFinish(race));
+      }
+
+      // Team penalties
+      count = this.readInt();
+      for (int i = 0; i < count; i++) {
+	Division div = Division.values()[this.readInt()];
+	Team team = this.readTeam();
+	TeamPenaltyType type = this.readEnum(TeamPenaltyType.class);
+	reg.setTeamPenalty(new TeamPenalty(div, team, type, this.readString()));
+      }
+
+      // Membership
+      RP rp = reg.getRP();
+      MembershipDatabase db = rp.getDatabase();
+      Map<String, Sailor> ids = new HashMap<String, Sailor>();
+      String numbered = Factory.RP_PREFIX + "[0-9]+";
+      count = this.readInt();
+      for (int i = 0; i < count; i++) {
+	String aff = this.readString();
+	db.addAffiliation(aff);
+	int members = this.readInt();
+	for (int m = 0; m < members; m++) {
+	  String id = this.readString();
+	  String name = this.readString();
+	  Date year = this.readYear();
+	  boolean isNew = this.readBoolean();
+	  db.setMember(aff, new Membership(id, name, year, isNew));
+	  ids.put(id, new Sailor(id, name, year));
+	  if (id.matches(numbered))
+	    Factory.setLastRpId(Integer.parseInt(id.substring(Factory.RP_PREFIX.length())));
+	}
+      }
+
+      // RP
+      count = this.readInt();
+      for (int i = 0; i < count; i++) {
+	Team team = this.readTeam();
+	Division div = Division.values()[this.readInt()];
+	BoatRole role = this.readEnum(BoatRole.class);
+	String id = this.readString();
+	String name = this.readString();
+	Date year = this.readYear();
+	Sailor sailor = ids.get(id);
+	if (sailor == null) {
+	  sailor = new Sailor(id, name, year);
+	  ids.put(id, sailor);
+	}
+	int races = this.readInt();
+	List<Race> list = new ArrayList<Race>(races);
+	int num = 0;
+	for (int r = 0; r < races; r++) {
+	  num += this.readInt();
+	  list.add(reg.getRace(div, num));
+	}
+	rp.addSailorRaces(team, sailor, list, role);
+      }
+      return reg;
+    }
+
+    private Finish readFinish(Race race) {
+      Team team = this.readTeam();
+      int kind = this.readInt();
+      Date time = null;
+      if ((kind & TIMESTAMP) != 0) {
+	this.lastTime += this.readSigned();
+	time = new Date(this.lastTime);
+      }
+      Finish finish = new Finish(race, team, time);
+      if ((kind & PENALTY) != 0) {
+	PenaltyType type = this.readEnum(PenaltyType.class);
+	finish.setPenalty(new Penalty(type, this.readString()));
+      }
+      else if ((kind & BREAKDOWN) != 0) {
+	BreakdownType type = this.readEnum(BreakdownType.class);
+	String comments = this.readString();
+	finish.setBreakdown(new Breakdown(type, comments, (int)this.readSigned()));
+      }
+      return finish;
+    }
+  }
+
+  public static void main(String [] args) {
+    String usage = "usage: RegattaCodec [-z] [-n runs] in out";
+    boolean compress = false;
+    int runs = 0;
+    int i;
+    try {
+      for (i = 0; i < args.length - 2; i++) {
+	if (args[i].equals("-z"))
+	  compress = true;
+	else if (args[i].equals("-n"))
+	  runs = Integer.parseInt(args[++i]);
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+      if (i != args.length - 2)
+	throw new IllegalArgumentException("Missing files");
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+      return;
+    }
+
+    File in = new File(args[i]), out = new File(args[i + 1]);
+    RegattaIO io = new RegattaIO();
+    try {
+      if (!io.readFile(in)) {
+	for (String mes : io.getWarnings())
+	  System.err.println(mes);
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Unable to read " + in + ": " +
+			 Factory.implode(io.getErrors(), "; "));
+      System.exit(1);
+    }
+    Regatta reg = io.getRegatta();
+    boolean written;
+    if (FILE_EXTENSION.equals(Factory.getExtension(out)))
+      written = io.writeBinaryFile(reg, out, compress);
+    else
+      written = io.writeFile(reg, out);
+    reg.getRP().getDatabase().close();
+    if (!written) {
+      System.err.println("Unable to write " + out + ": " +
+			 Factory.implode(io.getErrors(), "; "));
+      System.exit(1);
+    }
+
+    // Load time of either file
+    if (runs > 0) {
+      for (File f : new File [] {in, out}) {
+	long total = 0;
+	for (int r = 0; r < runs; r++) {
+	  RegattaIO reader = new RegattaIO();
+	  long start = System.nanoTime();
+	  reader.readFile(f);
+	  total += System.nanoTime() - start;
+	  reader.getRegatta().getRP().getDatabase().close();
+	}
+	System.out.format("%s\t%d bytes\tread %.1f ms%n",
+			  f.getName(), f.length(), total / 1e6 / runs);
+      }
+    }
+  }
+}
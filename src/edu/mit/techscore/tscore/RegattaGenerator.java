@@ -0,0 +1,518 @@
+package edu.mit.techscore.tscore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import edu.mit.techscore.regatta.Breakdown;
+import edu.mit.techscore.regatta.Breakdown.BreakdownType;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.MembershipDatabase;
+import edu.mit.techscore.regatta.MembershipDatabase.Membership;
+import edu.mit.techscore.regatta.Penalty;
+import edu.mit.techscore.regatta.Penalty.PenaltyType;
+import edu.mit.techscore.regatta.RP;
+import edu.mit.techscore.regatta.RP.BoatRole;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Regatta.RegattaScoring;
+import edu.mit.techscore.regatta.Rotation;
+import edu.mit.techscore.regatta.Rotation.RotationStyle;
+import edu.mit.techscore.regatta.Rotation.RotationType;
+import edu.mit.techscore.regatta.Sail;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.regatta.TeamPenalty;
+import edu.mit.techscore.regatta.TeamPenalty.TeamPenaltyType;
+
+/**
+ * Creates synthetic regattas of arbitrary size, for benchmarks and
+ * load testing. Every regatta has a complete rotation built by
+ * {@link ICSARotationBuilder}, a finish for every team in every race,
+ * and RP information for every team in every division. A given
+ * fraction of the finishes are penalized, broken down or tied with
+ * the boat ahead, and a given fraction of the teams receive a team
+ * penalty in each division.<p>
+ *
+ * Generators with the same settings and seed create the same
+ * regatta, except for the RP IDs, which are drawn from
+ * {@link Factory#getNextRpId}.<p>
+ *
+ * The generator can also be run from the command line, to write the
+ * regatta to a file:
+ *
+ * <pre>
+ * RegattaGenerator [-t teams] [-d divisions] [-r races] [-s seed] [-c] file
+ * </pre>
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 10:12:40 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class RegattaGenerator {
+
+  private int numTeams;
+  private int numDivisions;
+  private int numRaces;
+  private RegattaScoring scoring;
+  private long seed;
+
+  // Rates, as percentages
+  private int penaltyRate;
+  private int breakdownRate;
+  private int tieRate;
+  private int teamPenaltyRate;
+
+  /**
+   * Creates a new <code>RegattaGenerator</code> for a regatta of 18
+   * teams in two divisions of 9 races each, with standard scoring.
+   *
+   */
+  public RegattaGenerator() {
+    this(18, 2, 9);
+  }
+
+  /**
+   * Creates a new <code>RegattaGenerator</code> instance.
+   *
+   * @param teams the number of teams
+   * @param divisions the number of divisions
+   * @param races the number of races in each division
+   */
+  public RegattaGenerator(int teams, int divisions, int races) {
+    this.setNumTeams(teams);
+    this.setNumDivisions(divisions);
+    this.setNumRaces(races);
+    this.scoring = RegattaScoring.STANDARD;
+    this.seed = 0;
+    this.penaltyRate = 3;
+    this.breakdownRate = 2;
+    this.tieRate = 5;
+    this.teamPenaltyRate = 5;
+  }
+
+  /**
+   * Get the <code>NumTeams</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumTeams() {
+    return numTeams;
+  }
+
+  /**
+   * Set the <code>NumTeams</code> value.
+   *
+   * @param newNumTeams The new NumTeams value.
+   * @throws IllegalArgumentException if less than two
+   */
+  public final void setNumTeams(final int newNumTeams) {
+    if (newNumTeams < 2)
+      throw new IllegalArgumentException("Regatta must have at least two teams.");
+    this.numTeams = newNumTeams;
+  }
+
+  /**
+   * Get the <code>NumDivisions</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumDivisions() {
+    return numDivisions;
+  }
+
+  /**
+   * Set the <code>NumDivisions</code> value.
+   *
+   * @param newNumDivisions The new NumDivisions value.
+   * @throws IllegalArgumentException if not a valid division count
+   */
+  public final void setNumDivisions(final int newNumDivisions) {
+    int max = Division.values().length;
+    if (newNumDivisions < 1 || newNumDivisions > max)
+      throw new IllegalArgumentException("Regatta must have 1-" + max + " divisions");
+    this.numDivisions = newNumDivisions;
+  }
+
+  /**
+   * Get the <code>NumRaces</code> value.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getNumRaces() {
+    return numRaces;
+  }
+
+  /**
+   * Set the <code>NumRaces</code> value.
+   *
+   * @param newNumRaces The new NumRaces value.
+   * @throws IllegalArgumentException if less than one
+   */
+  public final void setNumRaces(final int newNumRaces) {
+    if (newNumRaces < 1)
+      throw new IllegalArgumentException("Regatta must have at least one race.");
+    this.numRaces = newNumRaces;
+  }
+
+  /**
+   * Get the <code>Scoring</code> value.
+   *
+   * @return a <code>RegattaScoring</code> value
+   */
+  public final RegattaScoring getScoring() {
+    return scoring;
+  }
+
+  /**
+   * Set the <code>Scoring</code> value.
+   *
+   * @param newScoring The new Scoring value.
+   */
+  public final void setScoring(final RegattaScoring newScoring) {
+    this.scoring = newScoring;
+  }
+
+  /**
+   * Get the <code>Seed</code> value.
+   *
+   * @return a <code>long</code> value
+   */
+  public final long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Set the <code>Seed</code> value.
+   *
+   * @param newSeed The new Seed value.
+   */
+  public final void setSeed(final long newSeed) {
+    this.seed = newSeed;
+  }
+
+  /**
+   * Get the <code>PenaltyRate</code> value: the percentage of
+   * finishes with a penalty.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getPenaltyRate() {
+    return penaltyRate;
+  }
+
+  /**
+   * Set the <code>PenaltyRate</code> value.
+   *
+   * @param newPenaltyRate The new PenaltyRate value.
+   */
+  public final void setPenaltyRate(final int newPenaltyRate) {
+    this.penaltyRate = checkRate(newPenaltyRate);
+  }
+
+  /**
+   * Get the <code>BreakdownRate</code> value: the percentage of
+   * finishes with a breakdown.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getBreakdownRate() {
+    return breakdownRate;
+  }
+
+  /**
+   * Set the <code>BreakdownRate</code> value.
+   *
+   * @param newBreakdownRate The new BreakdownRate value.
+   */
+  public final void setBreakdownRate(final int newBreakdownRate) {
+    this.breakdownRate = checkRate(newBreakdownRate);
+  }
+
+  /**
+   * Get the <code>TieRate</code> value: the percentage of finishes
+   * with the same time as the boat ahead.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getTieRate() {
+    return tieRate;
+  }
+
+  /**
+   * Set the <code>TieRate</code> value.
+   *
+   * @param newTieRate The new TieRate value.
+   */
+  public final void setTieRate(final int newTieRate) {
+    this.tieRate = checkRate(newTieRate);
+  }
+
+  /**
+   * Get the <code>TeamPenaltyRate</code> value: the percentage of
+   * teams with a penalty in each division.
+   *
+   * @return an <code>int</code> value
+   */
+  public final int getTeamPenaltyRate() {
+    return teamPenaltyRate;
+  }
+
+  /**
+   * Set the <code>TeamPenaltyRate</code> value.
+   *
+   * @param newTeamPenaltyRate The new TeamPenaltyRate value.
+   */
+  public final void setTeamPenaltyRate(final int newTeamPenaltyRate) {
+    this.teamPenaltyRate = checkRate(newTeamPenaltyRate);
+  }
+
+  private static int checkRate(int rate) {
+    if (rate < 0 || rate > 100)
+      throw new IllegalArgumentException("Rate must be a percentage: " + rate);
+    return rate;
+  }
+
+  /**
+   * Creates a new regatta according to the current settings.
+   *
+   * @return a new <code>Regatta</code>
+   */
+  public Regatta generate() {
+    Random rand = new Random(this.seed);
+    Regatta reg = new Regatta("Regatta " + this.seed);
+    reg.createRaces(this.numDivisions, this.numRaces);
+    reg.setScoring(this.scoring);
+    for (int t = 0; t < this.numTeams; t++) {
+      reg.addTeam(new Team("Team " + (t + 1), "T" + (t + 1)));
+    }
+
+    reg.setRotation(this.createRotation(reg));
+    this.createFinishes(reg, rand);
+    this.createTeamPenalties(reg, rand);
+    this.createRP(reg, rand);
+    return reg;
+  }
+
+  /**
+   * Creates a new regatta and writes it to the given file.
+   *
+   * @param file the file to write to
+   * @return <code>true</code> upon success
+   * @see RegattaIO#writeFile
+   */
+  public boolean writeFile(File file) {
+    return new RegattaIO().writeFile(this.generate(), file);
+  }
+
+  /**
+   * Standard rotation of sails, switched every two races. Combined
+   * regattas use a unique sail for every team in every division.
+   */
+  private Rotation createRotation(Regatta reg) {
+    Rotation rot = new Rotation();
+    Team [] teams = reg.getTeams();
+    Division [] divs = reg.getDivisions();
+    ICSARotationBuilder builder = new ICSARotationBuilder();
+    try {
+      if (this.scoring == RegattaScoring.COMBINED) {
+	int fleet = teams.length * divs.length;
+	Team [] teamList = new Team[fleet];
+	Division [] divList = new Division[fleet];
+	for (int d = 0; d < divs.length; d++) {
+	  for (int t = 0; t < teams.length; t++) {
+	    teamList[d * teams.length + t] = teams[t];
+	    divList[d * teams.length + t] = divs[d];
+	  }
+	}
+	Integer [] nums = new Integer[this.numRaces];
+	for (int i = 0; i < nums.length; i++)
+	  nums[i] = new Integer(i + 1);
+	builder.fillCombinedRotation(rot, RotationType.STANDARD,
+				     teamList, divList, createSails(fleet),
+				     nums, 2);
+      }
+      else {
+	Race [][] raceMap = new Race[divs.length][];
+	for (int d = 0; d < divs.length; d++)
+	  raceMap[d] = reg.getRaces(divs[d]);
+	builder.fillRotation(rot, RotationType.STANDARD, RotationStyle.NAVY,
+			     raceMap, teams, createSails(teams.length), 2);
+      }
+    } catch (RotationBuilderException e) {
+      throw new IllegalStateException(e.getMessage());
+    }
+    return rot;
+  }
+
+  private static Sail [] createSails(int num) {
+    Sail [] sails = new Sail[num];
+    for (int i = 0; i < num; i++)
+      sails[i] = new Sail(String.valueOf(i + 1));
+    return sails;
+  }
+
+  /**
+   * Finishes, race by race, in random order. In combined scoring,
+   * the boats from every division finish together.
+   */
+  private void createFinishes(Regatta reg, Random rand) {
+    Team [] teams = reg.getTeams();
+    Division [] divs = reg.getDivisions();
+    boolean combined = (this.scoring == RegattaScoring.COMBINED);
+    long time = reg.getStartTime().getTime();
+
+    List<Race> fleet = new ArrayList<Race>();
+    List<Integer> order = new ArrayList<Integer>();
+    for (int num = 1; num <= this.numRaces; num++) {
+      for (int d = 0; d < divs.length; d++) {
+	if (!combined || d == 0)
+	  fleet.clear();
+	fleet.add(reg.getRace(divs[d], num));
+	if (combined && d < divs.length - 1)
+	  continue;
+
+	// One entry for every boat in the fleet
+	order.clear();
+	for (int i = 0; i < fleet.size() * teams.length; i++)
+	  order.add(new Integer(i));
+	Collections.shuffle(order, rand);
+	for (Integer i : order) {
+	  if (rand.nextInt(100) >= this.tieRate)
+	    time += 1000 + rand.nextInt(60000);
+	  Race race = fleet.get(i / teams.length);
+	  Finish finish = new Finish(race, teams[i % teams.length], new Date(time));
+	  int adjust = rand.nextInt(100);
+	  if (adjust < this.penaltyRate) {
+	    PenaltyType [] types = PenaltyType.values();
+	    finish.setPenalty(new Penalty(types[rand.nextInt(types.length)]));
+	  }
+	  else if (adjust < this.penaltyRate + this.breakdownRate) {
+	    // Average finish half the time, otherwise a given place
+	    if (rand.nextBoolean())
+	      finish.setBreakdown(new Breakdown(BreakdownType.BKD, "", -1));
+	    else
+	      finish.setBreakdown(new Breakdown(BreakdownType.RDG, "",
+						1 + rand.nextInt(order.size())));
+	  }
+	  reg.setFinish(finish);
+	}
+      }
+    }
+  }
+
+  private void createTeamPenalties(Regatta reg, Random rand) {
+    TeamPenaltyType [] types = TeamPenaltyType.values();
+    for (Division div : reg.getDivisions()) {
+      for (Team team : reg.getTeams()) {
+	if (rand.nextInt(100) < this.teamPenaltyRate)
+	  reg.setTeamPenalty(new TeamPenalty(div, team,
+					     types[rand.nextInt(types.length)]));
+      }
+    }
+  }
+
+  /**
+   * Two skippers and two crews per team and division, each of whom
+   * sails half of the races.
+   */
+  private void createRP(Regatta reg, Random rand) {
+    RP rp = reg.getRP();
+    MembershipDatabase db = rp.getDatabase();
+    Calendar cal = Calendar.getInstance();
+    int thisYear = cal.get(Calendar.YEAR);
+    int half = (this.numRaces + 1) / 2;
+    int sailorNum = 1;
+
+    for (Team team : reg.getTeams()) {
+      db.addAffiliation(team.getAffiliation());
+      for (Division div : reg.getDivisions()) {
+	List<Race> races = new ArrayList<Race>();
+	for (Race race : reg.getRaces(div))
+	  races.add(race);
+	List<List<Race>> halves = new ArrayList<List<Race>>(2);
+	halves.add(races.subList(0, half));
+	halves.add(races.subList(half, races.size()));
+
+	for (BoatRole role : BoatRole.values()) {
+	  for (List<Race> sailed : halves) {
+	    if (sailed.isEmpty())
+	      continue;
+	    cal.set(Calendar.YEAR, thisYear + rand.nextInt(4));
+	    Membership sailor = new Membership(Factory.getNextRpId(),
+					       "Sailor " + sailorNum++,
+					       cal.getTime());
+	    db.setMember(team.getAffiliation(), sailor);
+	    rp.addSailorRaces(team, sailor, sailed, role);
+	  }
+	}
+      }
+    }
+  }
+
+  /**
+   * Writes a generated regatta to the file given as the last
+   * argument.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String [] args) {
+    String usage =
+      "usage: RegattaGenerator [-t teams] [-d divisions] [-r races] [-s seed] [-c] file";
+    if (args.length == 0) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    RegattaGenerator gen = new RegattaGenerator();
+    try {
+      int i;
+      for (i = 0; i < args.length - 1; i++) {
+	if (args[i].equals("-c"))
+	  gen.setScoring(RegattaScoring.COMBINED);
+	else if (args[i].equals("-t"))
+	  gen.setNumTeams(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-d"))
+	  gen.setNumDivisions(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-r"))
+	  gen.setNumRaces(Integer.parseInt(args[++i]));
+	else if (args[i].equals("-s"))
+	  gen.setSeed(Long.parseLong(args[++i]));
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+      if (i != args.length - 1)
+	throw new IllegalArgumentException("Missing file name");
+
+      File file = new File(args[i]);
+      if (!gen.writeFile(file)) {
+	System.err.println("Unable to write to " + file);
+	System.exit(1);
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+    }
+  }
+}
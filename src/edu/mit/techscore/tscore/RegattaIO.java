@@ -19,30 +19,45 @@ package edu.mit.techscore.tscore;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -50,8 +65,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
-import edu.mit.techscore.dpxml.XMLTag;
-import edu.mit.techscore.dpxml.XMLTextTag;
+import edu.mit.techscore.dpxml.XMLWriter;
 import edu.mit.techscore.regatta.Breakdown;
 import edu.mit.techscore.regatta.Breakdown.BreakdownType;
 import edu.mit.techscore.regatta.Finish;
@@ -65,6 +79,7 @@ import edu.mit.techscore.regatta.Regatta;
 import edu.mit.techscore.regatta.Regatta.Division;
 import edu.mit.techscore.regatta.Regatta.RegattaScoring;
 import edu.mit.techscore.regatta.Regatta.RegattaType;
+import edu.mit.techscore.regatta.RegattaEvent.RegattaEventType;
 import edu.mit.techscore.regatta.Rotation;
 import edu.mit.techscore.regatta.Rotation.RotationStyle;
 import edu.mit.techscore.regatta.Rotation.RotationType;
@@ -75,11 +90,14 @@ import edu.mit.techscore.regatta.TeamPenalty;
 import edu.mit.techscore.regatta.TeamPenalty.TeamPenaltyType;
 import edu.mit.techscore.regatta.MembershipDatabase;
 import edu.mit.techscore.regatta.MembershipDatabase.Membership;
+import edu.mit.techscore.tscore.RegattaStreamReader.Record;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -115,6 +133,34 @@ import org.xml.sax.SAXException;
  */
 public class RegattaIO {
 
+  /**
+   * The sections of the file which hold the details of the regatta,
+   * and its finishes
+   */
+  private static final String [] DETAIL_SECTIONS = {"RegattaName", "StartTime",
+						    "Duration", "RegattaType",
+						    "RegattaScoring", "Comments",
+						    "Blurb"};
+  private static final String [] FINISH_SECTIONS = {"Finishes", "Penalties",
+						    "Breakdowns", "TeamPenalties"};
+
+  /**
+   * The sections whose content is replaced when they are rewritten,
+   * and need not be parsed
+   */
+  private static final Set<String> REPLACED_SECTIONS = new HashSet<String>();
+  static {
+    REPLACED_SECTIONS.addAll(Arrays.asList(DETAIL_SECTIONS));
+    REPLACED_SECTIONS.addAll(Arrays.asList(FINISH_SECTIONS));
+    REPLACED_SECTIONS.add("Rotations");
+    REPLACED_SECTIONS.add("RP");
+  }
+
+  // Marks the parsed sections of a file being rewritten with their index
+  private static final String SECTION_KEY = "section";
+  private static final Pattern ENCODING =
+    Pattern.compile("^\\W*<\\?xml[^>]*encoding=[\"']([^\"']+)[\"']");
+
   /**
    * Describe regatta here.
    */
@@ -182,13 +228,98 @@ public class RegattaIO {
   public final boolean rewriteFile(Regatta reg,
 				   File inFile,
 				   File outFile) {
+    return this.rewriteFile(reg, inFile, outFile,
+			    EnumSet.allOf(RegattaEventType.class));
+  }
+
+  /**
+   * Writes a regatta to file by using the structure of inFile, like
+   * {@link #rewriteFile(Regatta, File, File)}, but only rewrites the
+   * sections of the file which the given types of change may have
+   * affected, e.g. those of the events since the file was saved. The
+   * other sections are copied from inFile, byte for byte, without
+   * being parsed.
+   *
+   * @param reg a <code>Regatta</code> value
+   * @param inFile a <code>File</code> value
+   * @param outFile a <code>File</code> value
+   * @param changes the types of change made since inFile was written
+   * @return a <code>boolean</code> value determining success
+   */
+  public final boolean rewriteFile(Regatta reg,
+				   File inFile,
+				   File outFile,
+				   Set<RegattaEventType> changes) {
+    errors   = new LinkedHashSet<String>();
+    warnings = new LinkedHashSet<String>();
     this.setRegatta(reg);
+
+    // A binary file has no structure to keep: write it anew
+    try {
+      if (RegattaCodec.isBinary(inFile))
+	return this.writeBinaryFile(reg, outFile, RegattaCodec.isCompressed(inFile));
+    } catch (IOException e) {
+      errors.add("Could not open file: " + e.getMessage());
+      return false;
+    }
+
+    // Races and teams are referred to by every section
+    boolean all = (changes.contains(RegattaEventType.RACE) ||
+		   changes.contains(RegattaEventType.TEAM));
+    boolean details = (all ||
+		       changes.contains(RegattaEventType.DETAILS) ||
+		       changes.contains(RegattaEventType.NAME) ||
+		       changes.contains(RegattaEventType.SCORING));
+    boolean rotations = all || changes.contains(RegattaEventType.ROTATION);
+    boolean finishes = all || changes.contains(RegattaEventType.FINISH);
+    boolean rps = all || changes.contains(RegattaEventType.RP);
+    boolean membership = rps || changes.contains(RegattaEventType.RP_DATA);
+    Set<String> rewrite = new HashSet<String>();
+    if (all)
+      rewrite.add("Teams");
+    if (details)
+      rewrite.addAll(Arrays.asList(DETAIL_SECTIONS));
+    if (rotations)
+      rewrite.add("Rotations");
+    if (finishes)
+      rewrite.addAll(Arrays.asList(FINISH_SECTIONS));
+    if (rps)
+      rewrite.add("RP");
+    if (membership)
+      rewrite.add("Membership");
+
     DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
     try {
+      // Parse the sections to rewrite, and the teams, whose ids the
+      // other sections use
+      byte [] bytes = Files.readAllBytes(inFile.toPath());
+      Charset charset = getCharset(bytes);
+      RegattaSections source = new RegattaSections(new String(bytes, charset));
+      StringBuilder parsed = new StringBuilder(source.getRootTag());
+      List<Integer> parsedSections = new ArrayList<Integer>();
+      for (int i = 0; i < source.size(); i++) {
+	String name = source.getName(i);
+	if (REPLACED_SECTIONS.contains(name) && rewrite.contains(name)) {
+	  parsed.append(source.getEmptySection(i));
+	  parsedSections.add(new Integer(i));
+	}
+	else if (rewrite.contains(name) || name.equals("Teams")) {
+	  parsed.append(source.getSection(i));
+	  parsedSections.add(new Integer(i));
+	}
+      }
+      parsed.append("</").append(source.getRootName()).append(">");
+
       DocumentBuilder db = dbf.newDocumentBuilder();
-      Document doc = db.parse(inFile);
+      Document doc = db.parse(new InputSource(new StringReader(parsed.toString())));
       Element rootElement = doc.getDocumentElement();
       rootElement.normalize();
+      Map<String, String> rootAttributes = getAttributes(rootElement);
+      int section = 0;
+      for (Node n = rootElement.getFirstChild(); n != null; n = n.getNextSibling()) {
+	if (n instanceof Element)
+	  n.setUserData(SECTION_KEY, parsedSections.get(section++), null);
+      }
 
       Element tag, subtag;
       Element text;
@@ -196,53 +327,55 @@ public class RegattaIO {
       // Version
       rootElement.setAttribute("version", TScoreGUI.VERSION);
 
-      // REGATTA DETAILS
-      // Name
-      String textString = this.regatta.getName();
-      tag = getOrCreateElement(doc, rootElement, "RegattaName");
-      this.replaceElementContent(tag, doc.createTextNode(textString));
-
-      // Start time
-      DateFormat dtf = DateFormat.getDateTimeInstance(DateFormat.LONG,
-						      DateFormat.LONG);
-      textString = dtf.format(this.regatta.getStartTime());
-      tag = getOrCreateElement(doc, rootElement, "StartTime");
-      this.replaceElementContent(tag, doc.createTextNode(textString));
-
-      // Duration
-      textString = String.valueOf(this.regatta.getDuration());
-      tag = getOrCreateElement(doc, rootElement, "Duration");
-      this.replaceElementContent(tag, doc.createTextNode(textString));
-
-      // Type
-      textString = String.valueOf(this.regatta.getType());
-      tag = getOrCreateElement(doc, rootElement, "RegattaType");
-      this.replaceElementContent(tag, doc.createTextNode(textString));
-
-      // Scoring
-      textString = String.valueOf(this.regatta.getScoring());
-      tag = getOrCreateElement(doc, rootElement, "RegattaScoring");
-      this.replaceElementContent(tag, doc.createTextNode(textString));
-
-      // Blurb:
-      // Replace version < 1.4 "Blurb" with "Comments" tree. This
-      // replaces the content of the "Comments" tag if it exists
-      tag = getOrCreateElement(doc, rootElement, "Comments");
-      while (tag.hasChildNodes())
-	tag.removeChild(tag.getFirstChild());
-      int day = 1;
-      Map<Date, String> blurbs = regatta.getBlurbs();
-      for (Date d : blurbs.keySet()) {
-	subtag = doc.createElement("Comment");
-	subtag.setAttribute("day", String.valueOf(day));
-	subtag.appendChild(doc.createTextNode(blurbs.get(d)));
-	tag.appendChild(subtag);
-	day++;
+      if (details) {
+	// REGATTA DETAILS
+	// Name
+	String textString = this.regatta.getName();
+	tag = getOrCreateElement(doc, rootElement, "RegattaName");
+	this.replaceElementContent(tag, doc.createTextNode(textString));
+
+	// Start time
+	DateFormat dtf = DateFormat.getDateTimeInstance(DateFormat.LONG,
+							DateFormat.LONG);
+	textString = dtf.format(this.regatta.getStartTime());
+	tag = getOrCreateElement(doc, rootElement, "StartTime");
+	this.replaceElementContent(tag, doc.createTextNode(textString));
+
+	// Duration
+	textString = String.valueOf(this.regatta.getDuration());
+	tag = getOrCreateElement(doc, rootElement, "Duration");
+	this.replaceElementContent(tag, doc.createTextNode(textString));
+
+	// Type
+	textString = String.valueOf(this.regatta.getType());
+	tag = getOrCreateElement(doc, rootElement, "RegattaType");
+	this.replaceElementContent(tag, doc.createTextNode(textString));
+
+	// Scoring
+	textString = String.valueOf(this.regatta.getScoring());
+	tag = getOrCreateElement(doc, rootElement, "RegattaScoring");
+	this.replaceElementContent(tag, doc.createTextNode(textString));
+
+	// Blurb:
+	// Replace version < 1.4 "Blurb" with "Comments" tree. This
+	// replaces the content of the "Comments" tag if it exists
+	tag = getOrCreateElement(doc, rootElement, "Comments");
+	while (tag.hasChildNodes())
+	  tag.removeChild(tag.getFirstChild());
+	int day = 1;
+	Map<Date, String> blurbs = regatta.getBlurbs();
+	for (Date d : blurbs.keySet()) {
+	  subtag = doc.createElement("Comment");
+	  subtag.setAttribute("day", String.valueOf(day));
+	  subtag.appendChild(doc.createTextNode(blurbs.get(d)));
+	  tag.appendChild(subtag);
+	  day++;
+	}
+	// Remove the "Blurb" element, if it exists
+	tag = getElement(rootElement, "Blurb");
+	if (tag != null)
+	  rootElement.removeChild(tag);
       }
-      // Remove the "Blurb" element, if it exists
-      tag = getElement(rootElement, "Blurb");
-      if (tag != null)
-	rootElement.removeChild(tag);
 
       // Races and divisions
       rootElement.setAttribute("races", String.valueOf(this.regatta.getNumRaces()));
@@ -252,289 +385,346 @@ public class RegattaIO {
       tag = getOrCreateElement(doc, rootElement, "Teams");
       this.updateTeamMaps(tag);
       final List<Team> teams = Arrays.asList(regatta.getTeams());
-      //  Remove any team elements from teams that no longer exist
-      for (int i = 0; i < this.teamList.size(); i++) {
-	if (!teams.contains(this.teamList.get(i))) {
-	  this.idList.remove(i);
-	  this.teamList.remove(i);
-	  tag.removeChild(this.elementList.remove(i));
-	  i--;
-	}
+      if (!all && !new HashSet<Team>(teams).equals(new HashSet<Team>(this.teamList))) {
+	// The teams changed after all
+	return this.rewriteFile(reg, inFile, outFile,
+				EnumSet.allOf(RegattaEventType.class));
       }
-      //  Add/edit existing teams as necessary
-      Random rng = new Random();
-      for (Team team : teams) {
-	// Find the team in the map, if it exists
-	int index = this.teamList.indexOf(team);
-	Element teamElem;
-	if (index < 0) {
-	  // Create the node. Pick an id not already in the map
-	  teamElem = doc.createElement("Team");
-	  String id = "t" + (100 + rng.nextInt(900));
-	  while (this.idList.contains(id)) {
-	    id = "t" + (100 + rng.nextInt(900));
+      if (all) {
+	//  Remove any team elements from teams that no longer exist
+	for (int i = 0; i < this.teamList.size(); i++) {
+	  if (!teams.contains(this.teamList.get(i))) {
+	    this.idList.remove(i);
+	    this.teamList.remove(i);
+	    tag.removeChild(this.elementList.remove(i));
+	    i--;
 	  }
-	  this.idList.add(id);
-	  this.teamList.add(team);
-	  this.elementList.add(teamElem);
-	  teamElem.setAttribute("id", id);
-	  // Add node
-	  tag.appendChild(teamElem);
-	}
-	else {
-	  teamElem = this.elementList.get(index);
-	  // Also, replace the team
-	  this.teamList.set(index, team);
 	}
+	//  Add/edit existing teams as necessary
+	Random rng = new Random();
+	for (Team team : teams) {
+	  // Find the team in the map, if it exists
+	  int index = this.teamList.indexOf(team);
+	  Element teamElem;
+	  if (index < 0) {
+	    // Create the node. Pick an id not already in the map
+	    teamElem = doc.createElement("Team");
+	    String id = "t" + (100 + rng.nextInt(900));
+	    while (this.idList.contains(id)) {
+	      id = "t" + (100 + rng.nextInt(900));
+	    }
+	    this.idList.add(id);
+	    this.teamList.add(team);
+	    this.elementList.add(teamElem);
+	    teamElem.setAttribute("id", id);
+	    // Add node
+	    tag.appendChild(teamElem);
+	  }
+	  else {
+	    teamElem = this.elementList.get(index);
+	    // Also, replace the team
+	    this.teamList.set(index, team);
+	  }
 
-	Element name;
-	name = getOrCreateElement(doc, teamElem, "LongName");
-	this.replaceElementContent(name, doc.createTextNode(team.getLongname()));
-	name = getOrCreateElement(doc, teamElem, "ShortName");
-	this.replaceElementContent(name, doc.createTextNode(team.getShortname()));
-	teamElem.setAttribute("affiliate", team.getAffiliation());
+	  Element name;
+	  name = getOrCreateElement(doc, teamElem, "LongName");
+	  this.replaceElementContent(name, doc.createTextNode(team.getLongname()));
+	  name = getOrCreateElement(doc, teamElem, "ShortName");
+	  this.replaceElementContent(name, doc.createTextNode(team.getShortname()));
+	  teamElem.setAttribute("affiliate", team.getAffiliation());
+	}
       }
 
-      // Rotations
-      Rotation rot = this.regatta.getRotation();
-      if (rot != null) {
-	List<Node> sails = new ArrayList<Node>();
-	Division [] divs = this.regatta.getDivisions();
-	for (int d = 0; d < divs.length; d++) {
-	  Race [] races = this.regatta.getRaces(divs[d]);
-	  for (int r = 0; r < races.length; r++) {
-	    for (int i = 0; i < this.idList.size(); i++) {
-	      String id = this.idList.get(i);
-	      Team team = this.teamList.get(i);
-	      Sail sail = rot.getSail(races[r], team);
-	      subtag = doc.createElement("Sail");
-	      subtag.setAttribute("race", races[r].toString());
-	      subtag.setAttribute("team", id);
-	      subtag.setAttribute("sail", String.valueOf(sail));
-	      sails.add(subtag);
+      if (rotations) {
+	// Rotations
+	Rotation rot = this.regatta.getRotation();
+	if (rot != null) {
+	  List<Node> sails = new ArrayList<Node>();
+	  Division [] divs = this.regatta.getDivisions();
+	  for (int d = 0; d < divs.length; d++) {
+	    Race [] races = this.regatta.getRaces(divs[d]);
+	    for (int r = 0; r < races.length; r++) {
+	      for (int i = 0; i < this.idList.size(); i++) {
+		String id = this.idList.get(i);
+		Team team = this.teamList.get(i);
+		Sail sail = rot.getSail(races[r], team);
+		subtag = doc.createElement("Sail");
+		subtag.setAttribute("race", races[r].toString());
+		subtag.setAttribute("team", id);
+		subtag.setAttribute("sail", String.valueOf(sail));
+		sails.add(subtag);
+	      }
 	    }
 	  }
+	  tag = getOrCreateElement(doc, rootElement, "Rotations");
+	  this.replaceElementContent(tag, sails);
+	}
+	else {
+	  // Remove all existing rotations
+	  removeSubElements(rootElement, "Rotations");
 	}
-	tag = getOrCreateElement(doc, rootElement, "Rotations");
-	this.replaceElementContent(tag, sails);
-      }
-      else {
-	// Remove all existing rotations
-	removeSubElements(rootElement, "Rotations");
       }
 
-      // Finishes
-      List<Node> penaltyNodes   = new ArrayList<Node>();
-      List<Node> breakdownNodes = new ArrayList<Node>();
-      List<Node> finishNodes    = new ArrayList<Node>();
-      List<Node> teamPenaltyNodes = new ArrayList<Node>();
-      DateFormat tf = DateFormat.getTimeInstance(DateFormat.LONG);
-      Race [] races = this.regatta.getFinishedRaces();
-      for (Race race : races) {
-	for (Finish finish : this.regatta.getFinishes(race)) {
-	  if (finish != null) {
-	    Team team = finish.getTeam();
-	    int i = this.teamList.indexOf(team);
-	    String id = this.idList.get(i);
+      if (finishes) {
+	// Finishes
+	List<Node> penaltyNodes   = new ArrayList<Node>();
+	List<Node> breakdownNodes = new ArrayList<Node>();
+	List<Node> finishNodes    = new ArrayList<Node>();
+	List<Node> teamPenaltyNodes = new ArrayList<Node>();
+	DateFormat tf = DateFormat.getTimeInstance(DateFormat.LONG);
+	Race [] races = this.regatta.getFinishedRaces();
+	for (Race race : races) {
+	  for (Finish finish : this.regatta.getFinishes(race)) {
+	    if (finish != null) {
+	      Team team = finish.getTeam();
+	      int i = this.teamList.indexOf(team);
+	      String id = this.idList.get(i);
 
-	    subtag = doc.createElement("Finish");
-	    subtag.setAttribute("race", String.valueOf(finish.getRace()));
-	    subtag.setAttribute("team", id);
-	    subtag.appendChild(doc.createTextNode(tf.format(finish.getTimestamp())));
-	    finishNodes.add(subtag);
-
-	    // Deal with possible penalties/breakdowns
-	    FinishAdjustment adjust;
-	    if ((adjust = finish.getPenalty()) != null) {
-	      // Add to penalty list
-	      subtag = doc.createElement("Penalty");
-	      subtag.setAttribute("race", String.valueOf(race));
+	      subtag = doc.createElement("Finish");
+	      subtag.setAttribute("race", String.valueOf(finish.getRace()));
 	      subtag.setAttribute("team", id);
-	      subtag.setAttribute("type", String.valueOf(adjust.getType()));
-	      penaltyNodes.add(subtag);
-	    }
-	    else if ((adjust = finish.getBreakdown()) != null) {
-	      // Add to breakdown list
-	      subtag = doc.createElement("Breakdown");
-	      subtag.setAttribute("race", String.valueOf(race));
-	      subtag.setAttribute("team", id);
-	      Enum type = adjust.getType();
-	      subtag.setAttribute("type", String.valueOf(type));
-	      if (type == BreakdownType.RDG) {
-		subtag.setAttribute("amount",
-				    String.valueOf(((Breakdown)adjust).getHandicap()));
+	      subtag.appendChild(doc.createTextNode(tf.format(finish.getTimestamp())));
+	      finishNodes.add(subtag);
+
+	      // Deal with possible penalties/breakdowns
+	      FinishAdjustment adjust;
+	      if ((adjust = finish.getPenalty()) != null) {
+		// Add to penalty list
+		subtag = doc.createElement("Penalty");
+		subtag.setAttribute("race", String.valueOf(finish.getRace()));
+		subtag.setAttribute("team", id);
+		subtag.setAttribute("type", String.valueOf(adjust.getType()));
+		penaltyNodes.add(subtag);
+	      }
+	      else if ((adjust = finish.getBreakdown()) != null) {
+		// Add to breakdown list
+		subtag = doc.createElement("Breakdown");
+		subtag.setAttribute("race", String.valueOf(finish.getRace()));
+		subtag.setAttribute("team", id);
+		Enum type = adjust.getType();
+		subtag.setAttribute("type", String.valueOf(type));
+		if (type == BreakdownType.RDG) {
+		  subtag.setAttribute("amount",
+				      String.valueOf(((Breakdown)adjust).getHandicap()));
+		}
+		breakdownNodes.add(subtag);
 	      }
-	      breakdownNodes.add(subtag);
 	    }
 	  }
 	}
-      }
-      // Team penalty?
-      for (int i = 0; i < this.teamList.size(); i++) {
-	Team team = this.teamList.get(i);
-	String id = this.idList.get(i);
-	TeamPenalty pen;
-	for (Division d : this.regatta.getDivisions()) {
-	  pen = this.regatta.getTeamPenalty(d, team);
-	  if (pen != null) {
-	    subtag = doc.createElement("TeamPenalty");
-	    subtag.setAttribute("team", id);
-	    subtag.setAttribute("division", String.valueOf(d));
-	    subtag.setAttribute("type", String.valueOf(pen.getType()));
-	    subtag.appendChild(doc.createTextNode(pen.getComments()));
-	    teamPenaltyNodes.add(subtag);
+	// Team penalty?
+	for (int i = 0; i < this.teamList.size(); i++) {
+	  Team team = this.teamList.get(i);
+	  String id = this.idList.get(i);
+	  TeamPenalty pen;
+	  for (Division d : this.regatta.getDivisions()) {
+	    pen = this.regatta.getTeamPenalty(d, team);
+	    if (pen != null) {
+	      subtag = doc.createElement("TeamPenalty");
+	      subtag.setAttribute("team", id);
+	      subtag.setAttribute("division", String.valueOf(d));
+	      subtag.setAttribute("type", String.valueOf(pen.getType()));
+	      subtag.appendChild(doc.createTextNode(pen.getComments()));
+	      teamPenaltyNodes.add(subtag);
+	    }
 	  }
 	}
-      }
 
-      if (races.length > 0) {
-	tag = getOrCreateElement(doc, rootElement, "Finishes");
-	replaceElementContent(tag, finishNodes);
-      }
-      else {
-	removeSubElements(rootElement, "Finishes");
-      }
+	if (races.length > 0) {
+	  tag = getOrCreateElement(doc, rootElement, "Finishes");
+	  replaceElementContent(tag, finishNodes);
+	}
+	else {
+	  removeSubElements(rootElement, "Finishes");
+	}
 
 
-      // Penalties
-      if (penaltyNodes.size() > 0) {
-	tag = getOrCreateElement(doc, rootElement, "Penalties");
-	replaceElementContent(tag, penaltyNodes);
-      }
-      else {
-	removeSubElements(rootElement, "Penalties");
-      }
+	// Penalties
+	if (penaltyNodes.size() > 0) {
+	  tag = getOrCreateElement(doc, rootElement, "Penalties");
+	  replaceElementContent(tag, penaltyNodes);
+	}
+	else {
+	  removeSubElements(rootElement, "Penalties");
+	}
 
-      // Breakdowns
-      if (breakdownNodes.size() > 0) {
-	tag = getOrCreateElement(doc, rootElement, "Breakdowns");
-	replaceElementContent(tag, breakdownNodes);
-      }
-      else {
-	removeSubElements(rootElement, "Breakdowns");
-      }
+	// Breakdowns
+	if (breakdownNodes.size() > 0) {
+	  tag = getOrCreateElement(doc, rootElement, "Breakdowns");
+	  replaceElementContent(tag, breakdownNodes);
+	}
+	else {
+	  removeSubElements(rootElement, "Breakdowns");
+	}
 
-      // Team penalties
-      if (teamPenaltyNodes.size() > 0) {
-	tag = getOrCreateElement(doc, rootElement, "TeamPenalties");
-	replaceElementContent(tag, teamPenaltyNodes);
-      }
-      else {
-	removeSubElements(rootElement, "TeamPenalties");
+	// Team penalties
+	if (teamPenaltyNodes.size() > 0) {
+	  tag = getOrCreateElement(doc, rootElement, "TeamPenalties");
+	  replaceElementContent(tag, teamPenaltyNodes);
+	}
+	else {
+	  removeSubElements(rootElement, "TeamPenalties");
+	}
       }
 
-      // RP
       Calendar cal = Calendar.getInstance();
-      RP rp = this.regatta.getRP();
-      if (rp != null) {
-	List<Node> sailorNodes = new ArrayList<Node>();
-	Division [] divs = this.regatta.getDivisions();
-	for (int i = 0; i < this.idList.size(); i++) {
-	  String id = this.idList.get(i);
-	  Team team = this.teamList.get(i);
+      if (rps) {
+	// RP
+	RP rp = this.regatta.getRP();
+	if (rp != null) {
+	  List<Node> sailorNodes = new ArrayList<Node>();
+	  Division [] divs = this.regatta.getDivisions();
+	  for (int i = 0; i < this.idList.size(); i++) {
+	    String id = this.idList.get(i);
+	    Team team = this.teamList.get(i);
 
-	  for (Division div : divs) {
-	    Element name, year;
-	    Race [] subRaces;
+	    for (Division div : divs) {
+	      Element name, year;
+	      Race [] subRaces;
 	    
-	    // For each role
-	    for (BoatRole role : BoatRole.values()) {
-
-	      Sailor [] sailors = rp.getSailors(team,
-						div,
-						role);
-	      for (Sailor sailor : sailors) {
-		subRaces = rp.getRaces(team, sailor, role);
-		String raceString = Factory.formatList(subRaces);
-
-		subtag = doc.createElement("Sailor");
-		subtag.setAttribute("team", id);
-		subtag.setAttribute("role", role.desc());
-		subtag.setAttribute("division", String.valueOf(div));
-		subtag.setAttribute("races", raceString);
-		subtag.setAttribute("id", sailor.getID());
-		sailorNodes.add(subtag);
+	      // For each role
+	      for (BoatRole role : BoatRole.values()) {
+
+		Sailor [] sailors = rp.getSailors(team,
+						  div,
+						  role);
+		for (Sailor sailor : sailors) {
+		  subRaces = rp.getRaces(team, sailor, role);
+		  String raceString = Factory.formatList(subRaces);
+
+		  subtag = doc.createElement("Sailor");
+		  subtag.setAttribute("team", id);
+		  subtag.setAttribute("role", role.desc());
+		  subtag.setAttribute("division", String.valueOf(div));
+		  subtag.setAttribute("races", raceString);
+		  subtag.setAttribute("id", sailor.getID());
+		  sailorNodes.add(subtag);
+		}
 	      }
 	    }
 	  }
+	  tag = getOrCreateElement(doc, rootElement, "RP");
+	  replaceElementContent(tag, sailorNodes);
+	}
+	else {
+	  removeSubElements(rootElement, "RP");
 	}
-	tag = getOrCreateElement(doc, rootElement, "RP");
-	replaceElementContent(tag, sailorNodes);
-      }
-      else {
-	removeSubElements(rootElement, "RP");
       }
 
-      // RP database
-      tag = getOrCreateElement(doc, rootElement, "Membership");
+      if (membership) {
+	// RP database
+	tag = getOrCreateElement(doc, rootElement, "Membership");
       
-      // 1. Go through each affiliate, and fill in new members
-      MembershipDatabase rpDB = regatta.getRP().getDatabase();
-      Set<String> doneAffiliates = new HashSet<String>();
-      NodeList nl = tag.getElementsByTagName("Affiliate");
-      for (int n = 0; n < nl.getLength(); n++) {
-	Element affElem = (Element)nl.item(n);
-	String affID = affElem.getAttribute("id");
-	if (affID.length() > 0) {
-	  Membership [] members = rpDB.getMembers(affID);
-	  if (members != null) {
-	    doneAffiliates.add(affID);
-	    // Add new ones
-	    Element newSailor, subelem;
-	    for (Membership member: members) {
-	      if (member.isNew()) {
-		newSailor = doc.createElement("Member");
-		affElem.appendChild(newSailor);
-		newSailor.setAttribute("id", member.getID());
-		newSailor.setAttribute("data", "TechScore v" + TScoreGUI.VERSION);
-		newSailor.setAttribute("editable", String.valueOf(member.isNew()));
-		// Name
-		subelem = doc.createElement("Name");
-		newSailor.appendChild(subelem);
-		subelem.appendChild(doc.createTextNode(member.getName()));
-		// Year
-		cal.setTime(member.getYear());
-		subelem = doc.createElement("Year");
-		newSailor.appendChild(subelem);
-		subelem.appendChild(doc.createTextNode(String.valueOf(cal.get(Calendar.YEAR))));
+	// 1. Go through each affiliate, and fill in new members
+	MembershipDatabase rpDB = regatta.getRP().getDatabase();
+	Set<String> doneAffiliates = new HashSet<String>();
+	NodeList nl = tag.getElementsByTagName("Affiliate");
+	for (int n = 0; n < nl.getLength(); n++) {
+	  Element affElem = (Element)nl.item(n);
+	  String affID = affElem.getAttribute("id");
+	  if (affID.length() > 0) {
+	    Membership [] members = rpDB.getMembers(affID);
+	    if (members != null) {
+	      doneAffiliates.add(affID);
+	      // Add new ones, in place of those saved before
+	      Map<String, Element> saved = new HashMap<String, Element>();
+	      NodeList ml = affElem.getElementsByTagName("Member");
+	      for (int m = 0; m < ml.getLength(); m++) {
+		Element memberElem = (Element)ml.item(m);
+		saved.put(memberElem.getAttribute("id"), memberElem);
+	      }
+	      Element newSailor, subelem;
+	      for (Membership member: members) {
+		if (member.isNew()) {
+		  if (saved.containsKey(member.getID()))
+		    saved.get(member.getID()).getParentNode().
+		      removeChild(saved.get(member.getID()));
+		  newSailor = doc.createElement("Member");
+		  affElem.appendChild(newSailor);
+		  newSailor.setAttribute("id", member.getID());
+		  newSailor.setAttribute("data", "TechScore v" + TScoreGUI.VERSION);
+		  newSailor.setAttribute("editable", String.valueOf(member.isNew()));
+		  // Name
+		  subelem = doc.createElement("Name");
+		  newSailor.appendChild(subelem);
+		  subelem.appendChild(doc.createTextNode(member.getName()));
+		  // Year
+		  cal.setTime(member.getYear());
+		  subelem = doc.createElement("Year");
+		  newSailor.appendChild(subelem);
+		  subelem.appendChild(doc.createTextNode(String.valueOf(cal.get(Calendar.YEAR))));
+		}
 	      }
 	    }
 	  }
 	}
-      }
       
-      // 2. Go through each new affiliate
-      for (String aff : rpDB.getAffiliations()) {
-	if (!doneAffiliates.contains(aff)) {
-	  // Create the member
-	  Element affElem = doc.createElement("Affiliate");
-	  tag.appendChild(affElem);
-	  affElem.setAttribute("id", aff);
-	  Element newSailor, subelem;
-	  for (Membership member : rpDB.getMembers(aff)) {
-	    newSailor = doc.createElement("Member");
-	    affElem.appendChild(newSailor);
-	    newSailor.setAttribute("id", member.getID());
-	    newSailor.setAttribute("data", "TechScore v" + TScoreGUI.VERSION);
-	    // Name
-	    subelem = doc.createElement("Name");
-	    newSailor.appendChild(subelem);
-	    subelem.appendChild(doc.createTextNode(member.getName()));
-	    // Year
-	    cal.setTime(member.getYear());
-	    subelem = doc.createElement("Year");
-	    newSailor.appendChild(subelem);
-	    subelem.appendChild(doc.createTextNode(String.valueOf(cal.get(Calendar.YEAR))));
+	// 2. Go through each new affiliate
+	for (String aff : rpDB.getAffiliations()) {
+	  if (!doneAffiliates.contains(aff)) {
+	    // Create the member
+	    Element affElem = doc.createElement("Affiliate");
+	    tag.appendChild(affElem);
+	    affElem.setAttribute("id", aff);
+	    Element newSailor, subelem;
+	    for (Membership member : rpDB.getMembers(aff)) {
+	      newSailor = doc.createElement("Member");
+	      affElem.appendChild(newSailor);
+	      newSailor.setAttribute("id", member.getID());
+	      newSailor.setAttribute("data", "TechScore v" + TScoreGUI.VERSION);
+	      // Name
+	      subelem = doc.createElement("Name");
+	      newSailor.appendChild(subelem);
+	      subelem.appendChild(doc.createTextNode(member.getName()));
+	      // Year
+	      cal.setTime(member.getYear());
+	      subelem = doc.createElement("Year");
+	      newSailor.appendChild(subelem);
+	      subelem.appendChild(doc.createTextNode(String.valueOf(cal.get(Calendar.YEAR))));
+	    }
 	  }
 	}
       }
 
-      // Save to new file
+      // Save to new file: the sections rewritten in place, the new
+      // ones at the end, and the rest as they were
       TransformerFactory xformFactory = TransformerFactory.newInstance();  
       Transformer idTransform = xformFactory.newTransformer();
-      Source input = new DOMSource(doc);
-      Result output = new StreamResult(outFile);
-      idTransform.transform(input, output);
+      idTransform.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+      idTransform.setOutputProperty(OutputKeys.ENCODING, charset.name());
+      Map<Integer, Node> rewritten = new HashMap<Integer, Node>();
+      List<Node> added = new ArrayList<Node>();
+      for (Node n = rootElement.getFirstChild(); n != null; n = n.getNextSibling()) {
+	if (n instanceof Element) {
+	  Integer i = (Integer)n.getUserData(SECTION_KEY);
+	  if (i == null)
+	    added.add(n);
+	  else
+	    rewritten.put(i, n);
+	}
+      }
+
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
+      try {
+	out.write(source.getPrologue().getBytes(charset));
+	if (rootAttributes.equals(getAttributes(rootElement)))
+	  out.write(source.getRootTag().getBytes(charset));
+	else
+	  out.write(formatStartTag(rootElement).getBytes(charset));
+	for (int i = 0; i < source.size(); i++) {
+	  out.write(source.getGap(i).getBytes(charset));
+	  if (!rewrite.contains(source.getName(i)))
+	    out.write(source.getSection(i).getBytes(charset));
+	  else if (rewritten.containsKey(i))
+	    idTransform.transform(new DOMSource(rewritten.get(i)), new StreamResult(out));
+	}
+	out.write(source.getGap(source.size()).getBytes(charset));
+	for (Node n : added)
+	  idTransform.transform(new DOMSource(n), new StreamResult(out));
+	out.write(source.getRootEnd().getBytes(charset));
+      } finally {
+	out.close();
+      }
 
     } catch (SAXException e) {
       errors.add("Error interpreting file: " + e.getMessage());
@@ -546,13 +736,17 @@ public class RegattaIO {
       errors.add(e.getMessage());
     } catch (TransformerException e) {
       errors.add(e.getMessage());
+    } catch (IllegalArgumentException e) {
+      errors.add("Error interpreting file: " + e.getMessage());
     }
 
-    return true;
+    return errors.isEmpty();
   }
   
   /**
-   * Writes the regatta and the RP database to a new file.
+   * Writes the regatta and the RP database to a new file. The file
+   * is written tag by tag with an {@link XMLWriter}, rather than
+   * built in memory first.
    *
    * @param reg a <code>Regatta</code> to save to file
    * @param file a <code>File</code> to save in
@@ -562,187 +756,185 @@ public class RegattaIO {
    */
   public boolean writeFile(Regatta reg, File file) {
     this.setRegatta(reg);
+    XMLWriter out = null;
     try {
+      out = new XMLWriter(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeDeclaration();
 
-      // Create XML structure
-      XMLTag subtag;
-      XMLTag root = new XMLTag("Regatta");
-      root.addAttr("xmlns", "http://techscore.mit.edu");
-      XMLTag tag = new XMLTag("RegattaName");
-      root.addAttr("version", TScoreGUI.VERSION);
-      root.addAttr("divisions", "" + this.regatta.getNumDivisions());
-      root.addAttr("races",     "" + this.regatta.getNumRaces());
-      root.add(tag);
-      tag.add(new XMLTextTag(this.regatta.getName()));
+      out.startTag("Regatta");
+      out.addAttr("xmlns", "http://techscore.mit.edu");
+      out.addAttr("version", TScoreGUI.VERSION);
+      out.addAttr("divisions", "" + this.regatta.getNumDivisions());
+      out.addAttr("races",     "" + this.regatta.getNumRaces());
+      out.addTextTag("RegattaName", this.regatta.getName());
 
       Calendar cal = Calendar.getInstance();
       DateFormat dtf = DateFormat.getDateTimeInstance(DateFormat.LONG,
 						      DateFormat.LONG);
-      cal.setTime(this.regatta.getStartTime());
-      XMLTag dateTag = new XMLTag("StartTime");
-      dateTag.add(new XMLTextTag(dtf.format(this.regatta.getStartTime())));
-      root.add(dateTag);
-
-      tag = new XMLTag("Duration");
-      tag.add(new XMLTextTag(Integer.toString(this.regatta.getDuration())));
-      tag.addAttr("type", "days");
-      root.add(tag);
-
-      tag = new XMLTag("RegattaType");
-      tag.add(new XMLTextTag(this.regatta.getType().toString()));
-      tag.addAttr("class", "ICSA");
-      root.add(tag);
-
-      tag = new XMLTag("RegattaScoring");
-      tag.add(new XMLTextTag(this.regatta.getScoring().toString()));
-      tag.addAttr("class", "ICSA");
-      root.add(tag);
+      out.addTextTag("StartTime", dtf.format(this.regatta.getStartTime()));
+
+      out.startTag("Duration");
+      out.addAttr("type", "days");
+      out.addText(Integer.toString(this.regatta.getDuration()));
+      out.endTag();
+
+      out.startTag("RegattaType");
+      out.addAttr("class", "ICSA");
+      out.addText(this.regatta.getType().toString());
+      out.endTag();
+
+      out.startTag("RegattaScoring");
+      out.addAttr("class", "ICSA");
+      out.addText(this.regatta.getScoring().toString());
+      out.endTag();
 
       // Starting with version 1.4, Blurb --> Comments
-      tag = new XMLTag("Comments");
-      root.add(tag);
+      out.startTag("Comments");
       Map<Date, String> blurbs = this.regatta.getBlurbs();
       int day = 1;
       for (Date d : blurbs.keySet()) {
-	subtag = new XMLTag("Comment");
-	subtag.addAttr("day", String.valueOf(day));
-	subtag.add(new XMLTextTag(blurbs.get(d)));
+	out.startTag("Comment");
+	out.addAttr("day", String.valueOf(day));
+	out.addText(blurbs.get(d));
+	out.endTag();
 	day++;
       }
+      out.endTag();
 
       // Teams
-      root.add(tag = new XMLTag("Teams"));
-      XMLTag teamTag;
+      out.startTag("Teams");
       Team [] teams = this.regatta.getTeams();
       for (int i = 0; i < teams.length; i++) {
-	teamTag = new XMLTag("Team");
-	teamTag.addAttr("id", "t" + (i+1));
-	teamTag.addAttr("affiliate", teams[i].getAffiliation());
-	XMLTag lName, sName;
-	lName = new XMLTag("LongName");
-	sName = new XMLTag("ShortName");
-	lName.add(new XMLTextTag(teams[i].getLongname()));
-	sName.add(new XMLTextTag(teams[i].getShortname()));
-	teamTag.add(lName);
-	teamTag.add(sName);
-	tag.add(teamTag);
+	out.startTag("Team");
+	out.addAttr("id", "t" + (i+1));
+	out.addAttr("affiliate", teams[i].getAffiliation());
+	out.addTextTag("LongName", teams[i].getLongname());
+	out.addTextTag("ShortName", teams[i].getShortname());
+	out.endTag();
       }
+      out.endTag();
 
       // Rotations
       Rotation rot = this.regatta.getRotation();
       if (rot != null) {
-	tag = new XMLTag("Rotations");
-	root.add(tag);
-
+	out.startTag("Rotations");
 	Division [] divs = this.regatta.getDivisions();
 	for (int d = 0; d < divs.length; d++) {
 	  Race [] races = this.regatta.getRaces(divs[d]);
 	  for (int r = 0; r < races.length; r++) {
 	    for (int t = 0; t < teams.length; t++) {
 	      Object sail = rot.getSail(races[r], teams[t]);
-	      subtag = new XMLTag("Sail");
-	      subtag.addAttr("race", races[r].toString());
-	      subtag.addAttr("team", "t" + (t+1));
-	      subtag.addAttr("sail", sail.toString());
-	      tag.add(subtag);
+	      out.startTag("Sail");
+	      out.addAttr("race", races[r].toString());
+	      out.addAttr("team", "t" + (t+1));
+	      out.addAttr("sail", sail.toString());
+	      out.endTag();
 	    }
 	  }
 	}
+	out.endTag();
       }
 
       // Finishes
-      List<XMLTag> penaltyList = new ArrayList<XMLTag>();
-      List<XMLTag> breakdownList = new ArrayList<XMLTag>();
-      List<XMLTag> teamPenaltyList = new ArrayList<XMLTag>();
       DateFormat tf = DateFormat.getTimeInstance(DateFormat.LONG);
-      Race [] races = this.regatta.getFinishedRaces();
+      // In combined scoring, getFinishedRaces() lists only division A
+      List<Race> raceList = new ArrayList<Race>();
+      for (Division d : this.regatta.getDivisions())
+	raceList.addAll(Arrays.asList(this.regatta.getFinishedRaces(d)));
+      Race [] races = raceList.toArray(new Race[]{});
       if (races.length > 0) {
-	root.add(tag = new XMLTag("Finishes"));
-      }
-      int teamIndex = 0;
-      for (Team team: teams) {
-	for (Race race: races) {
-	  Finish finish = this.regatta.getFinish(race, team);
-	  if (finish != null) {
-	    tag.add(subtag = new XMLTag("Finish"));
-	    subtag.addAttr("race", race.toString());
-	    subtag.addAttr("team", "t" + (teamIndex+1));
-	    subtag.add(new XMLTextTag(tf.format(finish.getTimestamp())));
-
-	    FinishAdjustment adjust;
-	    if ((adjust = finish.getPenalty()) != null) {
-	      // Add to penaltyList
-	      XMLTag penTag = new XMLTag("Penalty");
-	      penTag.addAttr("race", race.toString());
-	      penTag.addAttr("team", "t" + (teamIndex+1));
-	      penTag.addAttr("type", adjust.getType().toString());
-	      penaltyList.add(penTag);
-	    }
-	    else if ((adjust = finish.getBreakdown()) != null) {
-	      // Add to breakdown list
-	      XMLTag penTag = new XMLTag("Breakdown");
-	      penTag.addAttr("race", race.toString());
-	      penTag.addAttr("team", "t" + (teamIndex+1));
-	      Enum type = adjust.getType();
-	      penTag.addAttr("type", type.toString());
-	      if (type == BreakdownType.RDG) {
-		penTag.addAttr("amount",
-			       "" + ((Breakdown)adjust).getHandicap());
-	      }
-	      breakdownList.add(penTag);
+	out.startTag("Finishes");
+	for (int t = 0; t < teams.length; t++) {
+	  for (Race race : races) {
+	    Finish finish = this.regatta.getFinish(race, teams[t]);
+	    if (finish != null) {
+	      out.startTag("Finish");
+	      out.addAttr("race", race.toString());
+	      out.addAttr("team", "t" + (t+1));
+	      out.addText(tf.format(finish.getTimestamp()));
+	      out.endTag();
 	    }
 	  }
 	}
-	// Team penalty?
-	TeamPenalty pen;
-	for (Division d : this.regatta.getDivisions()) {
-	  pen = this.regatta.getTeamPenalty(d, team);
-	  if (pen != null) {
-	    subtag = new XMLTag("TeamPenalty");
-	    subtag.addAttr("team", "t" + (teamIndex+1));
-	    subtag.addAttr("division", String.valueOf(d));
-	    subtag.addAttr("type", String.valueOf(pen.getType()));
-	    subtag.add(new XMLTextTag(pen.getComments()));
-	    teamPenaltyList.add(subtag);
-	  }
-	}
-	teamIndex++;
+	out.endTag();
       }
 
-      // Penalties
-      if (penaltyList.size() > 0) {
-	root.add(tag = new XMLTag("Penalties"));
-	for (XMLTag t: penaltyList) {
-	  tag.add(t);
+      // Penalties and breakdowns, in a second pass over the finishes
+      boolean hasPenalties = false;
+      for (int t = 0; t < teams.length; t++) {
+	for (Race race : races) {
+	  Finish finish = this.regatta.getFinish(race, teams[t]);
+	  FinishAdjustment adjust;
+	  if (finish != null && (adjust = finish.getPenalty()) != null) {
+	    if (!hasPenalties) {
+	      out.startTag("Penalties");
+	      hasPenalties = true;
+	    }
+	    out.startTag("Penalty");
+	    out.addAttr("race", race.toString());
+	    out.addAttr("team", "t" + (t+1));
+	    out.addAttr("type", adjust.getType().toString());
+	    out.endTag();
+	  }
 	}
       }
-
-      // Breakdowns
-      if (breakdownList.size() > 0) {
-	root.add(tag = new XMLTag("Breakdowns"));
-	for (XMLTag t: breakdownList) {
-	  tag.add(t);
+      if (hasPenalties)
+	out.endTag();
+
+      boolean hasBreakdowns = false;
+      for (int t = 0; t < teams.length; t++) {
+	for (Race race : races) {
+	  Finish finish = this.regatta.getFinish(race, teams[t]);
+	  FinishAdjustment adjust;
+	  if (finish != null &&
+	      finish.getPenalty() == null &&
+	      (adjust = finish.getBreakdown()) != null) {
+	    if (!hasBreakdowns) {
+	      out.startTag("Breakdowns");
+	      hasBreakdowns = true;
+	    }
+	    out.startTag("Breakdown");
+	    out.addAttr("race", race.toString());
+	    out.addAttr("team", "t" + (t+1));
+	    Enum type = adjust.getType();
+	    out.addAttr("type", type.toString());
+	    if (type == BreakdownType.RDG) {
+	      out.addAttr("amount", "" + ((Breakdown)adjust).getHandicap());
+	    }
+	    out.endTag();
+	  }
 	}
       }
+      if (hasBreakdowns)
+	out.endTag();
 
       // Team penalties
-      TeamPenalty [] penalties = this.regatta.getTeamPenalties();
-      if (penalties.length > 0) {
-	tag = new XMLTag("TeamPenalties");
-	for (XMLTag t: teamPenaltyList) {
-	  tag.add(t);
+      if (this.regatta.getTeamPenalties().length > 0) {
+	out.startTag("TeamPenalties");
+	for (int t = 0; t < teams.length; t++) {
+	  for (Division d : this.regatta.getDivisions()) {
+	    TeamPenalty pen = this.regatta.getTeamPenalty(d, teams[t]);
+	    if (pen != null) {
+	      out.startTag("TeamPenalty");
+	      out.addAttr("team", "t" + (t+1));
+	      out.addAttr("division", String.valueOf(d));
+	      out.addAttr("type", String.valueOf(pen.getType()));
+	      out.addText(pen.getComments());
+	      out.endTag();
+	    }
+	  }
 	}
+	out.endTag();
       }
 
       // RP
       RP rp = this.regatta.getRP();
       if (rp != null) {
-	root.add(tag = new XMLTag("RP"));
+	out.startTag("RP");
 	Division [] divs = this.regatta.getDivisions();
 	for (int t = 0; t < teams.length; t++) {
 	  Team team = teams[t];
 	  for (Division div : divs) {
-	    XMLTag name, year;
 	    Race [] subRaces;
 	    Integer [] nums;
 	    for (BoatRole role : BoatRole.values()) {
@@ -756,54 +948,80 @@ public class RegattaIO {
 		  nums[i] = new Integer(subRaces[i].getNumber());
 		}
 
-		String raceString = Factory.formatList(nums);
-		tag.add(subtag = new XMLTag("Sailor"));
-		subtag.addAttr("team", "t" + (t+1));
-		subtag.addAttr("role", role.desc());
-		subtag.addAttr("division", div.toString());
-		subtag.addAttr("races", raceString);
-		subtag.addAttr("id", sailor.getID());
+		out.startTag("Sailor");
+		out.addAttr("team", "t" + (t+1));
+		out.addAttr("role", role.desc());
+		out.addAttr("division", div.toString());
+		out.addAttr("races", Factory.formatList(nums));
+		out.addAttr("id", sailor.getID());
+		out.endTag();
 	      }
 	    }
 	  }
 	}
+	out.endTag();
       }
 
       // RP Database
-      root.add(tag = new XMLTag("Membership"));
+      out.startTag("Membership");
       MembershipDatabase db = this.regatta.getRP().getDatabase();
-      XMLTag memtag, name, year;
       for (String aff : db.getAffiliations()) {
-	tag.add(subtag = new XMLTag("Affiliate"));
-	subtag.addAttr("id", aff);
+	out.startTag("Affiliate");
+	out.addAttr("id", aff);
 	for (Membership member : db.getMembers(aff)) {
 	  if (member.isNew()) {
-	    subtag.add(memtag = new XMLTag("Member"));
-	    memtag.addAttr("id", member.getID());
-	    memtag.addAttr("data", "TechScore v" + TScoreGUI.VERSION);
-	    memtag.addAttr("editable", String.valueOf(member.isNew()));
-	    memtag.add(name = new XMLTag("Name"));
-	    name.add(new XMLTextTag(member.getName()));
+	    out.startTag("Member");
+	    out.addAttr("id", member.getID());
+	    out.addAttr("data", "TechScore v" + TScoreGUI.VERSION);
+	    out.addAttr("editable", String.valueOf(member.isNew()));
+	    out.addTextTag("Name", member.getName());
 
 	    if (member.getYear() != null) {
 	      cal.setTime(member.getYear());
-	      memtag.add(year = new XMLTag("Year"));
-	      year.add(new XMLTextTag(String.valueOf(cal.get(Calendar.YEAR))));
+	      out.addTextTag("Year", String.valueOf(cal.get(Calendar.YEAR)));
 	    }
+	    out.endTag();
 	  }
 	}
+	out.endTag();
       }
+      out.endTag();
 
-      // Actually write the file
-      FileWriter fstream = new FileWriter(file);
-      BufferedWriter out = new BufferedWriter(fstream);
-      out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
-      out.write(root.toXMLString());
+      // Close the root tag
       out.close();
-
+      out = null;
       return true;      
     } catch (IOException e) {
       System.err.println("Could not print to file.");
+    } finally {
+      if (out != null) {
+	try {
+	  out.close();
+	} catch (IOException e) {}
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the regatta to the given file in the binary format of
+   * {@link RegattaCodec}, which loads faster than XML. The file is
+   * read back with {@link #readFile}, like any other.
+   *
+   * @param reg a <code>Regatta</code> to save to file
+   * @param file a <code>File</code> to save in
+   * @param compress whether to compress the file
+   * @return <code>true</code> upon success.
+   */
+  public boolean writeBinaryFile(Regatta reg, File file, boolean compress) {
+    errors   = new LinkedHashSet<String>();
+    warnings = new LinkedHashSet<String>();
+    this.setRegatta(reg);
+    try {
+      RegattaCodec.write(reg, file, compress);
+      return true;
+    } catch (IOException e) {
+      errors.add("Could not print to file: " + e.getMessage());
     }
     return false;
   }
@@ -827,6 +1045,11 @@ public class RegattaIO {
    * <p>
    * Goes out of its way to understand previous versions of the file
    * format.
+   * <p>
+   * The file is read in a single pass by a
+   * {@link RegattaStreamReader}, rather than parsed into a DOM. Files
+   * in the binary format of {@link RegattaCodec} are read by it
+   * instead.
    *
    * @param  f a <code>File</code> to read
    * @return <code>true</code> on success.
@@ -838,20 +1061,38 @@ public class RegattaIO {
     errors   = new LinkedHashSet<String>();
     warnings = new LinkedHashSet<String>();
     regatta = null;
-    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-    NodeList nl, snl;
+    List<Record> snl;
     try {
       this.notifyListeners("done", new Boolean(false));
 
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      Document doc = db.parse(f);
-      Element root = doc.getDocumentElement();
-      root.normalize();
+      if (RegattaCodec.isBinary(f)) {
+	InputStream in = new BufferedInputStream(new ProgressInputStream(f, 100));
+	try {
+	  regatta = RegattaCodec.read(in);
+	} finally {
+	  in.close();
+	}
+	this.teamList = new ArrayList<Team>(Arrays.asList(regatta.getTeams()));
+	this.idList = new ArrayList<String>();
+	for (int i = 0; i < this.teamList.size(); i++)
+	  this.idList.add("t" + (i+1));
+	this.notifyListeners("done", new Boolean(true));
+	return true;
+      }
+
+      // Parsing takes the first half of the progress
+      RegattaStreamReader root = new RegattaStreamReader();
+      InputStream in = new BufferedInputStream(new ProgressInputStream(f, 50));
+      try {
+	root.read(in);
+      } finally {
+	in.close();
+      }
 
       // Version
       String version;
-      if (root.hasAttribute("version"))
-	version = root.getAttribute("version");
+      if (root.getRootAttribute("version") != null)
+	version = root.getRootAttribute("version");
       else {
 	version = TScoreGUI.VERSION;
 	warnings.add("No version detected, assuming current.");
@@ -860,7 +1101,7 @@ public class RegattaIO {
       // REGATTA DETAILS
       final String prop = "Loading file";
       //      this.notifyListeners(prop, "Reading details");
-      String name = getTagContent(root, "RegattaName");
+      String name = root.getDetail("RegattaName");
       if (name == null) {
 	warnings.add("No name found for regatta.");
 	name = "Untitled";
@@ -871,7 +1112,7 @@ public class RegattaIO {
       DateFormat dtf = DateFormat.getDateTimeInstance(DateFormat.LONG,
 						      DateFormat.LONG);
       try {
-	dateValue = dtf.parse(getTagContent(root, "StartTime"));
+	dateValue = dtf.parse(root.getDetail("StartTime"));
       } catch (ParseException e) {
 	warnings.add("Unable to interpret starting date, using now.");
 	dateValue = new Date();
@@ -883,7 +1124,7 @@ public class RegattaIO {
       // Duration
       int duration = 1;
       try {
-	duration = Integer.parseInt(getTagContent(root, "Duration"));
+	duration = Integer.parseInt(root.getDetail("Duration"));
       } catch (NumberFormatException e) {
 	warnings.add("Illegal or missing value for duration. Using default: 1.");
 	duration = 1;
@@ -896,7 +1137,7 @@ public class RegattaIO {
       }
 
       // Type
-      String type = getTagContent(root, "RegattaType");
+      String type = root.getDetail("RegattaType");
       RegattaType theType = null;
       if (type == null) {
 	warnings.add("Regatta type not found, using \"Personal\"");
@@ -915,7 +1156,7 @@ public class RegattaIO {
       }
 
       // Scoring
-      String scoring = getTagContent(root, "RegattaScoring");
+      String scoring = root.getDetail("RegattaScoring");
       RegattaScoring theScoring = null;
       if (scoring == null) {
 	warnings.add ("Regatta scoring not found, using \"Standard\"");
@@ -946,22 +1187,18 @@ public class RegattaIO {
       // version <  1.4: single blurb, assigned to first day of regatta
       // version >= 1.4: one blurb per racing day
       if (Factory.compareVersions(version, "1.4") < 0) {
-	String blurb = getTagContent(root, "Blurb", true);
+	String blurb = root.getDetail("Blurb");
 	if (blurb == null) blurb = "";
 	regatta.setBlurb(dateValue, blurb);
       }
       else {
-	nl = root.getElementsByTagName("Comments");
-	int len = nl.getLength();
-	if (len > 0) {
-	  // Use the last one
-	  Element comElem = (Element)nl.item(len - 1);
-	  snl = comElem.getElementsByTagName("Comment");
+	snl = root.getSection("Comments");
+	if (snl != null) {
 	  cal.setTime(dateValue);
-	  for (int i = 0; i < snl.getLength(); i++) {
+	  for (int i = 0; i < snl.size(); i++) {
 	    try {
-	      Element comm = (Element)snl.item(i);
-	      String blurb = getTagContent(comm);
+	      Record comm = snl.get(i);
+	      String blurb = comm.getContent();
 	      int day = Integer.parseInt(comm.getAttribute("day"));
 	      cal.add(Calendar.DAY_OF_MONTH, (day - 1));
 	      regatta.setBlurb(cal.getTime(), blurb);
@@ -996,8 +1233,8 @@ public class RegattaIO {
 
 
       // TEAMS
-      this.notifyListeners(prop, "Loading teams");
-      this.updateTeamMaps(getElement(root, "Teams"));
+      this.notifyProgress(prop, "Loading teams", 55);
+      this.updateTeamMaps(root.getSection("Teams"));
       for (int i = 0; i < this.teamList.size(); i++) {
 	Team team = this.teamList.get(i);
 		
@@ -1006,26 +1243,21 @@ public class RegattaIO {
 	  // Remove the team from the list
 	  this.teamList.remove(i);
 	  this.idList.remove(i);
-	  this.elementList.remove(i);
 	  i--;
 	}
       }
 
-      this.notifyListeners(prop, "Loading rotations");
+      this.notifyProgress(prop, "Loading rotations", 60);
       // ROTATIONS
       Rotation rot;
-      nl = root.getElementsByTagName("Rotations");
-      int len = nl.getLength();
-      if (len == 0)
+      snl = root.getSection("Rotations");
+      if (snl == null)
 	rot = null;
       else {
 	rot = new Rotation();
-	// Use the last rotation
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("Sail");
-	for (int i = 0; i < snl.getLength(); i++) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element sail = (Element)snl.item(i);
+	    Record sail = snl.get(i);
 	    String tid = sail.getAttribute("team");
 	    String rid = sail.getAttribute("race");
 	    String sid = sail.getAttribute("sail");
@@ -1045,7 +1277,6 @@ public class RegattaIO {
 
 	    rot.setSail(race, t, s);
 	  }
-	  catch (ClassCastException e) {}
 	  catch (IllegalArgumentException e) {
 	    warnings.add(e.getMessage());
 	  }
@@ -1069,21 +1300,18 @@ public class RegattaIO {
       }
       regatta.setRotation(rot);
 
-      this.notifyListeners(prop, "Loading finishes");
+      this.notifyProgress(prop, "Loading finishes", 70);
       // FINISHES
-      nl = root.getElementsByTagName("Finishes");
-      len = nl.getLength();
-      if (len > 0) {
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("Finish");
+      snl = root.getSection("Finishes");
+      if (snl != null) {
 	DateFormat tf = DateFormat.getTimeInstance(DateFormat.LONG);
-	for (int i = 0; i < snl.getLength(); i++) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element finElem = (Element)snl.item(i);
+	    Record finElem = snl.get(i);
 	    String tid = finElem.getAttribute("team");
 	    String rid = finElem.getAttribute("race");
 	    String typ = finElem.getAttribute("type");
-	    String stamp = getTagContent(finElem);
+	    String stamp = finElem.getContent();
 
 	    int index = this.idList.indexOf(tid);
 	    if (index < 0) {
@@ -1119,16 +1347,13 @@ public class RegattaIO {
 	}
       }
 
-      this.notifyListeners(prop, "Entering penalties");
+      this.notifyProgress(prop, "Entering penalties", 75);
       // PENALTIES
-      nl = root.getElementsByTagName("Penalties");
-      len = nl.getLength();
-      if (len > 0) {
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("Penalty");
-	for (int i = 0; i < snl.getLength(); i++) {
+      snl = root.getSection("Penalties");
+      if (snl != null) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element finElem = (Element)snl.item(i);
+	    Record finElem = snl.get(i);
 	    String tid = finElem.getAttribute("team");
 	    String rid = finElem.getAttribute("race");
 	    String typ = finElem.getAttribute("type");
@@ -1162,7 +1387,7 @@ public class RegattaIO {
 	    }
 
 	    // Comments
-	    String comms = getTagContent(finElem);
+	    String comms = finElem.getContent();
 
 	    finish.setPenalty(new Penalty(ftype, comms));
 	  } catch (IllegalArgumentException e) {
@@ -1171,16 +1396,13 @@ public class RegattaIO {
 	}
       }
 
-      this.notifyListeners(prop, "Loading breakdowns");
+      this.notifyProgress(prop, "Loading breakdowns", 80);
       // BREAKDOWNS
-      nl = root.getElementsByTagName("Breakdowns");
-      len = nl.getLength();
-      if (len > 0) {
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("Breakdown");
-	for (int i = 0; i < snl.getLength(); i++) {
+      snl = root.getSection("Breakdowns");
+      if (snl != null) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element finElem = (Element)snl.item(i);
+	    Record finElem = snl.get(i);
 	    String tid = finElem.getAttribute("team");
 	    String rid = finElem.getAttribute("race");
 	    String typ = finElem.getAttribute("type");
@@ -1213,7 +1435,7 @@ public class RegattaIO {
 	      }
 	    }
 	    // Comments
-	    String comms = getTagContent(finElem);
+	    String comms = finElem.getContent();
 
 	    // Create the breakdown
 	    Breakdown breakdown = new Breakdown(ftype, comms);
@@ -1237,15 +1459,13 @@ public class RegattaIO {
 	}
       }
 
+      this.notifyProgress(prop, "Loading team penalties", 82);
       // TEAM PENALTIES
-      nl = root.getElementsByTagName("TeamPenalties");
-      len = nl.getLength();
-      if (len > 0) {
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("TeamPenalty");
-	for (int i = 0; i < snl.getLength(); i++) {
+      snl = root.getSection("TeamPenalties");
+      if (snl != null) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element finElem = (Element)snl.item(i);
+	    Record finElem = snl.get(i);
 	    String tid = finElem.getAttribute("team");
 	    String rid = finElem.getAttribute("division");
 	    String typ = finElem.getAttribute("type");
@@ -1262,7 +1482,7 @@ public class RegattaIO {
 	    // Type
 	    TeamPenaltyType ptype = TeamPenalty.parseType(typ);
 	    // Comments
-	    String comms = getTagContent(finElem);
+	    String comms = finElem.getContent();
 	    regatta.setTeamPenalty(new TeamPenalty(div, team, ptype, comms));
 	    
 	  } catch (IllegalArgumentException e) {
@@ -1280,25 +1500,24 @@ public class RegattaIO {
       MembershipDatabase rpDb = rp.getDatabase();
       int highest_id = 0;
 
-      this.notifyListeners(prop, "Creating RP database");
-      Element memElem = getElement(root, "Membership");
+      this.notifyProgress(prop, "Creating RP database", 85);
+      List<Record> nl = root.getSection("Membership");
       
-      if (memElem != null) {
-	nl = memElem.getElementsByTagName("Affiliate");
-	for (int i = 0; i < nl.getLength(); i++) {
-	  Element e = (Element)nl.item(i);
+      if (nl != null) {
+	for (int i = 0; i < nl.size(); i++) {
+	  Record e = nl.get(i);
 	  String id = e.getAttribute("id").trim();
 	  if (id.length() == 0)
 	    id = "_MISC";
 	  rpDb.addAffiliation(id);
 	  
-	  snl = e.getElementsByTagName("Member");
-	  for (int j = 0; j < snl.getLength(); j++) {
-	    Element subE = (Element)snl.item(j);
+	  snl = e.getChildren();
+	  for (int j = 0; j < snl.size(); j++) {
+	    Record subE = snl.get(j);
 	    String sID = subE.getAttribute("id").trim();
 	    String edt = subE.getAttribute("editable").trim();
-	    String nam = getTagContent(subE, "Name");
-	    String yer = getTagContent(subE, "Year");
+	    String nam = subE.getContent("Name");
+	    String yer = subE.getContent("Year");
 	    boolean editable = Boolean.parseBoolean(edt);
 	    cal = Calendar.getInstance();
 	    Date year;
@@ -1325,17 +1544,14 @@ public class RegattaIO {
 	}
       }
 
-      this.notifyListeners(prop, "Loading RP info");
+      this.notifyProgress(prop, "Loading RP info", 92);
       // RP
-      nl = root.getElementsByTagName("RP");
-      len = nl.getLength();
-      if (len > 0) {
-	Element rotElem = (Element)nl.item(len - 1);
-	snl = rotElem.getElementsByTagName("Sailor");
+      snl = root.getSection("RP");
+      if (snl != null) {
 	Sailor sailor;
-	for (int i = 0; i < snl.getLength(); i++) {
+	for (int i = 0; i < snl.size(); i++) {
 	  try {
-	    Element sailorElem = (Element)snl.item(i);
+	    Record sailorElem = snl.get(i);
 	    String roleID = sailorElem.getAttribute("role");
 	    String divID  = sailorElem.getAttribute("division");
 	    String raceStr= sailorElem.getAttribute("races");
@@ -1389,12 +1605,11 @@ public class RegattaIO {
 	}
       }
 
+      this.notifyListeners("progress", new Integer(100));
       this.notifyListeners("done", new Boolean(true));
       return (warnings.size() == 0);
 
-    } catch (ParserConfigurationException e) {
-      errors.add("Error with parser: " + e.getMessage());
-    } catch (SAXException e) {
+    } catch (XMLStreamException e) {
       errors.add("Error interpreting file: " + e.getMessage());
     } catch (IOException e) {
       errors.add("Could not open file: " + e.getMessage());
@@ -1490,11 +1705,14 @@ public class RegattaIO {
   }
 
   /**
-   * @return an array of the attributes for a specific tag.
+   * @return an array of the attributes for a specific attribute of
+   * the root tag.
    */
-  private String [] getTagAttribute(Element tag,
+  private String [] getTagAttribute(RegattaStreamReader root,
 				    String attr) {
-    String attrString = tag.getAttribute(attr);
+    String attrString = root.getRootAttribute(attr);
+    if (attrString == null)
+      attrString = "";
     return attrString.split("/ /");
   }
 
@@ -1568,6 +1786,60 @@ public class RegattaIO {
     this.replaceElementContent(root, Arrays.asList(new Node []{child}));
   }
 
+  /**
+   * Returns the attributes of the given element, by name.
+   */
+  private static Map<String, String> getAttributes(Element elem) {
+    Map<String, String> map = new LinkedHashMap<String, String>();
+    NamedNodeMap attrs = elem.getAttributes();
+    for (int i = 0; i < attrs.getLength(); i++) {
+      Node attr = attrs.item(i);
+      map.put(attr.getNodeName(), attr.getNodeValue());
+    }
+    return map;
+  }
+
+  /**
+   * Returns the start tag of the given element, with its attributes
+   */
+  private static String formatStartTag(Element elem) {
+    StringBuilder sb = new StringBuilder("<").append(elem.getTagName());
+    for (Map.Entry<String, String> attr : getAttributes(elem).entrySet()) {
+      sb.append(' ').append(attr.getKey()).append("=\"");
+      String value = attr.getValue();
+      for (int i = 0; i < value.length(); i++) {
+	char c = value.charAt(i);
+	switch (c) {
+	case '&':  sb.append("&amp;"); break;
+	case '<':  sb.append("&lt;"); break;
+	case '"':  sb.append("&quot;"); break;
+	case '\t': sb.append("&#9;"); break;
+	case '\n': sb.append("&#10;"); break;
+	case '\r': sb.append("&#13;"); break;
+	default:   sb.append(c);
+	}
+      }
+      sb.append('"');
+    }
+    return sb.append('>').toString();
+  }
+
+  /**
+   * Returns the encoding named in the XML declaration of the given
+   * file contents, or UTF-8.
+   */
+  private static Charset getCharset(byte [] bytes) {
+    String head = new String(bytes, 0, Math.min(bytes.length, 200),
+			     StandardCharsets.ISO_8859_1);
+    Matcher m = ENCODING.matcher(head);
+    if (m.find()) {
+      try {
+	return Charset.forName(m.group(1));
+      } catch (IllegalArgumentException e) {}
+    }
+    return StandardCharsets.UTF_8;
+  }
+
   // Property change listeners
 
   public void addPropertyChangeListener(PropertyChangeListener l) {
@@ -1583,6 +1855,61 @@ public class RegattaIO {
     }
   }
 
+  /**
+   * Notifies the listeners of the section being loaded, as the given
+   * property, and of the progress so far, as the "progress" property
+   * with an <code>Integer</code> percentage.
+   *
+   * @param propName the name of the property for the message
+   * @param message the section being loaded
+   * @param percent the percentage of the file loaded so far
+   */
+  private void notifyProgress(String propName, String message, int percent) {
+    this.notifyListeners(propName, message);
+    this.notifyListeners("progress", new Integer(percent));
+  }
+
+  /**
+   * Reads a file, notifying the listeners of the "progress" property
+   * as it goes: from 0 at the start of the file, to the given
+   * percentage at its end.
+   */
+  private class ProgressInputStream extends FilterInputStream {
+    private long length, read;
+    private int scale, last;
+
+    private ProgressInputStream(File f, int scale) throws IOException {
+      super(new FileInputStream(f));
+      this.length = Math.max(1, f.length());
+      this.read = 0;
+      this.scale = scale;
+      this.last = -1;
+    }
+
+    public int read() throws IOException {
+      int c = super.read();
+      if (c >= 0)
+	this.advance(1);
+      return c;
+    }
+
+    public int read(byte [] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0)
+	this.advance(n);
+      return n;
+    }
+
+    private void advance(int n) {
+      this.read += n;
+      int percent = (int)(Math.min(this.read, this.length) * this.scale / this.length);
+      if (percent != this.last) {
+	this.last = percent;
+	notifyListeners("progress", new Integer(percent));
+      }
+    }
+  }
+
   /**
    * Updates the internal id-team, and team-element maps with the
    * teams found underneath the root element specified.
@@ -1635,6 +1962,54 @@ public class RegattaIO {
     }
   }
 
+  /**
+   * Updates the internal id-team map with the teams read by a
+   * <code>RegattaStreamReader</code>. There are no elements to map
+   * to: <code>rewriteFile</code> parses its own.
+   *
+   * @param teams the records of the "Teams" section, or
+   * <code>null</code> if missing
+   */
+  private void updateTeamMaps(List<Record> teams) {
+    this.idList = new ArrayList<String>();
+    this.teamList = new ArrayList<Team>();
+    this.elementList = new ArrayList<Element>();
+
+    if (teams == null) {
+      return;
+    }
+
+    for (Record team : teams) {
+      try {
+	String id    = team.getAttribute("id");
+	String lname = team.getContent("LongName");
+	String sname = team.getContent("ShortName");
+	if (sname == null) {
+	  sname = "";
+	}
+	if (id.length() == 0) {
+	  throw new IllegalArgumentException("ID missing for team " + lname);
+	}
+	String aff   = team.getAttribute("affiliate");
+	if (aff.length() == 0) {
+	  aff = "_MISC";
+	}
+
+	// Add team, if unique
+	Team t = new Team(lname.trim(), sname.trim());
+	if (!this.teamList.contains(t) &&
+	    !this.idList.contains(id)) {
+	  this.idList.add(id);
+	  this.teamList.add(t);
+	  t.setAffiliation(aff);
+	}
+      }
+      catch (IllegalArgumentException e) {
+	warnings.add(e.getMessage());
+      } catch (NullPointerException e) {}
+    }
+  }
+
   public static void main (String [] args) {
 
     RegattaIO io = new RegattaIO();
@@ -0,0 +1,1064 @@
+package edu.mit.techscore.tscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import edu.mit.techscore.regatta.Breakdown;
+import edu.mit.techscore.regatta.Breakdown.BreakdownType;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.FinishAdjustment;
+import edu.mit.techscore.regatta.MembershipDatabase;
+import edu.mit.techscore.regatta.MembershipDatabase.Membership;
+import edu.mit.techscore.regatta.Penalty;
+import edu.mit.techscore.regatta.Penalty.PenaltyType;
+import edu.mit.techscore.regatta.RP;
+import edu.mit.techscore.regatta.RP.BoatRole;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Regatta.RegattaScoring;
+import edu.mit.techscore.regatta.Regatta.RegattaType;
+import edu.mit.techscore.regatta.RegattaEvent;
+import edu.mit.techscore.regatta.RegattaEvent.RegattaEventType;
+import edu.mit.techscore.regatta.RegattaListener;
+import edu.mit.techscore.regatta.Rotation;
+import edu.mit.techscore.regatta.Sail;
+import edu.mit.techscore.regatta.Sailor;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.regatta.TeamPenalty;
+import edu.mit.techscore.regatta.TeamPenalty.TeamPenaltyType;
+
+/**
+ * A write-ahead journal of the changes made to a regatta since it
+ * was last saved to its file, so that they survive a crash. The
+ * journal of <i>regatta</i>.tsr is kept next to it, in
+ * <i>regatta</i>.tsr.journal.<p>
+ *
+ * The regatta is divided into units: its details, its races, its
+ * teams, the finishes (with penalties and breakdowns) and the
+ * rotation of each race, the team penalties of each division, the
+ * RP of each team, and the new members of each affiliation. Upon
+ * every {@link RegattaEvent}, the units which the event may have
+ * changed are written out as records, and those which differ from
+ * the last record of the unit are appended to the journal, as one
+ * group. The finishes are written out only for the races whose
+ * finishes were set or removed since (see
+ * {@link Regatta#addChangedRaceSet}), but for changes to the teams
+ * or races. Each record holds the whole state of its unit, so that
+ * replaying a record twice does no harm.<p>
+ *
+ * Records are lines of tab-separated fields, with tabs, newlines and
+ * backslashes escaped. A group ends with a line
+ * <code>C&lt;tab&gt;count&lt;tab&gt;crc</code>, holding the number of
+ * records in the group and the CRC-32 of their bytes; a group
+ * without it, torn by a crash, is ignored. Groups are written and
+ * forced to disk by a thread of their own, as many at a time as are
+ * waiting.<p>
+ *
+ * After {@link #COMPACT_GROUPS} groups, the journal is compacted:
+ * it is set aside, in <i>regatta</i>.tsr.journal.old, and a
+ * {@link Regatta#snapshot} of the regatta is written in the
+ * background to a checkpoint, <i>regatta</i>.tsr.checkpoint,
+ * through a temporary file which then replaces it. Only then is the
+ * old journal deleted. The regatta file itself is only written when
+ * the regatta is saved, which deletes the checkpoint; discarding the
+ * changes deletes it as well, leaving the file as last saved. When a
+ * regatta file is opened, it is read from the checkpoint, if any
+ * (see {@link #getRecoveryFile}), and {@link #replay} applies both
+ * journals, if any, on top of it.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 18:12:05 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class RegattaJournal implements RegattaListener {
+
+  /**
+   * The number of groups after which the journal is compacted into
+   * the regatta file
+   */
+  public static final int COMPACT_GROUPS = 100;
+
+  // The units, in the order in which their records are written
+  private static final String ALL_UNITS = "DRTNSFPQM";
+
+  private final File file, journalFile, oldFile, tmpFile;
+  private final File checkpointFile, checkpointTmpFile;
+  private final Regatta regatta;
+
+  // The last record of each unit, and the number of groups since the
+  // last compaction, used on the event thread only
+  private Map<String, String> shadow;
+  private int groups;
+
+  // The races whose finishes were set or removed since their records
+  // were last written, kept up to date by the regatta
+  private final Set<Race> changedRaces;
+
+  // Groups (byte arrays) and steps waiting for the writer thread
+  private final List<Object> queue;
+  private boolean draining;
+  private final ExecutorService writer, compactor;
+  private FileChannel channel;
+  private volatile boolean compacting;
+
+  // Guards the regatta file, and counts the saves made to it, so that
+  // a compaction which is overtaken by a save is dropped
+  private final Object fileLock;
+  private int generation;
+
+  /**
+   * Starts a journal for the given regatta, as saved in the given
+   * file (and replayed from any journal already there). The
+   * regatta's events must be delivered on the thread which changes
+   * it.
+   *
+   * @param file the regatta file
+   * @param reg the regatta
+   * @throws IOException if the journal cannot be opened
+   */
+  public RegattaJournal(File file, Regatta reg) throws IOException {
+    this.file = file;
+    this.journalFile = getJournalFile(file);
+    this.oldFile = new File(file.getPath() + ".journal.old");
+    this.tmpFile = new File(file.getPath() + ".tmp");
+    this.checkpointFile = getCheckpointFile(file);
+    this.checkpointTmpFile = new File(this.checkpointFile.getPath() + ".tmp");
+    this.regatta = reg;
+    this.queue = new ArrayList<Object>();
+    this.fileLock = new Object();
+
+    this.changedRaces = new TreeSet<Race>();
+    this.shadow = new HashMap<String, String>();
+    this.shadow.putAll(this.records(ALL_UNITS, null));
+    this.channel = openJournal(this.journalFile);
+    this.writer = Executors.newSingleThreadExecutor(new Daemon("Regatta journal"));
+    this.compactor = Executors.newSingleThreadExecutor(new Daemon("Regatta compaction"));
+    reg.addChangedRaceSet(this.changedRaces);
+    reg.addRegattaListener(this);
+  }
+
+  /**
+   * Returns the journal of the given regatta file.
+   *
+   * @param file the regatta file
+   * @return the journal file, which may not exist
+   */
+  public static File getJournalFile(File file) {
+    return new File(file.getPath() + ".journal");
+  }
+
+  /**
+   * Returns the checkpoint of the given regatta file, into which the
+   * journal is compacted until the regatta is saved.
+   *
+   * @param file the regatta file
+   * @return the checkpoint file, which may not exist
+   */
+  public static File getCheckpointFile(File file) {
+    return new File(file.getPath() + ".checkpoint");
+  }
+
+  /**
+   * Returns the file from which to read the given regatta file, to
+   * which its journal is then applied: its checkpoint, if a
+   * compaction left one, or else the file itself.
+   *
+   * @param file the regatta file
+   * @return the file to read
+   */
+  public static File getRecoveryFile(File file) {
+    File checkpoint = getCheckpointFile(file);
+    return checkpoint.exists() ? checkpoint : file;
+  }
+
+  // Implementation of RegattaListener
+
+  /**
+   * Appends the units changed by the event to the journal
+   */
+  public void regattaChange(RegattaEvent evt) {
+    RegattaEventType type = evt.getChangeType();
+    String units = getUnits(type);
+    if (units == null)
+      return;
+
+    // The races whose finishes to write out: all of them, if the
+    // teams or races changed
+    Set<Race> races = null;
+    if (type != RegattaEventType.RACE && type != RegattaEventType.TEAM)
+      races = new TreeSet<Race>(this.changedRaces);
+    if (units.indexOf('F') >= 0)
+      this.changedRaces.clear();
+
+    StringBuilder group = new StringBuilder();
+    int count = 0;
+    for (Map.Entry<String, String> entry : this.records(units, races).entrySet()) {
+      String record = entry.getValue();
+      if (!record.equals(this.shadow.put(entry.getKey(), record))) {
+	group.append(record).append('\n');
+	count++;
+      }
+    }
+    if (count == 0)
+      return;
+
+    byte [] bytes = group.toString().getBytes(StandardCharsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    String commit = "C\t" + count + "\t" + Long.toHexString(crc.getValue()) + "\n";
+    ByteBuffer buf = ByteBuffer.allocate(bytes.length + commit.length());
+    buf.put(bytes).put(commit.getBytes(StandardCharsets.UTF_8));
+    this.enqueue(buf.array());
+
+    if (++this.groups >= COMPACT_GROUPS && !this.compacting)
+      this.compact();
+  }
+
+  /**
+   * Returns the units which may be changed by events of the given
+   * type, or null if none.
+   */
+  private static String getUnits(RegattaEventType type) {
+    switch (type) {
+    case DETAILS:
+    case NAME:
+    case SCORING:
+      return "D";
+    case RACE:
+    case TEAM:
+      return ALL_UNITS;
+    case FINISH:
+      return "FP";
+    case ROTATION:
+      return "NS";
+    case RP:
+      // Sailors may be added to the database from the RP form
+      return "QM";
+    case RP_DATA:
+      return "M";
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Saves the regatta to its file now, e.g. at the user's request,
+   * through a temporary file, and empties the journal and deletes
+   * the checkpoint. Only the
+   * sections of the file affected by the regatta's changes are
+   * rewritten, and those changes are then cleared.
+   *
+   * @param io the writer to use, whose errors are kept
+   * @return <code>true</code> upon success
+   */
+  public boolean save(RegattaIO io) {
+    Set<RegattaEventType> changes = this.regatta.getChanges();
+    synchronized (this.fileLock) {
+      if (!io.rewriteFile(this.regatta, this.file, this.tmpFile, changes) ||
+	  !replaceFile(this.tmpFile, this.file))
+	return false;
+      this.generation++;
+      this.checkpointFile.delete();
+    }
+    this.regatta.clearChanges(changes);
+    this.groups = 0;
+    this.enqueue(new Step() {
+	public void run() throws IOException {
+	  channel.truncate(0);
+	  channel.force(true);
+	  oldFile.delete();
+	}
+      });
+    return true;
+  }
+
+  /**
+   * Sets the journal aside, and writes a snapshot of the regatta to
+   * its checkpoint in the background.
+   */
+  private void compact() {
+    this.compacting = true;
+    this.groups = 0;
+    final Regatta snapshot = this.regatta.snapshot();
+    final int gen;
+    synchronized (this.fileLock) {
+      gen = this.generation;
+    }
+    this.enqueue(new Step() {
+	public void run() throws IOException {
+	  roll();
+	  compactor.execute(new Runnable() {
+	      public void run() {
+		try {
+		  writeSnapshot(snapshot, gen);
+		} finally {
+		  compacting = false;
+		}
+	      }
+	    });
+	}
+      });
+  }
+
+  /**
+   * Moves the journal aside, onto the end of the old journal if a
+   * previous compaction left one, and starts an empty one.
+   */
+  private void roll() throws IOException {
+    this.channel.force(true);
+    if (!this.oldFile.exists()) {
+      this.channel.close();
+      Files.move(this.journalFile.toPath(), this.oldFile.toPath(),
+		 StandardCopyOption.ATOMIC_MOVE);
+      this.channel = openJournal(this.journalFile);
+      return;
+    }
+    FileChannel old = FileChannel.open(this.oldFile.toPath(),
+				       StandardOpenOption.WRITE,
+				       StandardOpenOption.APPEND);
+    try {
+      this.channel.position(0);
+      long size = this.channel.size();
+      for (long done = 0; done < size; ) {
+	done += this.channel.transferTo(done, size - done, old);
+      }
+      old.force(true);
+    } finally {
+      old.close();
+    }
+    this.channel.truncate(0);
+    this.channel.force(true);
+  }
+
+  /**
+   * Writes the snapshot to the checkpoint, in the layout of the
+   * regatta file, unless the regatta has been saved or its changes
+   * discarded since the snapshot was taken
+   */
+  private void writeSnapshot(Regatta snapshot, int gen) {
+    RegattaIO io = new RegattaIO();
+    if (!io.rewriteFile(snapshot, this.file, this.checkpointTmpFile)) {
+      System.err.println("Unable to compact journal: " +
+			 Factory.implode(io.getErrors(), "; "));
+      this.checkpointTmpFile.delete();
+      return;
+    }
+    synchronized (this.fileLock) {
+      if (gen != this.generation ||
+	  !replaceFile(this.checkpointTmpFile, this.checkpointFile)) {
+	this.checkpointTmpFile.delete();
+	return;
+      }
+      this.oldFile.delete();
+    }
+  }
+
+  /**
+   * Forces the given temporary file to disk, and moves it over the
+   * given file
+   */
+  private static boolean replaceFile(File tmpFile, File file) {
+    try {
+      FileChannel tmp = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE);
+      try {
+	tmp.force(true);
+      } finally {
+	tmp.close();
+      }
+      Files.move(tmpFile.toPath(), file.toPath(),
+		 StandardCopyOption.ATOMIC_MOVE,
+		 StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    } catch (IOException e) {
+      System.err.println("Unable to replace " + file + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Stops journaling, once the waiting groups have been written. A
+   * compaction under way is left to finish.
+   *
+   */
+  public void close() {
+    this.regatta.removeRegattaListener(this);
+    this.regatta.removeChangedRaceSet(this.changedRaces);
+    this.enqueue(new Step() {
+	public void run() throws IOException {
+	  channel.close();
+	}
+      });
+    this.writer.shutdown();
+    this.compactor.shutdown();
+    try {
+      this.writer.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {}
+  }
+
+  /**
+   * Stops journaling and deletes the journal and the checkpoint,
+   * dropping every change made since the regatta was last saved, e.g.
+   * when the user chooses not to save them. The regatta file is left
+   * as it was last saved.
+   *
+   */
+  public void discard() {
+    synchronized (this.fileLock) {
+      this.generation++;
+    }
+    this.close();
+    delete(this.file);
+  }
+
+  /**
+   * Deletes the journal and checkpoint of the given regatta file, if
+   * any, e.g. when the file is written anew.
+   *
+   * @param file the regatta file
+   */
+  public static void delete(File file) {
+    getJournalFile(file).delete();
+    new File(file.getPath() + ".journal.old").delete();
+    getCheckpointFile(file).delete();
+  }
+
+  // Writer thread
+
+  /**
+   * Something the writer thread does, in order with the groups
+   */
+  private interface Step {
+    void run() throws IOException;
+  }
+
+  private void enqueue(Object item) {
+    synchronized (this.queue) {
+      this.queue.add(item);
+      if (this.draining)
+	return;
+      this.draining = true;
+    }
+    try {
+      this.writer.execute(new Runnable() {
+	  public void run() {
+	    drain();
+	  }
+	});
+    } catch (java.util.concurrent.RejectedExecutionException e) {
+      System.err.println("Journal closed: change not recorded.");
+    }
+  }
+
+  /**
+   * Writes every group waiting, and forces them to disk at once
+   */
+  private void drain() {
+    List<Object> items;
+    synchronized (this.queue) {
+      items = new ArrayList<Object>(this.queue);
+      this.queue.clear();
+      this.draining = false;
+    }
+    try {
+      boolean unforced = false;
+      for (Object item : items) {
+	if (item instanceof byte []) {
+	  ByteBuffer buf = ByteBuffer.wrap((byte [])item);
+	  while (buf.hasRemaining())
+	    this.channel.write(buf);
+	  unforced = true;
+	}
+	else {
+	  if (unforced)
+	    this.channel.force(false);
+	  unforced = false;
+	  ((Step)item).run();
+	}
+      }
+      if (unforced)
+	this.channel.force(false);
+    } catch (IOException e) {
+      System.err.println("Unable to write journal: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Opens the journal for appending, after the last complete group
+   */
+  private static FileChannel openJournal(File f) throws IOException {
+    long length = f.exists() ? readGroups(f, null) : 0;
+    FileChannel ch = FileChannel.open(f.toPath(),
+				      StandardOpenOption.CREATE,
+				      StandardOpenOption.WRITE,
+				      StandardOpenOption.READ);
+    if (ch.size() > length)
+      ch.truncate(length);
+    ch.position(length);
+    return ch;
+  }
+
+  private static class Daemon implements ThreadFactory {
+    private String name;
+    private Daemon(String name) {
+      this.name = name;
+    }
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, this.name);
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
+  // Records
+
+  /**
+   * Returns the record of each of the given units, in order, by key,
+   * with the finishes of the given races only, or of every race if
+   * <code>null</code>
+   */
+  private Map<String, String> records(String units, Set<Race> finished) {
+    Map<String, String> map = new LinkedHashMap<String, String>();
+    Regatta reg = this.regatta;
+    Team [] teams = reg.getTeams();
+    Race [] races = (reg.getNumRaces() == 0) ? new Race [0] : reg.getRaces();
+    Division [] divs = reg.getDivisions();
+    List<Race> finishRaces = Arrays.asList(races);
+    if (finished != null) {
+      // Those still in the regatta
+      Set<Division> divSet = EnumSet.noneOf(Division.class);
+      divSet.addAll(Arrays.asList(divs));
+      finishRaces = new ArrayList<Race>();
+      for (Race race : finished) {
+	if (race.getNumber() <= reg.getNumRaces() &&
+	    divSet.contains(race.getDivision()))
+	  finishRaces.add(race);
+      }
+    }
+    Rotation rot = reg.getRotation();
+    RP rp = reg.getRP();
+
+    for (int u = 0; u < ALL_UNITS.length(); u++) {
+      char unit = ALL_UNITS.charAt(u);
+      if (units.indexOf(unit) < 0)
+	continue;
+      List<Object> rec = new ArrayList<Object>();
+      switch (unit) {
+      case 'D':
+	rec.add("D");
+	rec.add(reg.getName());
+	rec.add(reg.getType().name());
+	rec.add(reg.getScoring().name());
+	rec.add(new Long(reg.getStartTime().getTime()));
+	rec.add(new Integer(reg.getDuration()));
+	for (Map.Entry<Date, String> blurb : reg.getBlurbs().entrySet()) {
+	  rec.add(new Long(blurb.getKey().getTime()));
+	  rec.add(blurb.getValue());
+	}
+	map.put("D", format(rec));
+	break;
+
+      case 'R':
+	map.put("R", "R\t" + reg.getNumDivisions() + "\t" + reg.getNumRaces());
+	break;
+
+      case 'T':
+	rec.add("T");
+	for (Team team : teams) {
+	  rec.add(team.getLongname());
+	  rec.add(team.getShortname());
+	  rec.add(team.getAffiliation());
+	}
+	map.put("T", format(rec));
+	break;
+
+      case 'N':
+	map.put("N", (rot == null) ? "N\t0" : "N\t1");
+	break;
+
+      case 'S':
+	for (Race race : races) {
+	  rec.clear();
+	  rec.add("S");
+	  rec.add(race);
+	  for (Team team : teams) {
+	    Sail sail = (rot == null) ? null : rot.getSail(race, team);
+	    if (sail != null) {
+	      rec.add(team.getLongname());
+	      rec.add(team.getShortname());
+	      rec.add(sail);
+	    }
+	  }
+	  map.put("S" + race, format(rec));
+	}
+	break;
+
+      case 'F':
+	for (Race race : finishRaces) {
+	  rec.clear();
+	  rec.add("F");
+	  rec.add(race);
+	  for (Team team : teams) {
+	    Finish f = reg.getFinish(race, team);
+	    if (f == null)
+	      continue;
+	    rec.add(team.getLongname());
+	    rec.add(team.getShortname());
+	    rec.add(new Long(f.getTimestamp().getTime()));
+	    FinishAdjustment adj = f.getAdjustment();
+	    if (adj == null) {
+	      rec.add("");
+	      rec.add("");
+	      rec.add("");
+	      rec.add("");
+	    }
+	    else {
+	      rec.add((adj instanceof Penalty) ? "P" : "B");
+	      rec.add(adj.getType().name());
+	      rec.add(adj.getComments());
+	      rec.add((adj instanceof Breakdown) ?
+		      String.valueOf(((Breakdown)adj).getHandicap()) : "");
+	    }
+	  }
+	  map.put("F" + race, format(rec));
+	}
+	break;
+
+      case 'P':
+	for (Division div : divs) {
+	  rec.clear();
+	  rec.add("P");
+	  rec.add(div.name());
+	  for (Team team : teams) {
+	    TeamPenalty pen = reg.getTeamPenalty(div, team);
+	    if (pen != null) {
+	      rec.add(team.getLongname());
+	      rec.add(team.getShortname());
+	      rec.add(pen.getType().name());
+	      rec.add(pen.getComments());
+	    }
+	  }
+	  map.put("P" + div, format(rec));
+	}
+	break;
+
+      case 'Q':
+	// As in the regatta file
+	for (Team team : teams) {
+	  rec.clear();
+	  rec.add("Q");
+	  rec.add(team.getLongname());
+	  rec.add(team.getShortname());
+	  for (Division div : divs) {
+	    for (BoatRole role : BoatRole.values()) {
+	      for (Sailor sailor : rp.getSailors(team, div, role)) {
+		rec.add(div.name());
+		rec.add(role.name());
+		rec.add(sailor.getID());
+		rec.add(sailor.getName());
+		rec.add(formatYear(sailor.getYear()));
+		rec.add(Factory.formatList(rp.getRaces(team, sailor, role)));
+	      }
+	    }
+	  }
+	  map.put("Q" + team.getLongname() + "\t" + team.getShortname(), format(rec));
+	}
+	break;
+
+      case 'M':
+	MembershipDatabase db = rp.getDatabase();
+	for (String aff : db.getAffiliations()) {
+	  rec.clear();
+	  rec.add("M");
+	  rec.add(aff);
+	  for (Membership member : db.getMembers(aff)) {
+	    if (member.isNew()) {
+	      rec.add(member.getID());
+	      rec.add(member.getName());
+	      rec.add(formatYear(member.getYear()));
+	    }
+	  }
+	  map.put("M" + aff, format(rec));
+	}
+	break;
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Joins the fields with tabs, escaping them. Missing fields, such as
+   * comments, are empty.
+   */
+  private static String format(List<Object> fields) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fields.size(); i++) {
+      if (i > 0)
+	sb.append('\t');
+      Object field = fields.get(i);
+      String s = (field == null) ? "" : field.toString();
+      for (int c = 0; c < s.length(); c++) {
+	char chr = s.charAt(c);
+	switch (chr) {
+	case '\\': sb.append("\\\\"); break;
+	case '\t': sb.append("\\t"); break;
+	case '\n': sb.append("\\n"); break;
+	case '\r': sb.append("\\r"); break;
+	default:   sb.append(chr);
+	}
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Sailors are told apart by the year alone, as in the regatta file
+   */
+  private static String formatYear(Date year) {
+    if (year == null)
+      return "";
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(year);
+    return String.valueOf(cal.get(Calendar.YEAR));
+  }
+
+  private static Date parseYear(String year) {
+    if (year.length() == 0)
+      return null;
+    Calendar cal = Calendar.getInstance();
+    cal.set(Calendar.YEAR, Integer.parseInt(year));
+    return cal.getTime();
+  }
+
+  private static String [] parse(String line) {
+    String [] fields = line.split("\t", -1);
+    for (int i = 0; i < fields.length; i++) {
+      String s = fields[i];
+      if (s.indexOf('\\') < 0)
+	continue;
+      StringBuilder sb = new StringBuilder(s.length());
+      for (int c = 0; c < s.length(); c++) {
+	char chr = s.charAt(c);
+	if (chr == '\\' && c + 1 < s.length()) {
+	  chr = s.charAt(++c);
+	  if (chr == 't') chr = '\t';
+	  else if (chr == 'n') chr = '\n';
+	  else if (chr == 'r') chr = '\r';
+	}
+	sb.append(chr);
+      }
+      fields[i] = sb.toString();
+    }
+    return fields;
+  }
+
+  // Replay
+
+  /**
+   * Applies the journal of the given regatta file, if any, to the
+   * regatta just read from its {@link #getRecoveryFile}. Records
+   * which cannot be applied are skipped. If the regatta was read from
+   * the checkpoint, every part of it may differ from the regatta
+   * file, and is marked as changed.
+   *
+   * @param file the regatta file
+   * @param reg the regatta read from it
+   * @return the number of groups of changes applied, counting the
+   * checkpoint as one
+   */
+  public static int replay(File file, Regatta reg) {
+    boolean checkpoint = getCheckpointFile(file).exists();
+    List<List<String>> groups = new ArrayList<List<String>>();
+    File old = new File(file.getPath() + ".journal.old");
+    try {
+      if (old.exists())
+	readGroups(old, groups);
+      File journal = getJournalFile(file);
+      if (journal.exists())
+	readGroups(journal, groups);
+    } catch (IOException e) {
+      System.err.println("Unable to read journal: " + e.getMessage());
+    }
+
+    Map<String, Team> teams = null;
+    Set<RegattaEventType> changes = EnumSet.noneOf(RegattaEventType.class);
+    if (checkpoint)
+      changes.addAll(EnumSet.allOf(RegattaEventType.class));
+    for (List<String> group : groups) {
+      for (String line : group) {
+	String [] fields = parse(line);
+	if (teams == null) {
+	  teams = new HashMap<String, Team>();
+	  for (Team team : reg.getTeams())
+	    teams.put(team.getLongname() + "\t" + team.getShortname(), team);
+	}
+	try {
+	  apply(reg, fields, teams);
+	  changes.add(getType(fields[0].charAt(0)));
+	} catch (RuntimeException e) {
+	  System.err.println("Journal record ignored (" + e + "): " + line);
+	}
+	if (fields[0].equals("T"))
+	  teams = null;
+      }
+    }
+    // As the panes do, once the regatta is changed
+    for (RegattaEventType type : changes)
+      reg.fireRegattaChange(new RegattaEvent(reg, type, RegattaJournal.class));
+    return groups.size() + (checkpoint ? 1 : 0);
+  }
+
+  /**
+   * Returns the type of change made by records of the given unit
+   */
+  private static RegattaEventType getType(char unit) {
+    switch (unit) {
+    case 'D': return RegattaEventType.DETAILS;
+    case 'R': return RegattaEventType.RACE;
+    case 'T': return RegattaEventType.TEAM;
+    case 'N':
+    case 'S': return RegattaEventType.ROTATION;
+    case 'F':
+    case 'P': return RegattaEventType.FINISH;
+    case 'Q': return RegattaEventType.RP;
+    default:  return RegattaEventType.RP_DATA;
+    }
+  }
+
+  /**
+   * Reads the complete groups of the given journal into the given
+   * list, if any, and returns the length of the file up to the end
+   * of the last one.
+   */
+  private static long readGroups(File f, List<List<String>> groups)
+    throws IOException {
+    byte [] bytes = Files.readAllBytes(f.toPath());
+    long valid = 0;
+    int groupStart = 0;
+    List<String> lines = new ArrayList<String>();
+    int start = 0;
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] != '\n')
+	continue;
+      String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+      if (line.startsWith("C\t")) {
+	String [] commit = line.split("\t");
+	CRC32 crc = new CRC32();
+	crc.update(bytes, groupStart, start - groupStart);
+	try {
+	  if (commit.length != 3 ||
+	      Integer.parseInt(commit[1]) != lines.size() ||
+	      Long.parseLong(commit[2], 16) != crc.getValue())
+	    break;
+	} catch (NumberFormatException e) {
+	  break;
+	}
+	if (groups != null)
+	  groups.add(lines);
+	lines = new ArrayList<String>();
+	valid = i + 1;
+	groupStart = i + 1;
+      }
+      else {
+	lines.add(line);
+      }
+      start = i + 1;
+    }
+    return valid;
+  }
+
+  private static Team getTeam(Map<String, Team> teams, String l, String s) {
+    Team team = teams.get(l + "\t" + s);
+    if (team == null)
+      throw new IllegalArgumentException("Unknown team " + l);
+    return team;
+  }
+
+  private static Race getRace(Regatta reg, String race) {
+    int len = race.length();
+    return reg.getRace(Factory.parseDivision(race.charAt(len - 1)),
+		       Integer.parseInt(race.substring(0, len - 1)));
+  }
+
+  private static Date getDate(String millis) {
+    return (millis.length() == 0) ? null : new Date(Long.parseLong(millis));
+  }
+
+  /**
+   * Applies one record to the regatta
+   */
+  private static void apply(Regatta reg, String [] f, Map<String, Team> teams) {
+    char unit = f[0].charAt(0);
+    switch (unit) {
+    case 'D':
+      reg.setName(f[1]);
+      reg.setType(RegattaType.valueOf(f[2]));
+      reg.setScoring(RegattaScoring.valueOf(f[3]));
+      reg.setStartTime(getDate(f[4]));
+      reg.setDuration(Integer.parseInt(f[5]));
+      for (int i = 6; i + 1 < f.length; i += 2)
+	reg.setBlurb(getDate(f[i]), f[i + 1]);
+      break;
+
+    case 'R':
+      int divs = Integer.parseInt(f[1]);
+      int races = Integer.parseInt(f[2]);
+      if (reg.getNumRaces() == 0)
+	reg.createRaces(divs, races);
+      else {
+	reg.updateRaces(races);
+	reg.updateDivisions(divs);
+      }
+      break;
+
+    case 'T':
+      Map<String, String []> wanted = new LinkedHashMap<String, String []>();
+      for (int i = 1; i + 2 < f.length; i += 3)
+	wanted.put(f[i] + "\t" + f[i + 1], new String [] {f[i], f[i + 1], f[i + 2]});
+      List<Team> unmatched = new ArrayList<Team>();
+      for (Team team : reg.getTeams()) {
+	String [] t = wanted.remove(team.getLongname() + "\t" + team.getShortname());
+	if (t == null)
+	  unmatched.add(team);
+	else
+	  team.setAffiliation(t[2]);
+      }
+      // The teams left over on both sides were renamed, in order
+      List<String []> added = new ArrayList<String []>(wanted.values());
+      int renamed = Math.min(unmatched.size(), added.size());
+      for (int i = 0; i < renamed; i++) {
+	String [] t = added.get(i);
+	reg.setTeamName(unmatched.get(i), t[0], t[1]);
+	unmatched.get(i).setAffiliation(t[2]);
+      }
+      for (int i = renamed; i < unmatched.size(); i++)
+	reg.removeTeam(unmatched.get(i));
+      for (int i = renamed; i < added.size(); i++) {
+	String [] t = added.get(i);
+	Team team = new Team(t[0], t[1]);
+	team.setAffiliation(t[2]);
+	reg.addTeam(team);
+      }
+      break;
+
+    case 'N':
+      if (f[1].equals("0"))
+	reg.setRotation(null);
+      else if (reg.getRotation() == null)
+	reg.setRotation(new Rotation());
+      break;
+
+    case 'S': {
+      Race race = getRace(reg, f[1]);
+      Rotation rot = reg.getRotation();
+      if (rot == null) {
+	if (f.length <= 2)
+	  return;
+	reg.setRotation(rot = new Rotation());
+      }
+      rot.removeRace(race);
+      for (int i = 2; i + 2 < f.length; i += 3)
+	rot.setSail(race, getTeam(teams, f[i], f[i + 1]), new Sail(f[i + 2]));
+      break;
+    }
+
+    case 'F': {
+      Race race = getRace(reg, f[1]);
+      reg.removeFinishes(race);
+      for (int i = 2; i + 6 < f.length; i += 7) {
+	Finish finish = new Finish(race, getTeam(teams, f[i], f[i + 1]), getDate(f[i + 2]));
+	if (f[i + 3].equals("P"))
+	  finish.setPenalty(new Penalty(PenaltyType.valueOf(f[i + 4]), f[i + 5]));
+	else if (f[i + 3].equals("B"))
+	  finish.setBreakdown(new Breakdown(BreakdownType.valueOf(f[i + 4]), f[i + 5],
+					    Integer.parseInt(f[i + 6])));
+	reg.setFinish(finish);
+      }
+      break;
+    }
+
+    case 'P': {
+      Division div = Division.valueOf(f[1]);
+      for (Team team : reg.getTeams())
+	reg.removeTeamPenalty(div, team);
+      for (int i = 2; i + 3 < f.length; i += 4)
+	reg.setTeamPenalty(new TeamPenalty(div, getTeam(teams, f[i], f[i + 1]),
+					   TeamPenaltyType.valueOf(f[i + 2]),
+					   f[i + 3]));
+      break;
+    }
+
+    case 'Q': {
+      Team team = getTeam(teams, f[1], f[2]);
+      RP rp = reg.getRP();
+      rp.resetTeam(team);
+      for (int i = 3; i + 5 < f.length; i += 6) {
+	Division div = Division.valueOf(f[i]);
+	List<Race> list = new ArrayList<Race>();
+	for (Integer num : Factory.parseList(f[i + 5]))
+	  list.add(reg.getRace(div, num.intValue()));
+	rp.addSailorRaces(team,
+			  new Sailor(f[i + 2], f[i + 3], parseYear(f[i + 4])),
+			  list,
+			  BoatRole.valueOf(f[i + 1]));
+      }
+      break;
+    }
+
+    case 'M': {
+      MembershipDatabase db = reg.getRP().getDatabase();
+      Map<String, Membership> members = new LinkedHashMap<String, Membership>();
+      for (int i = 2; i + 2 < f.length; i += 3)
+	members.put(f[i], new Membership(f[i], f[i + 1], parseYear(f[i + 2]), true));
+      for (Membership member : db.getMembers(f[1])) {
+	if (member.isNew() && !members.containsKey(member.getID()))
+	  db.unsetMember(f[1], member);
+      }
+      for (Membership member : members.values())
+	db.setMember(f[1], member);
+      break;
+    }
+
+    default:
+      throw new IllegalArgumentException("Unknown record");
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package edu.mit.techscore.tscore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the text of a regatta file into its top-level sections, the
+ * children of the root element, so that some of them can be replaced
+ * while the rest of the text is kept exactly as it was. The text is
+ * expected to be well-formed: it is only scanned for tags, comments,
+ * processing instructions and CDATA, and not checked.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 19:20:41 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+class RegattaSections {
+
+  private final String text;
+  private String rootName, rootTag, rootEnd;
+  private int rootStart, contentStart, contentEnd;
+
+  // The name, start and end of each section, in order
+  private final List<String> names;
+  private final List<int []> ranges;
+
+  /**
+   * Splits the given text.
+   *
+   * @param text the text of a regatta file
+   * @throws IllegalArgumentException if there is no root element, or
+   * it does not end
+   */
+  RegattaSections(String text) {
+    this.text = text;
+    this.names = new ArrayList<String>();
+    this.ranges = new ArrayList<int []>();
+
+    // Prologue: declaration, comments and doctype
+    int pos = this.skipMarkup(0);
+    while (pos < 0) {
+      pos = this.skipMarkup(-pos);
+    }
+    if (pos >= text.length())
+      throw new IllegalArgumentException("No root element.");
+    this.rootStart = pos;
+    int tagEnd = this.findTagEnd(pos);
+    this.rootName = this.getTagName(pos);
+    this.contentStart = tagEnd;
+    if (text.charAt(tagEnd - 2) == '/') {
+      // Empty root element
+      this.rootTag = text.substring(pos, tagEnd - 2) + ">";
+      this.contentEnd = tagEnd;
+      this.rootEnd = "</" + this.rootName + ">" + text.substring(tagEnd);
+      return;
+    }
+    this.rootTag = text.substring(pos, tagEnd);
+
+    // Children, up to the end tag of the root
+    pos = tagEnd;
+    while (true) {
+      int next = this.skipMarkup(pos);
+      if (next < 0) {
+	pos = -next;
+	continue;
+      }
+      if (next >= text.length())
+	throw new IllegalArgumentException("Root element does not end.");
+      if (text.startsWith("</", next)) {
+	this.contentEnd = next;
+	this.rootEnd = text.substring(next);
+	return;
+      }
+      int end = this.findElementEnd(next);
+      this.names.add(this.getTagName(next));
+      this.ranges.add(new int [] {next, end});
+      pos = end;
+    }
+  }
+
+  /**
+   * Returns the position of the next tag at or after the given
+   * position, or, if a comment, processing instruction, doctype or
+   * CDATA section comes first, the negated position after it.
+   */
+  private int skipMarkup(int pos) {
+    int lt = this.text.indexOf('<', pos);
+    if (lt < 0)
+      return this.text.length();
+    if (this.text.startsWith("<!--", lt))
+      return -this.indexAfter("-->", lt);
+    if (this.text.startsWith("<![CDATA[", lt))
+      return -this.indexAfter("]]>", lt);
+    if (this.text.startsWith("<?", lt))
+      return -this.indexAfter("?>", lt);
+    if (this.text.startsWith("<!", lt)) {
+      // Doctype, with a possible internal subset
+      int bracket = this.text.indexOf('[', lt);
+      int gt = this.text.indexOf('>', lt);
+      if (bracket >= 0 && bracket < gt)
+	return -this.indexAfter("]>", bracket);
+      return -this.indexAfter(">", lt);
+    }
+    return lt;
+  }
+
+  private int indexAfter(String token, int pos) {
+    int i = this.text.indexOf(token, pos);
+    if (i < 0)
+      throw new IllegalArgumentException("Unterminated markup.");
+    return i + token.length();
+  }
+
+  /**
+   * Returns the position after the tag which starts at the given one,
+   * skipping quoted attribute values
+   */
+  private int findTagEnd(int pos) {
+    char quote = 0;
+    for (int i = pos + 1; i < this.text.length(); i++) {
+      char c = this.text.charAt(i);
+      if (quote != 0) {
+	if (c == quote)
+	  quote = 0;
+      }
+      else if (c == '"' || c == '\'')
+	quote = c;
+      else if (c == '>')
+	return i + 1;
+    }
+    throw new IllegalArgumentException("Unterminated tag.");
+  }
+
+  /**
+   * Returns the position after the element which starts at the given
+   * one
+   */
+  private int findElementEnd(int pos) {
+    int depth = 0;
+    while (true) {
+      int next = this.skipMarkup(pos);
+      if (next < 0) {
+	pos = -next;
+	continue;
+      }
+      if (next >= this.text.length())
+	throw new IllegalArgumentException("Element does not end.");
+      int end = this.findTagEnd(next);
+      if (this.text.startsWith("</", next))
+	depth--;
+      else if (this.text.charAt(end - 2) != '/')
+	depth++;
+      if (depth == 0)
+	return end;
+      pos = end;
+    }
+  }
+
+  private String getTagName(int pos) {
+    int i = pos + 1;
+    while (i < this.text.length()) {
+      char c = this.text.charAt(i);
+      if (Character.isWhitespace(c) || c == '/' || c == '>')
+	break;
+      i++;
+    }
+    return this.text.substring(pos + 1, i);
+  }
+
+  /**
+   * Returns the text before the root element.
+   *
+   * @return the declaration, doctype and comments, if any
+   */
+  String getPrologue() {
+    return this.text.substring(0, this.rootStart);
+  }
+
+  /**
+   * Returns the start tag of the root element, never an empty
+   * element tag.
+   *
+   * @return the start tag
+   */
+  String getRootTag() {
+    return this.rootTag;
+  }
+
+  /**
+   * Returns the name of the root element.
+   *
+   * @return the name
+   */
+  String getRootName() {
+    return this.rootName;
+  }
+
+  /**
+   * Returns the end tag of the root element, and the text after it.
+   *
+   * @return the end of the text
+   */
+  String getRootEnd() {
+    return this.rootEnd;
+  }
+
+  /**
+   * Returns the number of sections.
+   *
+   * @return the number of children of the root element
+   */
+  int size() {
+    return this.names.size();
+  }
+
+  /**
+   * Returns the tag name of the given section.
+   *
+   * @param i the index of the section
+   * @return the name of its element
+   */
+  String getName(int i) {
+    return this.names.get(i);
+  }
+
+  /**
+   * Returns the text of the given section.
+   *
+   * @param i the index of the section
+   * @return its element, from start tag to end tag
+   */
+  String getSection(int i) {
+    int [] range = this.ranges.get(i);
+    return this.text.substring(range[0], range[1]);
+  }
+
+  /**
+   * Returns the given section without its content: its start tag, as
+   * an empty element tag.
+   *
+   * @param i the index of the section
+   * @return the element, with its attributes but no children
+   */
+  String getEmptySection(int i) {
+    int start = this.ranges.get(i)[0];
+    String tag = this.text.substring(start, this.findTagEnd(start));
+    if (tag.endsWith("/>"))
+      return tag;
+    return tag.substring(0, tag.length() - 1) + "/>";
+  }
+
+  /**
+   * Returns the text before the given section, after the previous
+   * one or the root start tag: whitespace, comments and such.
+   *
+   * @param i the index of the section, or {@link #size} for the
+   * text before the root end tag
+   * @return the text between sections
+   */
+  String getGap(int i) {
+    int start = (i == 0) ? this.contentStart : this.ranges.get(i - 1)[1];
+    int end = (i == this.ranges.size()) ? this.contentEnd : this.ranges.get(i)[0];
+    return (start >= end) ? "" : this.text.substring(start, end);
+  }
+}
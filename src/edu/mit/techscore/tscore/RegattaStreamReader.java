@@ -0,0 +1,338 @@
+package edu.mit.techscore.tscore;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a regatta file in a single pass with a StAX parser, keeping
+ * only the parts of the file that {@link RegattaIO} uses to build a
+ * regatta: the attributes of the root element, the content of the
+ * regatta details, and a list of records for each section of the
+ * file (teams, rotations, finishes, etc.). Unlike a DOM, no node is
+ * kept for whitespace, and records do not hold on to their parents
+ * or siblings.<p>
+ *
+ * The records of a section are the elements named in
+ * <code>ITEMS</code> for that section, at any depth. As with
+ * <code>getElementsByTagName</code> on a DOM, if a section or detail
+ * appears more than once in the file, the last one wins.<p>
+ *
+ * Sections are kept in full, rather than applied as they are read,
+ * because a file rewritten from an older version may have some of
+ * them out of order (new elements are appended to the root), while
+ * the regatta must be built in a fixed order.
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 11:20:05 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+final class RegattaStreamReader {
+
+  /**
+   * Maps each section (or record with records of its own) to the
+   * name of its records
+   */
+  private static final Map<String, String> ITEMS;
+
+  /**
+   * Elements whose content is kept as a field of the innermost record
+   */
+  private static final Set<String> FIELDS;
+
+  /**
+   * Elements whose content is kept as a regatta detail
+   */
+  private static final Set<String> DETAILS;
+
+  static {
+    ITEMS = new HashMap<String, String>();
+    ITEMS.put("Comments",      "Comment");
+    ITEMS.put("Teams",         "Team");
+    ITEMS.put("Rotations",     "Sail");
+    ITEMS.put("Finishes",      "Finish");
+    ITEMS.put("Penalties",     "Penalty");
+    ITEMS.put("Breakdowns",    "Breakdown");
+    ITEMS.put("TeamPenalties", "TeamPenalty");
+    ITEMS.put("RP",            "Sailor");
+    ITEMS.put("Membership",    "Affiliate");
+    ITEMS.put("Affiliate",     "Member");
+
+    FIELDS = new HashSet<String>();
+    FIELDS.add("LongName");
+    FIELDS.add("ShortName");
+    FIELDS.add("Name");
+    FIELDS.add("Year");
+
+    DETAILS = new HashSet<String>();
+    DETAILS.add("RegattaName");
+    DETAILS.add("StartTime");
+    DETAILS.add("Duration");
+    DETAILS.add("RegattaType");
+    DETAILS.add("RegattaScoring");
+    DETAILS.add("Blurb");
+  }
+
+  private Map<String, String> rootAttributes;
+  private Map<String, String> details;
+  private Map<String, List<Record>> sections;
+
+  /**
+   * Creates a new <code>RegattaStreamReader</code> instance. Call
+   * one of the <code>read</code> methods to fill it.
+   *
+   */
+  RegattaStreamReader() {
+    this.rootAttributes = new HashMap<String, String>();
+    this.details  = new HashMap<String, String>();
+    this.sections = new HashMap<String, List<Record>>();
+  }
+
+  /**
+   * Reads the given file.
+   *
+   * @param f the file to read
+   * @throws IOException if the file cannot be read
+   * @throws XMLStreamException if the file is not well-formed
+   */
+  void read(File f) throws IOException, XMLStreamException {
+    InputStream in = new BufferedInputStream(new FileInputStream(f));
+    try {
+      this.read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the regatta from the given stream, which is not closed.
+   *
+   * @param in the stream to read
+   * @throws XMLStreamException if the stream is not well-formed
+   */
+  void read(InputStream in) throws XMLStreamException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+			Boolean.FALSE);
+    XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+    // Currently open elements, innermost last
+    List<Frame> open = new ArrayList<Frame>();
+    try {
+      while (reader.hasNext()) {
+	switch (reader.next()) {
+	case XMLStreamConstants.START_ELEMENT:
+	  open.add(this.startElement(reader, open));
+	  break;
+
+	case XMLStreamConstants.CHARACTERS:
+	case XMLStreamConstants.CDATA:
+	case XMLStreamConstants.SPACE:
+	  if (!open.isEmpty()) {
+	    Frame frame = open.get(open.size() - 1);
+	    if (frame.text == null)
+	      frame.text = new StringBuilder();
+	    frame.text.append(reader.getTextCharacters(),
+			      reader.getTextStart(),
+			      reader.getTextLength());
+	  }
+	  break;
+
+	case XMLStreamConstants.END_ELEMENT:
+	  this.endElement(open.remove(open.size() - 1), open);
+	  break;
+	}
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private Frame startElement(XMLStreamReader reader, List<Frame> open) {
+    Frame frame = new Frame(reader.getLocalName());
+    if (open.isEmpty()) {
+      for (int i = 0; i < reader.getAttributeCount(); i++)
+	this.rootAttributes.put(reader.getAttributeLocalName(i),
+				reader.getAttributeValue(i));
+      return frame;
+    }
+
+    // Record of the innermost section?
+    for (int i = open.size() - 1; i >= 0; i--) {
+      Frame parent = open.get(i);
+      if (parent.items != null) {
+	if (frame.name.equals(ITEMS.get(parent.name))) {
+	  frame.record = new Record();
+	  for (int a = 0; a < reader.getAttributeCount(); a++)
+	    frame.record.attributes.put(reader.getAttributeLocalName(a),
+					reader.getAttributeValue(a));
+	  parent.items.add(frame.record);
+	  if (ITEMS.containsKey(frame.name))
+	    frame.items = frame.record.children;
+	  return frame;
+	}
+	break;
+      }
+    }
+
+    // New section
+    if (ITEMS.containsKey(frame.name)) {
+      frame.items = new ArrayList<Record>();
+      this.sections.put(frame.name, frame.items);
+    }
+    return frame;
+  }
+
+  private void endElement(Frame frame, List<Frame> open) {
+    String content = null;
+    if (frame.text != null)
+      content = frame.text.toString().trim().replaceAll("[ \t\n\f\r]+", " ");
+
+    if (frame.record != null)
+      frame.record.content = content;
+    if (DETAILS.contains(frame.name))
+      this.details.put(frame.name, content);
+    if (FIELDS.contains(frame.name)) {
+      for (int i = open.size() - 1; i >= 0; i--) {
+	Record record = open.get(i).record;
+	if (record != null) {
+	  record.fields.put(frame.name, content);
+	  break;
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the given attribute of the root element.
+   *
+   * @param name the name of the attribute
+   * @return the value, or <code>null</code> if missing
+   */
+  String getRootAttribute(String name) {
+    return this.rootAttributes.get(name);
+  }
+
+  /**
+   * Returns the content of the given detail, such as "RegattaName".
+   *
+   * @param name the name of the element
+   * @return the content, or <code>null</code> if missing or empty
+   */
+  String getDetail(String name) {
+    return this.details.get(name);
+  }
+
+  /**
+   * Returns the records of the given section, such as "Finishes".
+   *
+   * @param name the name of the section
+   * @return the records in file order, or <code>null</code> if the
+   * section is missing
+   */
+  List<Record> getSection(String name) {
+    return this.sections.get(name);
+  }
+
+  /**
+   * An element being read
+   */
+  private static class Frame {
+    private String name;
+    private StringBuilder text;
+    private Record record;
+    private List<Record> items;
+
+    private Frame(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * One entry of a section, such as a finish or a team: its
+   * attributes, its text content and the content of any of its
+   * <code>FIELDS</code>.
+   */
+  static class Record {
+    private Map<String, String> attributes;
+    private Map<String, String> fields;
+    private String content;
+    private List<Record> children;
+
+    private Record() {
+      this.attributes = new HashMap<String, String>(4);
+      this.fields = new HashMap<String, String>(2);
+      this.children = new ArrayList<Record>(0);
+    }
+
+    /**
+     * Returns the value of the given attribute.
+     *
+     * @param name the name of the attribute
+     * @return the value, or the empty string if missing
+     */
+    String getAttribute(String name) {
+      String value = this.attributes.get(name);
+      return (value == null) ? "" : value;
+    }
+
+    /**
+     * Returns the text content of this record, with whitespace
+     * collapsed.
+     *
+     * @return the content, or <code>null</code> if empty
+     */
+    String getContent() {
+      return this.content;
+    }
+
+    /**
+     * Returns the content of the given field, such as "LongName".
+     *
+     * @param name the name of the field
+     * @return the content, or <code>null</code> if missing
+     */
+    String getContent(String name) {
+      return this.fields.get(name);
+    }
+
+    /**
+     * Returns the records nested within this one, such as the
+     * members of an affiliate.
+     *
+     * @return the records in file order, possibly empty
+     */
+    List<Record> getChildren() {
+      return this.children;
+    }
+  }
+}
@@ -0,0 +1,532 @@
+package edu.mit.techscore.tscore;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.mit.techscore.dpxml.XMLTag;
+import edu.mit.techscore.dpxml.XMLTextTag;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.RegattaEvent;
+import edu.mit.techscore.regatta.RegattaListener;
+
+/**
+ * Serves the scores of any number of regattas over HTTP, without a
+ * display, e.g. for screens around the venue. Each regatta is hosted
+ * under a name, and its scores are available at:
+ *
+ * <dl>
+ * <dt>/<i>name</i>/rank.json</dt>
+ * <dd>The overall ranks, as by {@link ICSAScorer#rank}</dd>
+ * <dt>/<i>name</i>/<i>div</i>.json</dt>
+ * <dd>The ranks in the division <i>div</i> (A, B, etc.)</dd>
+ * <dt>/<i>name</i>/rank.html, /<i>name</i>/<i>div</i>.html</dt>
+ * <dd>The same, as the tables of the scores dialog</dd>
+ * <dt>/<i>name</i>/scores.html</dt>
+ * <dd>All of the tables in one page</dd>
+ * </dl>
+ *
+ * and a list of the names is available at /index.json.<p>
+ *
+ * Each response is cached until the regatta changes, as signaled by
+ * its {@link RegattaListener} events, and carries an ETag which
+ * changes with it. Thus, clients which poll with
+ * <code>If-None-Match</code> receive a 304 response and cost nothing
+ * while the regatta is unchanged, and every change costs at most one
+ * scoring pass, no matter how many clients are polling.<p>
+ *
+ * Regattas hosted from a file with {@link #hostFile} are read again
+ * whenever the file is modified, so that the server can follow a
+ * regatta being scored elsewhere:
+ *
+ * <pre>
+ * ScoreServer [-p port] [-j threads] file...
+ * </pre>
+ *
+ * This file is part of TechScore.
+ *
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 15:58:44 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class ScoreServer implements HttpHandler {
+
+  private static final String JSON = "application/json; charset=utf-8";
+  private static final String HTML = "text/html; charset=utf-8";
+
+  private HttpServer server;
+  private ExecutorService pool;
+  private Map<String, Hosted> regattas;
+  private String styleString;
+
+  // Distinguishes the ETags of different runs of the server
+  private final String etagPrefix;
+
+  /**
+   * Creates a new <code>ScoreServer</code> on the given port, with
+   * the given number of threads to answer requests. Call
+   * {@link #start} to start serving.
+   *
+   * @param port the port on which to listen
+   * @param numThreads the number of threads
+   * @throws IOException if unable to listen on the port
+   */
+  public ScoreServer(int port, int numThreads) throws IOException {
+    this.regattas = new ConcurrentHashMap<String, Hosted>();
+    this.etagPrefix = Long.toString(System.currentTimeMillis(), 36);
+    this.styleString = readStyle();
+    this.pool = Executors.newFixedThreadPool(numThreads);
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.server.setExecutor(this.pool);
+    this.server.createContext("/", this);
+  }
+
+  /**
+   * Starts serving requests, in the background.
+   *
+   */
+  public void start() {
+    this.server.start();
+  }
+
+  /**
+   * Stops serving requests, waiting at most the given time for the
+   * current ones to finish.
+   *
+   * @param delay the maximum time to wait, in seconds
+   */
+  public void stop(int delay) {
+    this.server.stop(delay);
+    this.pool.shutdown();
+  }
+
+  /**
+   * Get the <code>Port</code> value.
+   *
+   * @return the port on which the server listens
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Serves the scores of the given regatta, under the given name,
+   * replacing any regatta hosted under that name. Every change to
+   * the regatta made elsewhere must be followed by a
+   * {@link RegattaEvent}, upon which a {@link Regatta#snapshot} of it
+   * is taken; the snapshot is then scored by its own
+   * {@link ICSAScorer}, from the threads of the server, while the
+   * regatta itself keeps changing.
+   *
+   * @param name the name of the regatta in the URL
+   * @param reg the regatta
+   * @throws IllegalArgumentException if the name is not a valid URL
+   * path segment
+   */
+  public void host(String name, Regatta reg) {
+    this.host(name, new Hosted(reg, null));
+  }
+
+  /**
+   * Serves the scores of the regatta in the given file, under the
+   * given name, reading the file again whenever it changes.
+   *
+   * @param name the name of the regatta in the URL
+   * @param file the regatta file
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the name is not a valid URL
+   * path segment
+   */
+  public void hostFile(String name, File file) throws IOException {
+    Hosted hosted = new Hosted(null, file);
+    hosted.reload();
+    this.host(name, hosted);
+  }
+
+  private void host(String name, Hosted hosted) {
+    if (!name.matches("[A-Za-z0-9_.-]+") || name.equals("index.json"))
+      throw new IllegalArgumentException("Invalid regatta name: " + name);
+    Hosted old = this.regattas.put(name, hosted);
+    if (old != null)
+      old.release();
+  }
+
+  /**
+   * Stops serving the regatta with the given name.
+   *
+   * @param name the name of the regatta
+   */
+  public void unhost(String name) {
+    Hosted old = this.regattas.remove(name);
+    if (old != null)
+      old.release();
+  }
+
+  // Implementation of HttpHandler
+
+  public void handle(HttpExchange ex) throws IOException {
+    try {
+      if (!ex.getRequestMethod().equals("GET") &&
+	  !ex.getRequestMethod().equals("HEAD")) {
+	ex.getResponseHeaders().set("Allow", "GET, HEAD");
+	this.sendError(ex, 405, "Method not allowed");
+	return;
+      }
+
+      String [] path = ex.getRequestURI().getPath().split("/");
+      if (path.length == 2 && path[1].equals("index.json")) {
+	this.sendIndex(ex);
+	return;
+      }
+      Hosted hosted = (path.length == 3) ? this.regattas.get(path[1]) : null;
+      if (hosted == null) {
+	this.sendError(ex, 404, "Not found");
+	return;
+      }
+      hosted.checkFile();
+
+      // Answer from the ETag alone, if possible
+      String view = path[2];
+      String etag = "\"" + this.etagPrefix + "." + hosted.version.get() + "\"";
+      String match = ex.getRequestHeaders().getFirst("If-None-Match");
+      if (match != null && (match.equals(etag) || match.equals("*"))) {
+	ex.getResponseHeaders().set("ETag", etag);
+	ex.sendResponseHeaders(304, -1);
+	return;
+      }
+
+      Response res = hosted.getResponse(view);
+      if (res == null) {
+	this.sendError(ex, 404, "Not found");
+	return;
+      }
+      ex.getResponseHeaders().set("Content-Type", res.contentType);
+      ex.getResponseHeaders().set("ETag", "\"" + this.etagPrefix + "." + res.version + "\"");
+      ex.getResponseHeaders().set("Cache-Control", "no-cache");
+      this.send(ex, 200, res.body);
+    } catch (RuntimeException e) {
+      // e.g. the regatta was changed while being scored
+      ex.getResponseHeaders().set("Retry-After", "1");
+      this.sendError(ex, 503, "Unable to score regatta: " + e);
+    } finally {
+      ex.close();
+    }
+  }
+
+  private void sendIndex(HttpExchange ex) throws IOException {
+    List<String> names = new ArrayList<String>(this.regattas.keySet());
+    Collections.sort(names);
+    StringBuilder sb = new StringBuilder("[");
+    for (String name : names) {
+      if (sb.length() > 1)
+	sb.append(",");
+      sb.append(Factory.quoteJSON(name));
+    }
+    sb.append("]\n");
+    ex.getResponseHeaders().set("Content-Type", JSON);
+    this.send(ex, 200, sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void sendError(HttpExchange ex, int code, String message) throws IOException {
+    ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    this.send(ex, code, (message + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void send(HttpExchange ex, int code, byte [] body) throws IOException {
+    if (ex.getRequestMethod().equals("HEAD")) {
+      ex.sendResponseHeaders(code, -1);
+      return;
+    }
+    ex.sendResponseHeaders(code, body.length);
+    OutputStream out = ex.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+
+  /**
+   * Reads the stylesheet used by the scores dialog
+   */
+  private static String readStyle() {
+    InputStream is = ScoreServer.class.getResourceAsStream("inc/report.css");
+    if (is == null)
+      return "";
+    StringBuilder contents = new StringBuilder();
+    try {
+      BufferedReader reader =
+	new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+      try {
+	String line;
+	while ((line = reader.readLine()) != null) {
+	  contents.append(line);
+	  contents.append("\n");
+	}
+      } finally {
+	reader.close();
+      }
+    } catch (IOException e) {
+      System.err.println(e);
+    }
+    return contents.toString();
+  }
+
+  /**
+   * A cached response
+   */
+  private static class Response {
+    private long version;
+    private String contentType;
+    private byte [] body;
+
+    private Response(long version, String contentType, String body) {
+      this.version = version;
+      this.contentType = contentType;
+      this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * A hosted regatta, with the responses cached since its last
+   * change
+   */
+  private class Hosted implements RegattaListener {
+    private Regatta regatta;
+    private File file;
+
+    // The regatta as of its last change, and as last scored
+    private volatile Regatta snapshot;
+    private Regatta scored;
+    private long lastModified;
+    private ICSAScorer scorer;
+
+    // Incremented on every change to the regatta
+    private AtomicLong version;
+
+    // The version of the regatta last scored, and its tables
+    private long scoredVersion;
+    private ScoreTables tables;
+    private Map<String, Response> cache;
+
+    private Hosted(Regatta reg, File file) {
+      this.file = file;
+      this.scorer = new ICSAScorer();
+      this.cache = new ConcurrentHashMap<String, Response>();
+      this.version = new AtomicLong();
+      this.scoredVersion = -1;
+      if (reg != null)
+	this.setRegatta(reg);
+    }
+
+    private synchronized void setRegatta(Regatta reg) {
+      if (this.regatta != null)
+	this.regatta.removeRegattaListener(this);
+      this.regatta = reg;
+      reg.addRegattaListener(this);
+      this.snapshot = reg.snapshot();
+      this.version.incrementAndGet();
+    }
+
+    private void release() {
+      this.regatta.removeRegattaListener(this);
+      if (this.file != null)
+	this.regatta.getRP().getDatabase().close();
+    }
+
+    /**
+     * Reads the file again
+     */
+    private void reload() throws IOException {
+      long modified = this.file.lastModified();
+      RegattaIO io = new RegattaIO();
+      if (!io.readFile(this.file))
+	throw new IOException("Unable to read " + this.file + ": " +
+			      Factory.implode(io.getErrors(), "; "));
+      Regatta old = this.regatta;
+      this.setRegatta(io.getRegatta());
+      this.lastModified = modified;
+      if (old != null)
+	old.getRP().getDatabase().close();
+    }
+
+    /**
+     * Reads the file again if it has been modified. If it cannot be
+     * read, e.g. while it is being written, keep the last version.
+     */
+    private synchronized void checkFile() {
+      if (this.file == null || this.file.lastModified() == this.lastModified)
+	return;
+      try {
+	this.reload();
+      } catch (IOException e) {
+	System.err.println(e.getMessage());
+      }
+    }
+
+    /**
+     * Takes a snapshot of the regatta, on the thread which changed
+     * it, before the new version can be served
+     */
+    public void regattaChange(RegattaEvent evt) {
+      this.snapshot = this.regatta.snapshot();
+      this.version.incrementAndGet();
+    }
+
+    /**
+     * Returns the response for the given view, from the cache if the
+     * regatta has not changed since it was created.
+     *
+     * @return the response, or null if there is no such view
+     */
+    private Response getResponse(String view) {
+      long current = this.version.get();
+      Response res = this.cache.get(view);
+      if (res != null && res.version == current)
+	return res;
+
+      synchronized (this) {
+	current = this.version.get();
+	res = this.cache.get(view);
+	if (res != null && res.version == current)
+	  return res;
+
+	if (this.scoredVersion != current) {
+	  this.cache.clear();
+	  this.scored = this.snapshot;
+	  this.scorer.score(this.scored);
+	  this.tables = new ScoreTables(this.scored, this.scorer);
+	  this.scoredVersion = current;
+	}
+	res = this.createResponse(view, current);
+	if (res != null)
+	  this.cache.put(view, res);
+	return res;
+      }
+    }
+
+    private Response createResponse(String view, long current) {
+      int dot = view.lastIndexOf('.');
+      if (dot < 0)
+	return null;
+      String ext = view.substring(dot + 1);
+      String name = view.substring(0, dot);
+
+      Division div = null;
+      if (!name.equals("rank") && !name.equals("scores")) {
+	for (Division d : this.scored.getDivisions()) {
+	  if (d.toString().equals(name))
+	    div = d;
+	}
+	if (div == null)
+	  return null;
+      }
+
+      if (ext.equals("json") && !name.equals("scores"))
+	return new Response(current, JSON, this.tables.getRankJSON(div));
+      if (!ext.equals("html"))
+	return null;
+
+      // The totals table must be created first
+      List<XMLTag> elems = new ArrayList<XMLTag>();
+      XMLTag totals = this.tables.getTotalsXML();
+      if (div == null)
+	elems.add(totals);
+      if (div != null || name.equals("scores")) {
+	for (Division d : this.scored.getDivisions()) {
+	  if (div != null && d != div)
+	    continue;
+	  if (this.scored.getFinishedRaces(d).length > 0)
+	    elems.add(this.tables.getDivisionXML(d));
+	}
+      }
+      return new Response(current, HTML, this.wrapHTML(elems).toXMLString());
+    }
+
+    private XMLTag wrapHTML(List<XMLTag> elems) {
+      XMLTag root = new XMLTag("html");
+      XMLTag head;
+      root.add(head = new XMLTag("head"));
+      XMLTag title = new XMLTag("title");
+      title.add(new XMLTextTag(this.scored.getName()));
+      head.add(title);
+      XMLTag stylesheet = new XMLTag("style");
+      stylesheet.addAttr("type", "text/css");
+      stylesheet.add(new XMLTextTag(styleString));
+      head.add(stylesheet);
+      root.add(new XMLTag("body", elems.toArray(new XMLTag[]{})));
+      return root;
+    }
+  }
+
+  public static void main(String [] args) {
+    String usage = "usage: ScoreServer [-p port] [-j threads] file...";
+    int port = 8080;
+    int numThreads = 4;
+    int i;
+    try {
+      for (i = 0; i < args.length && args[i].startsWith("-"); i++) {
+	if (args[i].equals("-p"))
+	  port = Integer.parseInt(args[++i]);
+	else if (args[i].equals("-j"))
+	  numThreads = Integer.parseInt(args[++i]);
+	else
+	  throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+      if (i == args.length)
+	throw new IllegalArgumentException("Missing regatta file");
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(usage);
+      System.exit(1);
+      return;
+    }
+
+    try {
+      ScoreServer server = new ScoreServer(port, numThreads);
+      for (; i < args.length; i++) {
+	File file = new File(args[i]);
+	String name = file.getName();
+	if (name.indexOf('.') > 0)
+	  name = name.substring(0, name.lastIndexOf('.'));
+	name = name.replaceAll("[^A-Za-z0-9_.-]", "_");
+	server.hostFile(name, file);
+	System.out.println("Serving " + file + " at /" + name + "/");
+      }
+      server.start();
+      System.out.println("Listening on port " + server.getPort());
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+}
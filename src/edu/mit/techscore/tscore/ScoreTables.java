@@ -0,0 +1,534 @@
+package edu.mit.techscore.tscore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.techscore.dpxml.XMLTag;
+import edu.mit.techscore.dpxml.XMLTextTag;
+import edu.mit.techscore.regatta.Finish;
+import edu.mit.techscore.regatta.RP;
+import edu.mit.techscore.regatta.RP.BoatRole;
+import edu.mit.techscore.regatta.Race;
+import edu.mit.techscore.regatta.Regatta;
+import edu.mit.techscore.regatta.Regatta.Division;
+import edu.mit.techscore.regatta.Sailor;
+import edu.mit.techscore.regatta.Scorer;
+import edu.mit.techscore.regatta.Team;
+import edu.mit.techscore.regatta.TeamPenalty;
+
+/**
+ * Renders the scores of a regatta as HTML tables (the totals, and
+ * the ranks and RP for each division) and as JSON. The regatta must
+ * have been scored with the given scorer beforehand. These are the
+ * tables shown by {@link ScoresDialog}; they use no Swing class, so
+ * that they can also be served by {@link ScoreServer}.
+ *
+ * This file is part of TechScore.
+ * 
+ * TechScore is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * TechScore is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with TechScore.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created: Sun Oct 18 15:32:07 2026
+ *
+ * @author <a href="mailto:dayan@paez.mit.edu">Dayan Paez</a>
+ * @version 1.0
+ */
+public class ScoreTables {
+
+  /**
+   * Gets an HTML-compatible asterisk mark
+   *
+   * @param index an <code>int</code> value
+   * @return a <code>String</code> value
+   */
+  private static String getAsterisk(int index) {
+    switch (index) {
+    case 0:
+      return "*";
+
+    default:
+      return "<sup>" + (char)(index + 96) + "</sup>";
+    }
+  }
+
+  private static XMLTag BLANK_TEXT = new XMLTag("html", new XMLTag[]{new XMLTextTag("No scores yet.")});
+
+  private Regatta regatta;
+  private Scorer scorer;
+  private Map<Team, HashMap<Division, Integer>> teamDivisionTotalMap;
+
+  /**
+   * Creates a new <code>ScoreTables</code> instance.
+   *
+   * @param reg the regatta, already scored
+   * @param scorer the scorer with which to rank the teams
+   */
+  public ScoreTables(Regatta reg, Scorer scorer) {
+    this.regatta = reg;
+    this.scorer = scorer;
+  }
+
+  /**
+   * Creates an HTML rendition of the totals table and updates a
+   * number of the interior parameters to be used in rendering the
+   * totals for the divisions. This method must be called prior to
+   * getDivisionXML.
+   *
+   * @return a <code>String</code> value
+   */
+  public XMLTag getTotalsXML() {
+    if (this.regatta.getFinishedRaces().length == 0) {
+      return BLANK_TEXT;
+    }
+
+    XMLTag div, title, tab, row, cell;
+    div = new XMLTag("div");
+
+    // TOTALs
+    Team [] teams    = scorer.rank(this.regatta);
+
+    Map<Team, String> explanations = scorer.getRankExplanations();
+    List<String> priorExplanations = new ArrayList<String>();
+    Division [] divs = this.regatta.getDivisions();
+    int numRaces     = this.regatta.getNumRaces();
+
+    // Map of team, division totals
+    this.teamDivisionTotalMap = new HashMap<Team, HashMap<Division, Integer>>();
+    
+    title = new XMLTag("h2");
+    title.add(new XMLTextTag("Total Scores"));
+    tab = new XMLTag("table");
+    div.add(title);
+    div.add(tab);
+
+    // Header
+    tab.add(row  = new XMLTag("tr"));
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag(""));
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag(""));
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("D."));
+    for (int i = 0; i < numRaces; i++) {
+      row.add(cell = new XMLTag("th"));
+      cell.add(new XMLTextTag("" + (i+1)));
+    }
+    // Team penalty column
+    XMLTag penaltyRow = new XMLTag("th");
+    row.add(penaltyRow);
+    penaltyRow.add(new XMLTextTag(""));
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("TOT"));
+
+    // Body
+    HashMap<Division, Integer> divMap;
+    for (int t = 0; t < teams.length; t++) {
+      Team team = teams[t];
+      int [] divTotals = new int[divs.length];
+      int teamPenaltyTotal = 0;
+      this.teamDivisionTotalMap.put(team,
+				    divMap = new HashMap<Division, Integer>());
+
+      // Explanation for ranking
+      String exp = explanations.get(team);
+      String symbol = "";
+      if (!exp.equals("Natural order")) {
+	int index = priorExplanations.indexOf(exp);
+	if (index >= 0) {
+	  symbol = ScoreTables.getAsterisk(index);
+	}
+	else {
+	  priorExplanations.add(exp);
+	  symbol = ScoreTables.getAsterisk(priorExplanations.size() - 1);
+	}
+      }
+
+      // Array of race totals
+      int [] raceTotals = new int[numRaces];
+      for (int d = 0; d < divs.length; d++) {
+	tab.add(row  = new XMLTag("tr"));
+	switch (d) {
+	case 0:
+	  row.add(cell = new XMLTag("td"));
+	  cell.addAttr("align", "right");
+	  cell.add(new XMLTextTag(symbol + (t+1)));
+	  row.add(cell = new XMLTag("td"));
+	  cell.addAttr("align", "right");
+	  cell.add(new XMLTextTag(team.getLongname()));
+	  break;
+
+	case 1:
+	  row.add(cell = new XMLTag("td"));
+	  cell.addAttr("align", "right");
+	  cell.add(new XMLTextTag());
+	  row.add(cell = new XMLTag("td"));
+	  cell.addAttr("align", "right");
+	  cell.add(new XMLTextTag(team.getShortname()));
+	  break;
+
+	default:
+	  row.add(cell = new XMLTag("td"));
+	  cell.add(new XMLTextTag());
+	  row.add(cell = new XMLTag("td"));
+	  cell.add(new XMLTextTag());
+	}
+	// Division
+	row.add(cell = new XMLTag("th"));
+	cell.add(new XMLTextTag(divs[d].toString()));
+	// Races
+	for (int r = 0; r < numRaces; r++) {
+	  Race race = this.regatta.getRace(divs[d], (r+1));
+	  Finish f  = this.regatta.getFinish(race, team);
+	  String score;
+	  score = (f == null) ? "" : String.valueOf(f);
+	  int raceScore = (f == null) ? 0 : f.getScore();
+	  divTotals[d] += raceScore;
+	  raceTotals[r] += raceScore;
+	  row.add(cell = new XMLTag("td"));
+	  cell.addAttr("align", "right");
+	  cell.addAttr("title", String.valueOf(raceScore));
+	  cell.add(new XMLTextTag(score));
+	}
+	// Penalty cell
+	row.add(cell = new XMLTag("td"));
+	TeamPenalty pen = this.regatta.getTeamPenalty(divs[d], team);
+	if (pen != null) {
+	  teamPenaltyTotal += 20;
+	  divTotals[d] += 20;
+	  cell.add(new XMLTextTag(String.valueOf(pen.getType())));
+	  cell.addAttr("title", pen.getComments());
+	  cell.addAttr("align", "right");
+	}
+	else {
+	  cell.add(new XMLTextTag(""));
+	}
+	// Total cell
+	row.add(cell = new XMLTag("td"));
+	cell.addAttr("align", "right");
+	String divTotal =  (divTotals[d] == 0) ? "" : String.valueOf(divTotals[d]);
+	cell.add(new XMLTextTag(divTotal));
+	divMap.put(divs[d], new Integer(divTotals[d]));
+      }
+      // Totals row (and an extra row, too)
+      XMLTag row2, cell2;
+      tab.add(row = new XMLTag("tr"));
+      tab.add(row2= new XMLTag("tr"));
+
+      row.add(cell = new XMLTag("td"));
+      row2.add(cell2 = new XMLTag("td"));
+
+      cell.add(new XMLTextTag(""));
+      cell2.add(new XMLTextTag(""));
+
+      row.add(cell = new XMLTag("td"));
+      row2.add(cell2 = new XMLTag("td"));
+      
+      cell.add(new XMLTextTag(""));
+      cell2.add(new XMLTextTag(""));
+      
+      row.add(cell = new XMLTag("th"));
+      row2.add(cell2 = new XMLTag("th"));
+      
+      cell.add(new XMLTextTag(""));
+      cell2.add(new XMLTextTag(""));
+      
+      int runningTotal = 0;
+      XMLTextTag value = null;
+      for (int r = 0; r < numRaces; r++) {
+	row.add(cell = new XMLTag("td"));
+	row2.add(cell2 = new XMLTag("td"));
+	
+	cell.addAttr("align", "right");
+	runningTotal += raceTotals[r];
+	if (raceTotals[r] == 0) {
+	  value = new XMLTextTag("");
+	}
+	else {
+	  value = new XMLTextTag(String.valueOf(runningTotal));
+	}
+	cell.add(value);
+	cell2.add(new XMLTextTag(""));
+      }
+      // Team penalty total
+      row.add(cell = new XMLTag("td"));
+      if (teamPenaltyTotal > 0) {
+	cell.add(new XMLTextTag(String.valueOf(teamPenaltyTotal)));
+	cell.addAttr("align", "right");
+      }
+      else {
+	cell.add(new XMLTextTag(""));
+      }
+      // Net team total
+      row.add(cell = new XMLTag("th"));
+      row2.add(cell2 = new XMLTag("td"));
+      cell.addAttr("align", "right");
+      cell.add(new XMLTextTag(String.valueOf(runningTotal + teamPenaltyTotal)));
+      cell2.add(new XMLTextTag(""));
+    }
+
+    // Legend, if necessary
+    if (priorExplanations.size() > 0) {
+      div.add(title = new XMLTag("h3"));
+      title.add(new XMLTextTag("Tiebreaking legend"));
+
+      XMLTag ul;
+      div.add(ul = new XMLTag("dl"));
+      XMLTag dt, dd;
+      for (int i = 0; i < priorExplanations.size(); i++) {
+	ul.add(dt = new XMLTag("dt"));
+	dt.add(new XMLTextTag(ScoreTables.getAsterisk(i)));
+	ul.add(dd = new XMLTag("dd"));
+	dd.add(new XMLTextTag(priorExplanations.get(i)));
+      }
+    }
+
+    return div;
+  }
+
+  public XMLTag getDivisionXML(Division div) {
+    RP rp = this.regatta.getRP();
+    
+    if (this.regatta.getFinishedRaces(div).length == 0) {
+      return BLANK_TEXT;
+    }
+
+    XMLTag body = new XMLTag("div");
+    XMLTag title, tab, row, row2, cell;
+    body.add(title = new XMLTag("h3"));
+    title.add(new XMLTextTag("Division " + div));
+
+    body.add(tab = new XMLTag("table"));
+    tab.add(row = new XMLTag("tr"));
+
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("#"));
+
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("Team"));
+
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("T"));
+
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("Sailors"));
+
+    row.add(cell = new XMLTag("th"));
+    cell.add(new XMLTextTag("Races"));
+    
+    Team [] teams = scorer.rank(this.regatta, div);
+    Map<Team, String> explanations = scorer.getRankExplanations();
+    List<String> priorExplanations = new ArrayList<String>();
+
+    for (int t = 0; t < teams.length; t++) {
+      Team team = teams[t];
+      Sailor [] skippers = new Sailor[1];
+      Sailor [] crews    = new Sailor[1];
+      XMLTag [] skipRows, crewRows;
+      if (rp != null) {
+	skippers = rp.getSailors(team,
+				 div,
+				 BoatRole.SKIPPER);
+	crews = rp.getSailors(team,
+			      div,
+			      BoatRole.CREW);
+      }
+      if (skippers.length == 0) {
+	skippers = new Sailor [1];
+      }
+      if (crews.length == 0) {
+	crews = new Sailor [1];
+      }
+      skipRows = new XMLTag[skippers.length];
+      crewRows = new XMLTag[crews.length];
+
+      // Explanation for ranking
+      String exp = explanations.get(team);
+      String symbol = "";
+      if (!exp.equals("Natural order")) {
+	int index = priorExplanations.indexOf(exp);
+	if (index >= 0) {
+	  symbol = ScoreTables.getAsterisk(index);
+	}
+	else {
+	  priorExplanations.add(exp);
+	  symbol = ScoreTables.getAsterisk(priorExplanations.size() - 1);
+	}
+      }
+
+      // Row 1...n:   Team Longname and Skipper(s)
+      // Row n+1...N: Team Shortname and 1st Crew...
+      XMLTag cell1, cell2, cell3, cell4, cell5;
+      for (int r = 0; r < skipRows.length; r++) {
+	tab.add(skipRows[r] = new XMLTag("tr"));
+
+	// Rank
+	skipRows[r].add(cell1 = new XMLTag("td"));
+	skipRows[r].add(cell2 = new XMLTag("td"));
+	skipRows[r].add(cell3 = new XMLTag("th"));
+	skipRows[r].add(cell4 = new XMLTag("td"));
+	skipRows[r].add(cell5 = new XMLTag("td"));
+	cell1.addAttr("align", "right");
+	cell2.addAttr("align", "right");
+	cell3.addAttr("align", "right");
+	cell4.addAttr("align", "right");
+	cell5.addAttr("class", "races");
+	if (r == 0) {
+	  cell1.add(new XMLTextTag(symbol + (t+1)));
+	  cell2.add(new XMLTextTag(team.getLongname()));
+	  String total = this.teamDivisionTotalMap.get(team).get(div).toString();
+	  cell3.add(new XMLTextTag(total));
+	}
+	else {
+	  cell1.add(new XMLTextTag(""));
+	  cell2.add(new XMLTextTag(""));
+	  cell3.add(new XMLTextTag(""));
+	}
+	// Add sailor
+	if (skippers[r] != null) {
+	  cell4.add(new XMLTextTag(skippers[r].toString()));
+	  Race [] races = rp.getRaces(team,
+				      skippers[r],
+				      BoatRole.SKIPPER);
+	  Integer [] raceNums = new Integer[races.length];
+	  for (int i = 0; i < races.length; i++) {
+	    raceNums[i] = new Integer(races[i].getNumber());
+	  }
+	  if (skipRows.length > 1) {
+	    cell5.add(new XMLTextTag(Factory.formatList(raceNums)));
+	  }
+	  else {
+	    cell5.add(new XMLTextTag(""));
+	  }
+
+	}
+	else {
+	  cell4.add(new XMLTextTag(""));
+	  cell5.add(new XMLTextTag(""));
+	}
+      }
+      for (int r = 0; r < crewRows.length; r++) {
+	tab.add(crewRows[r] = new XMLTag("tr"));
+
+	// Rank
+	crewRows[r].add(cell1 = new XMLTag("td"));
+	crewRows[r].add(cell2 = new XMLTag("td"));
+	crewRows[r].add(cell3 = new XMLTag("th"));
+	crewRows[r].add(cell4 = new XMLTag("td"));
+	crewRows[r].add(cell5 = new XMLTag("td"));
+	cell1.addAttr("align", "right");
+	cell2.addAttr("align", "right");
+	cell3.addAttr("align", "right");
+	cell4.addAttr("align", "right");
+	cell5.addAttr("class", "races");
+	if (r == 0) {
+	  cell1.add(new XMLTextTag(""));
+	  cell2.add(new XMLTextTag(team.getShortname()));
+	  cell3.add(new XMLTextTag(""));
+	}
+	else {
+	  cell1.add(new XMLTextTag(""));
+	  cell2.add(new XMLTextTag(""));
+	  cell3.add(new XMLTextTag(""));
+	}
+	// Add sailor
+	if (crews[r] != null) {
+	  cell4.add(new XMLTextTag(crews[r].toString()));
+	  Race [] races = rp.getRaces(team,
+				      crews[r],
+				      BoatRole.CREW);
+	  Integer [] raceNums = new Integer[races.length];
+	  for (int i = 0; i < races.length; i++) {
+	    raceNums[i] = new Integer(races[i].getNumber());
+	  }
+	  if (crewRows.length > 1) {
+	    cell5.add(new XMLTextTag(Factory.formatList(raceNums)));
+	  }
+	  else {
+	    cell5.add(new XMLTextTag(""));
+	  }
+
+	}
+	else {
+	  cell4.add(new XMLTextTag(""));
+	  cell5.add(new XMLTextTag(""));
+	}
+      }
+    }
+
+    // Legend, if necessary
+    if (priorExplanations.size() > 0) {
+      body.add(title = new XMLTag("h3"));
+      title.add(new XMLTextTag("Tiebreaking legend"));
+
+      XMLTag ul;
+      body.add(ul = new XMLTag("dl"));
+      XMLTag dt, dd;
+      for (int i = 0; i < priorExplanations.size(); i++) {
+	ul.add(dt = new XMLTag("dt"));
+	dt.add(new XMLTextTag(ScoreTables.getAsterisk(i)));
+	ul.add(dd = new XMLTag("dd"));
+	dd.add(new XMLTextTag(priorExplanations.get(i)));
+      }
+    }
+
+    return body;
+  }
+
+  /**
+   * Creates a JSON rendition of the ranks, either overall or in one
+   * division: for each team, in order, its rank, names, score and
+   * the explanation of its rank.
+   *
+   * @param div the division, or <code>null</code> for the overall
+   * ranks
+   * @return a <code>String</code> value
+   */
+  public String getRankJSON(Division div) {
+    Team [] teams = (div == null) ?
+      this.scorer.rank(this.regatta) :
+      this.scorer.rank(this.regatta, div);
+    Map<Team, String> explanations = this.scorer.getRankExplanations();
+    Division [] divs = (div == null) ?
+      this.regatta.getDivisions() :
+      new Division [] {div};
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"regatta\":").append(Factory.quoteJSON(this.regatta.getName()));
+    sb.append(",\"division\":").append(Factory.quoteJSON((div == null) ? null : div.toString()));
+    sb.append(",\"teams\":[");
+    for (int t = 0; t < teams.length; t++) {
+      int score = 0;
+      for (Division d : divs) {
+	for (Race race : this.regatta.getFinishedRaces(d)) {
+	  Finish f = this.regatta.getFinish(race, teams[t]);
+	  if (f != null)
+	    score += f.getScore();
+	}
+	if (this.regatta.getTeamPenalty(d, teams[t]) != null)
+	  score += 20;
+      }
+      if (t > 0)
+	sb.append(",");
+      sb.append("\n{\"rank\":").append(t + 1);
+      sb.append(",\"school\":").append(Factory.quoteJSON(teams[t].getLongname()));
+      sb.append(",\"team\":").append(Factory.quoteJSON(teams[t].getShortname()));
+      sb.append(",\"score\":").append(score);
+      sb.append(",\"explanation\":").append(Factory.quoteJSON(explanations.get(teams[t])));
+      sb.append("}");
+    }
+    sb.append("]}\n");
+    return sb.toString();
+  }
+}
@@ -7,6 +7,8 @@ import java.awt.Point;
 import java.awt.Window;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.prefs.Preferences;
 import javax.swing.AbstractAction;
 import javax.swing.AbstractButton;
@@ -51,6 +53,9 @@ import javax.swing.JLabel;
 import java.io.IOException;
 import edu.mit.techscore.nscore.NavyScoreLoader;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Main GUI class for TechScore desktop program
@@ -81,7 +86,7 @@ public class TScoreGUI
   implements RegattaListener, WindowListener, PropertyChangeListener {
   
   // Static variables
-  public static String VERSION = "1.5.1";
+  public static final String VERSION = "1.5.1";
   public static String FILE_EXTENSION = "tsr";
   public static String NAVY_EXTENSION = "sco";
 
@@ -92,6 +97,7 @@ public class TScoreGUI
   private JFileChooser fc;
   private RegattaFileFilter fileFilter;
   private RegattaIO regIO;
+  private RegattaJournal journal;
   private boolean hasUnsaved;
 
   // Windows and panes
@@ -115,6 +121,9 @@ public class TScoreGUI
   // Preferences
   private Scorer scorer;
 
+  // Window within which regatta events are merged, in milliseconds
+  private long eventWindow;
+
   /**
    * Creates a new <code>TScoreGUI</code> instance.
    *
@@ -300,61 +309,112 @@ public class TScoreGUI
   }
 
   /**
-   * Opens regatta file and loads regatta.
+   * Opens regatta file and loads regatta. The file is read in the
+   * background, with its progress shown in the status bar, and the
+   * regatta is only installed, on the event dispatch thread, once it
+   * is completely loaded. Changes left in the regatta's checkpoint and
+   * journal by a crash are applied to it.
    *
    * @param f a <code>File</code> describing a regatta
    */
   public void loadFile(final File f) {
-    final Runnable thd = new Runnable() {
-	public void run() {
-	  try {
-	    boolean success = regIO.readFile(f);
-
-	    // Save open regatta?
-	    if (TScoreGUI.this.regatta != null) {
-	      TScoreGUI.this.crAction.
-		actionPerformed(new ActionEvent(this,
-						ActionEvent.ACTION_PERFORMED,
-						"Open regatta"));
-	    }
+    final RegattaIO io = new RegattaIO();
+    io.addPropertyChangeListener(this);
+    SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
+	private int recovered;
+
+	protected Boolean doInBackground() {
+	  boolean success = io.readFile(RegattaJournal.getRecoveryFile(f));
+	  Regatta reg = io.getRegatta();
+	  reg.clearChanges(EnumSet.allOf(RegattaEventType.class));
+	  this.recovered = RegattaJournal.replay(f, reg);
+	  return new Boolean(success);
+	}
 
-	    TScoreGUI.this.hasUnsaved = false;
-	    TScoreGUI.this.regattaFile = f;
-	    TScoreGUI.this.saAction.setEnabled(true);
-	    TScoreGUI.this.crAction.setEnabled(true);
-	    TScoreGUI.this.setRegatta(regIO.getRegatta());
-	  
-	    if (!success) {
-	      String mes = "There were problems while loading file.\n" +
-		"You should inspect the regatta for corrupt data.";
-	      JDialog errorDialog =
-		new ErrorMessageDialog(TScoreGUI.this,
-				       JOptionPane.WARNING_MESSAGE,
-				       mes,
-				       "Warning",
-				       regIO.getWarnings());
-
-	      errorDialog.setVisible(true);
-	    }    
-	  } catch (IllegalArgumentException e) {
+	protected void done() {
+	  boolean success;
+	  try {
+	    success = this.get().booleanValue();
+	  } catch (InterruptedException e) {
+	    return;
+	  } catch (ExecutionException e) {
+	    TScoreGUI.this.propertyChange(new PropertyChangeEvent(io, "done", null,
+								  new Boolean(true)));
 	    JDialog errorDialog = new ErrorMessageDialog(TScoreGUI.this,
 							 "Unable to load file.",
 							 "File error",
-							 regIO.getErrors());
+							 io.getErrors());
 	    errorDialog.setVisible(true);
+	    return;
 	  }
+
+	  // Save open regatta?
+	  if (TScoreGUI.this.regatta != null) {
+	    TScoreGUI.this.crAction.
+	      actionPerformed(new ActionEvent(this,
+					      ActionEvent.ACTION_PERFORMED,
+					      "Open regatta"));
+	  }
+
+	  TScoreGUI.this.regIO = io;
+	  TScoreGUI.this.hasUnsaved = false;
+	  TScoreGUI.this.regattaFile = f;
+	  TScoreGUI.this.saAction.setEnabled(true);
+	  TScoreGUI.this.crAction.setEnabled(true);
+	  TScoreGUI.this.setRegatta(io.getRegatta());
+	  TScoreGUI.this.startJournal();
+
+	  if (this.recovered > 0) {
+	    TScoreGUI.this.hasUnsaved = true;
+	    TScoreGUI.this.srAction.setEnabled(true);
+	    TScoreGUI.this.updateTitle();
+	    JOptionPane.showMessageDialog(TScoreGUI.this,
+					  "Unsaved changes to this regatta have been recovered.",
+					  "Recovered changes",
+					  JOptionPane.INFORMATION_MESSAGE);
+	  }
+	  
+	  if (!success) {
+	    String mes = "There were problems while loading file.\n" +
+	      "You should inspect the regatta for corrupt data.";
+	    JDialog errorDialog =
+	      new ErrorMessageDialog(TScoreGUI.this,
+				     JOptionPane.WARNING_MESSAGE,
+				     mes,
+				     "Warning",
+				     io.getWarnings());
+
+	    errorDialog.setVisible(true);
+	  }    
 	}
       };
-    SwingUtilities.invokeLater(thd);
+    worker.execute();
   }
 
   /**
    * Sets the current regatta
    */
-  private void setRegatta(Regatta r) {
+  private void setRegatta(final Regatta r) {
+    if (this.journal != null && r != this.regatta) {
+      this.journal.close();
+      this.journal = null;
+    }
     this.regatta = r;
     this.updateTitle();
     if (this.regatta != null) {
+      // Deliver merged events later, on the event dispatch thread,
+      // and only while this is still the current regatta
+      r.setEventWindow(this.eventWindow);
+      r.setEventExecutor(new Executor() {
+	  public void execute(final Runnable task) {
+	    SwingUtilities.invokeLater(new Runnable() {
+		public void run() {
+		  if (TScoreGUI.this.regatta == r)
+		    task.run();
+		}
+	      });
+	  }
+	});
       this.regatta.addRegattaListener(this);
       this.saAction.setEnabled(true);
       this.crAction.setEnabled(true);
@@ -383,6 +443,20 @@ public class TScoreGUI
 					"Open regatta"));
   }
 
+  /**
+   * Starts journaling the changes to the current regatta, if it has a
+   * file
+   */
+  private void startJournal() {
+    if (this.regatta == null || this.regattaFile == null)
+      return;
+    try {
+      this.journal = new RegattaJournal(this.regattaFile, this.regatta);
+    } catch (IOException e) {
+      System.err.println("Unable to start journal: " + e.getMessage());
+    }
+  }
+
   /**
    * Sets the content of this frame
    */
@@ -451,7 +525,8 @@ public class TScoreGUI
 
       String ext = Factory.getExtension(f);
       if (ext != null) {
-	if (ext.equals(TScoreGUI.FILE_EXTENSION)) {
+	if (ext.equals(TScoreGUI.FILE_EXTENSION) ||
+	    ext.equals(RegattaCodec.FILE_EXTENSION)) {
 	  return true;
 	}
       }
@@ -531,10 +606,13 @@ public class TScoreGUI
 
 	if (TScoreGUI.this.regattaFile == null) {
 	  if (regIO.writeFile(regatta, f)) {
+	    regatta.clearChanges(EnumSet.allOf(RegattaEventType.class));
 	    TScoreGUI.this.regattaFile = f;
 	    TScoreGUI.this.hasUnsaved = false;
 	    TScoreGUI.this.srAction.setEnabled(false);
 	    TScoreGUI.this.updateTitle();
+	    RegattaJournal.delete(f);
+	    TScoreGUI.this.startJournal();
 	  }
 	  else {
 	    JOptionPane.showMessageDialog(TScoreGUI.this,
@@ -545,12 +623,19 @@ public class TScoreGUI
 	  }
 	}
 	else {
-	  // Rewrite
-	  if (regIO.rewriteFile(regatta, regattaFile, f)) {
+	  // Rewrite the changed sections
+	  Set<RegattaEventType> changes = regatta.getChanges();
+	  if (regIO.rewriteFile(regatta, regattaFile, f, changes)) {
+	    regatta.clearChanges(changes);
+	    // The changes now live in the new file
+	    if (TScoreGUI.this.journal != null)
+	      TScoreGUI.this.journal.discard();
 	    TScoreGUI.this.regattaFile = f;
 	    TScoreGUI.this.hasUnsaved = false;
 	    TScoreGUI.this.srAction.setEnabled(false);
 	    TScoreGUI.this.updateTitle();
+	    RegattaJournal.delete(f);
+	    TScoreGUI.this.startJournal();
 	  }
 	  else {
 	    JOptionPane.showMessageDialog(TScoreGUI.this,
@@ -592,9 +677,19 @@ public class TScoreGUI
       }
       else {
 	regIO.setRegatta(regatta);
-	if (regIO.rewriteFile(regatta,
-			      TScoreGUI.this.regattaFile,
-			      TScoreGUI.this.regattaFile)) {
+	boolean saved;
+	if (TScoreGUI.this.journal != null)
+	  saved = TScoreGUI.this.journal.save(regIO);
+	else {
+	  Set<RegattaEventType> changes = regatta.getChanges();
+	  saved = regIO.rewriteFile(regatta,
+				    TScoreGUI.this.regattaFile,
+				    TScoreGUI.this.regattaFile,
+				    changes);
+	  if (saved)
+	    regatta.clearChanges(changes);
+	}
+	if (saved) {
 	  TScoreGUI.this.hasUnsaved = false;
 	  this.setEnabled(false);
 	  TScoreGUI.this.updateTitle();
@@ -702,6 +797,10 @@ public class TScoreGUI
 					    ActionEvent.ACTION_PERFORMED,
 					    "Save"));
 	}
+	else if (TScoreGUI.this.journal != null) {
+	  TScoreGUI.this.journal.discard();
+	  TScoreGUI.this.journal = null;
+	}
       }
       // Close regatta
       this.setEnabled(false);
@@ -1020,6 +1119,9 @@ public class TScoreGUI
     Dimension dim = this.getSize();
     prefs.putInt("WIDTH", (int)dim.getWidth());
     prefs.putInt("HEIGHT", (int)dim.getHeight());
+
+    // Events
+    prefs.putLong("EVENTWINDOW", this.eventWindow);
   }
 
   private void loadPreferences() {
@@ -1033,6 +1135,9 @@ public class TScoreGUI
     int w = prefs.getInt("WIDTH", 400);
     int h = prefs.getInt("HEIGHT", 600);
     this.setPreferredSize(new Dimension(w, h));
+
+    // Events
+    this.eventWindow = Math.max(0, prefs.getLong("EVENTWINDOW", 50));
   }
 
   // Implementation of WindowListener
@@ -1058,24 +1163,46 @@ public class TScoreGUI
    * @param e a <code>PropertyChangeEvent</code> value
    */
   private static int progValue = 0;
-  public void propertyChange(PropertyChangeEvent evt) {
+  public void propertyChange(final PropertyChangeEvent evt) {
+    // Files are read in the background
+    if (!SwingUtilities.isEventDispatchThread()) {
+      SwingUtilities.invokeLater(new Runnable() {
+	  public void run() {
+	    TScoreGUI.this.propertyChange(evt);
+	  }
+	});
+      return;
+    }
 
     String propName = evt.getPropertyName();
     try {
+      if (propName.equals("progress")) {
+	this.progressBar.setValue((Integer)evt.getNewValue());
+	return;
+      }
       this.statusBar.removeAll();
       this.statusBar.setLayout(new BorderLayout());
       if (propName.equalsIgnoreCase("done")) {
 	// Start/end the progress bar in the status bar
 	if ((Boolean)evt.getNewValue()) {
+	  this.progressBar = null;
 	  this.statusBar.add(new JLabel("Ready"),
 			     BorderLayout.CENTER);
 	}
+	else {
+	  this.progressBar = new JProgressBar(0, 100);
+	  this.statusBar.add(this.progressBar, BorderLayout.LINE_END);
+	}
       }
       else {
-	// Update the progress bar
+	// Update the message next to the progress bar
 	this.statusBar.add(new JLabel(String.valueOf(evt.getNewValue())),
 			   BorderLayout.CENTER);
+	if (this.progressBar != null)
+	  this.statusBar.add(this.progressBar, BorderLayout.LINE_END);
       }
+      this.statusBar.revalidate();
+      this.statusBar.repaint();
     } catch (NullPointerException e) {
       System.err.println("Missing progress bar");
     } catch (ClassCastException e) {
@@ -226,6 +226,9 @@ public class TeamPenaltiesPane extends AbstractPane {
       TeamPenaltiesPane.this.regatta.removeTeamPenalty(penalty.getDivision(),
 						       penalty.getTeam());
       updatePenaltyList();
+      regatta.fireRegattaChange(new RegattaEvent(regatta,
+						 RegattaEventType.FINISH,
+						 TeamPenaltiesPane.this));
     }
   }
   
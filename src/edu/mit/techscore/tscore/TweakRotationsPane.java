@@ -213,8 +213,13 @@ public class TweakRotationsPane extends AbstractPane {
 		  list.add(race);
 		}
 		else {
-		  for (Sail s : sails) {
-		    s.setSail(String.valueOf(Integer.valueOf(s.getSail()) + amount));
+		  // Replace, rather than change, the sails, which may be
+		  // shared with other races
+		  for (Team team : regatta.getTeams()) {
+		    Sail s = rot.getSail(race, team);
+		    if (s != null)
+		      rot.setSail(race, team,
+				  new Sail(String.valueOf(Integer.valueOf(s.getSail()) + amount)));
 		  }
 		}
 	      }